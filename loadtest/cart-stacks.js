@@ -0,0 +1,76 @@
+// Compares the servlet (default) and reactive ('reactive' profile) cart APIs
+// at 5k concurrent connections. Run the same script once against each stack:
+//
+//   k6 run -e BASE_URL=http://localhost:8081/api loadtest/cart-stacks.js   # servlet
+//   k6 run -e BASE_URL=http://localhost:8083/api loadtest/cart-stacks.js   # reactive
+//
+// (docker compose --profile reactive up starts both against the same database.)
+// To compare thread models instead, run the servlet stack twice, with and
+// without SPRING_THREADS_VIRTUAL_ENABLED=true.
+// The load generator needs ulimit -n above 5000.
+//
+// Each virtual user is one customer holding a keep-alive connection and
+// looping over the hot path: add an item, read the cart (with its ETag),
+// change a quantity and remove the item. Compare http_req_duration p95/p99,
+// http_reqs/s and the error rate between the two runs.
+import http from 'k6/http';
+import { check } from 'k6';
+import exec from 'k6/execution';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api';
+const CONNECTIONS = parseInt(__ENV.CONNECTIONS || '5000', 10);
+
+export const options = {
+    scenarios: {
+        carts: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: CONNECTIONS },
+                { duration: '3m', target: CONNECTIONS },
+                { duration: '15s', target: 0 },
+            ],
+            gracefulRampDown: '10s',
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        'http_req_duration{name:add}': ['p(95)<250'],
+        'http_req_duration{name:get}': ['p(95)<100'],
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    setupTimeout: '5m',
+};
+
+export function setup() {
+    for (let vu = 1; vu <= CONNECTIONS; vu++) {
+        http.post(`${BASE_URL}/carts/create`, null, { headers: { 'X-User-Id': `load-${vu}` } });
+    }
+}
+
+export default function () {
+    const customer = `load-${exec.vu.idInTest}`;
+    const headers = { 'X-User-Id': customer, 'Content-Type': 'application/json' };
+    const productId = `sku-${exec.vu.iterationInInstance % 20}`;
+
+    const add = http.post(`${BASE_URL}/carts/items`,
+        JSON.stringify({ productId, quantity: 1, unitPrice: 9.99 }),
+        { headers, tags: { name: 'add' } });
+    check(add, { 'add 200': (r) => r.status === 200 });
+
+    const get = http.get(`${BASE_URL}/carts/customer`, { headers, tags: { name: 'get' } });
+    check(get, { 'get 200': (r) => r.status === 200 });
+    const eTag = get.headers['Etag'];
+    if (eTag) {
+        const revalidate = http.get(`${BASE_URL}/carts/customer`,
+            { headers: Object.assign({ 'If-None-Match': eTag }, headers), tags: { name: 'revalidate' } });
+        check(revalidate, { 'revalidate 304': (r) => r.status === 304 || r.status === 200 });
+    }
+
+    const update = http.patch(`${BASE_URL}/carts/items/${productId}?quantity=3`, null,
+        { headers, tags: { name: 'update' } });
+    check(update, { 'update 200': (r) => r.status === 200 || r.status === 409 });
+
+    const remove = http.del(`${BASE_URL}/carts/items/${productId}`, null, { headers, tags: { name: 'remove' } });
+    check(remove, { 'remove 200': (r) => r.status === 200 || r.status === 409 });
+}
@@ -0,0 +1,124 @@
+package com.podzilla.cart.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, e.g. a copy of target/jmh-result.json
+ * kept from the previous build and the current one. For every benchmark and
+ * parameter combination present in both it prints the score and, when the
+ * runs used {@code -prof gc}, the bytes allocated per operation. Exits with
+ * status 1 if any score or allocation got worse by more than the threshold
+ * (10% unless given as the third argument), so it can fail a CI step.
+ *
+ * <pre>
+ * mvn -Pjmh exec:exec@jmh-diff -Djmh.baseline=jmh-baseline.json [-Djmh.threshold=5]
+ * </pre>
+ */
+public final class BenchmarkResultDiff {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BenchmarkResultDiff() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkResultDiff <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, JsonNode> baseline = read(Path.of(args[0]));
+        Map<String, JsonNode> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s %12s %12s %9s%n",
+                "Benchmark", "Baseline", "Current", "Change", "B/op before", "B/op after", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s%n", entry.getKey(), "(new)");
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            double scoreBefore = before.path("primaryMetric").path("score").asDouble();
+            double scoreAfter = after.path("primaryMetric").path("score").asDouble();
+            double scoreChange = percentChange(scoreBefore, scoreAfter);
+            double allocBefore = allocation(before);
+            double allocAfter = allocation(after);
+            double allocChange = percentChange(allocBefore, allocAfter);
+
+            boolean regressed = worse(after.path("mode").asText(), scoreChange, threshold)
+                    || (!Double.isNaN(allocChange) && allocChange > threshold);
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %8.1f%% %12s %12s %8s%s%n", entry.getKey(),
+                    scoreBefore, scoreAfter, scoreChange, format(allocBefore), format(allocAfter),
+                    Double.isNaN(allocChange) ? "-" : String.format("%.1f%%", allocChange),
+                    regressed ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-90s %14s%n", key, "(removed)");
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    /** Results keyed by benchmark name and parameters, in a stable order. */
+    private static Map<String, JsonNode> read(final Path file) throws IOException {
+        Map<String, JsonNode> results = new TreeMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.podzilla.cart.benchmark.", ""));
+            Map<String, String> params = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> param = fields.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                key.append(params);
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double allocation(final JsonNode result) {
+        JsonNode metric = result.path("secondaryMetrics").path(ALLOCATION_METRIC);
+        return metric.isMissingNode() ? Double.NaN : metric.path("score").asDouble();
+    }
+
+    private static double percentChange(final double before, final double after) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+            return Double.NaN;
+        }
+        return (after - before) / before * 100;
+    }
+
+    /** Time per operation should not go up; throughput should not go down. */
+    private static boolean worse(final String mode, final double change, final double threshold) {
+        if (Double.isNaN(change)) {
+            return false;
+        }
+        return "thrpt".equals(mode) ? change < -threshold : change > threshold;
+    }
+
+    private static String format(final double bytes) {
+        return Double.isNaN(bytes) ? "-" : String.format("%.0f", bytes);
+    }
+}
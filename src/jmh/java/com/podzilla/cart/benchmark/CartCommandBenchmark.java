@@ -0,0 +1,88 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.service.AddItemCommand;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.RemoveItemCommand;
+import com.podzilla.cart.service.UpdateQuantityCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One read-modify-save cart command, executed against an in-memory
+ * CartRepository: the copy the stub hands out stands in for decoding the
+ * stored cart, so this is the service-side cost of a mutation without the
+ * Mongo round trips.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartCommandBenchmark {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Param({"1", "20", "500"})
+    private int itemCount;
+
+    private CartService cartService;
+    private CartItem existingItem;
+    private CartItem newItem;
+    private String[] productIds;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Cart stored = new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), 1L, null);
+        productIds = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            productIds[i] = "prod-" + i;
+            stored.addItem(new CartItem(productIds[i], 1 + i % 5, BigDecimal.valueOf(199 + i * 37L, 2)));
+        }
+        cartService = InMemoryRepositories.cartService(stored, null);
+        existingItem = new CartItem(productIds[itemCount / 2], 1, BigDecimal.valueOf(199, 2));
+        newItem = new CartItem("prod-new", 1, new BigDecimal("4.99"));
+    }
+
+    private String nextProductId() {
+        cursor = (cursor + 1) % itemCount;
+        return productIds[cursor];
+    }
+
+    @Benchmark
+    public Cart addExistingItem() {
+        return new AddItemCommand(cartService, CUSTOMER_ID, existingItem).execute();
+    }
+
+    @Benchmark
+    public Cart addNewItem() {
+        return new AddItemCommand(cartService, CUSTOMER_ID, newItem).execute();
+    }
+
+    @Benchmark
+    public Cart updateQuantity() {
+        return new UpdateQuantityCommand(cartService, CUSTOMER_ID, nextProductId(), 3).execute();
+    }
+
+    @Benchmark
+    public Cart removeItem() {
+        return new RemoveItemCommand(cartService, CUSTOMER_ID, nextProductId()).execute();
+    }
+}
@@ -0,0 +1,87 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-mutation cost of locating, updating and re-adding a line as the cart
+ * grows: stream scans over the item list versus the productId index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartItemLookupBenchmark {
+
+    @Param({"10", "100", "500", "2000"})
+    private int itemCount;
+
+    private Cart cart;
+    private String[] productIds;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart();
+        productIds = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            productIds[i] = "prod-" + i;
+            cart.getItems().add(new CartItem(productIds[i], 1, BigDecimal.ONE));
+        }
+    }
+
+    private String nextProductId() {
+        cursor = (cursor + 1) % itemCount;
+        return productIds[cursor];
+    }
+
+    @Benchmark
+    public int updateQuantityWithStreamScan() {
+        String productId = nextProductId();
+        Optional<CartItem> item = cart.getItems().stream()
+                .filter(i -> i.getProductId().equals(productId))
+                .findFirst();
+        item.ifPresent(i -> i.setQuantity(i.getQuantity() % 5 + 1));
+        return cart.getItems().size();
+    }
+
+    @Benchmark
+    public int updateQuantityWithIndex() {
+        cart.findItem(nextProductId()).ifPresent(i -> i.setQuantity(i.getQuantity() % 5 + 1));
+        return cart.getItems().size();
+    }
+
+    @Benchmark
+    public int removeAndReAddWithStreamScan() {
+        String productId = nextProductId();
+        Optional<CartItem> item = cart.getItems().stream()
+                .filter(i -> i.getProductId().equals(productId))
+                .findFirst();
+        cart.getItems().removeIf(i -> i.getProductId().equals(productId));
+        item.ifPresent(cart.getItems()::add);
+        return cart.getItems().size();
+    }
+
+    @Benchmark
+    public int removeAndReAddWithIndex() {
+        cart.removeItem(nextProductId()).ifPresent(cart::addItem);
+        return cart.getItems().size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.service.CartService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CartService's totals recalculation, with and without an applied promo
+ * code, reached through saveCart against an in-memory repository whose save
+ * is a no-op. Unlike CartTotalsBenchmark this includes the promo lookup and
+ * the recalculation timer around the calculator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartRecalculationBenchmark {
+
+    @Param({"1", "20", "500"})
+    private int itemCount;
+
+    @Param({"false", "true"})
+    private boolean withPromo;
+
+    private CartService cartService;
+    private Cart cart;
+
+    @Setup
+    public void setUp() {
+        PromoCode promo = null;
+        if (withPromo) {
+            promo = new PromoCode();
+            promo.setCode("SAVE15");
+            promo.setDiscountType(PromoCode.DiscountType.PERCENTAGE);
+            promo.setDiscountValue(new BigDecimal("15"));
+        }
+        cart = new Cart("cart-1", "customer-1", new ArrayList<>(), false, withPromo ? "SAVE15" : null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), 1L, null);
+        for (int i = 0; i < itemCount; i++) {
+            cart.addItem(new CartItem("prod-" + i, 1 + i % 5, BigDecimal.valueOf(199 + i * 37L, 2)));
+        }
+        cartService = InMemoryRepositories.cartService(cart, promo);
+    }
+
+    @Benchmark
+    public BigDecimal recalculateTotals() {
+        return cartService.saveCart(cart).getTotalPrice();
+    }
+}
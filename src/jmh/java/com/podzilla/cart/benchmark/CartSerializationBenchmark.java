@@ -0,0 +1,64 @@
+package com.podzilla.cart.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trip of a cart as the REST API and the write-behind journal
+ * do it, by number of lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartSerializationBenchmark {
+
+    @Param({"1", "20", "500"})
+    private int itemCount;
+
+    private ObjectMapper objectMapper;
+    private Cart cart;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        cart = new Cart("cart-1", "customer-1", new ArrayList<>(), false, "SAVE15",
+                new BigDecimal("100.00"), new BigDecimal("15.00"), new BigDecimal("85.00"), 7L, Instant.now());
+        for (int i = 0; i < itemCount; i++) {
+            cart.addItem(new CartItem("prod-" + i, 1 + i % 5, BigDecimal.valueOf(199 + i * 37L, 2)));
+        }
+        json = objectMapper.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cart);
+    }
+
+    @Benchmark
+    public Cart deserialize() throws IOException {
+        return objectMapper.readValue(json, Cart.class);
+    }
+}
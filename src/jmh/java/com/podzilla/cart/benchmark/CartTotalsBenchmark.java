@@ -0,0 +1,84 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.service.CartTotals;
+import com.podzilla.cart.service.CartTotalsCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the minor-unit totals engine with the String.format based
+ * rounding that CartService used before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartTotalsBenchmark {
+
+    @Param({"1", "20", "500"})
+    private int itemCount;
+
+    @Param({"false", "true"})
+    private boolean withPromo;
+
+    private List<CartItem> items;
+    private PromoCode promo;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new CartItem("prod-" + i, 1 + i % 5,
+                    BigDecimal.valueOf(199 + i * 37L, 2)));
+        }
+        if (withPromo) {
+            promo = new PromoCode();
+            promo.setCode("SAVE15");
+            promo.setDiscountType(PromoCode.DiscountType.PERCENTAGE);
+            promo.setDiscountValue(new BigDecimal("15"));
+        }
+    }
+
+    @Benchmark
+    public CartTotals totalsEngine() {
+        return CartTotalsCalculator.calculate(items, promo);
+    }
+
+    @Benchmark
+    public CartTotals legacyStringFormat() {
+        BigDecimal subTotal = items.stream()
+                .filter(item -> item.getUnitPrice() != null && item.getQuantity() > 0)
+                .map(CartItem::getItemTotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal roundedSubTotal = new BigDecimal(String.format("%.2f", subTotal));
+
+        BigDecimal discountAmount = BigDecimal.ZERO;
+        if (promo != null) {
+            BigDecimal percentageValue = promo.getDiscountValue().divide(new BigDecimal("100"));
+            BigDecimal percentage = new BigDecimal(String.format("%.2f", percentageValue));
+            discountAmount = subTotal.multiply(percentage);
+        }
+        discountAmount = discountAmount.max(BigDecimal.ZERO).min(subTotal);
+        BigDecimal roundedDiscount = new BigDecimal(String.format("%.2f", discountAmount));
+        BigDecimal totalPrice = new BigDecimal(String.format("%.2f", subTotal.subtract(discountAmount)));
+        return new CartTotals(roundedSubTotal, roundedDiscount, totalPrice);
+    }
+}
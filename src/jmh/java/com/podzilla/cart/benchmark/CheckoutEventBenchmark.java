@@ -0,0 +1,54 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.mq.events.CartCheckedoutEvent;
+import com.podzilla.mq.events.ConfirmationType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the CartCheckedoutEvent for a cart, by number of lines; the
+ * order items are copied out of the cart on every checkout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckoutEventBenchmark {
+
+    @Param({"1", "20", "500"})
+    private int itemCount;
+
+    private Cart cart;
+
+    @Setup
+    public void setUp() {
+        cart = new Cart("cart-1", "customer-1", new ArrayList<>(), false, null,
+                new BigDecimal("100.00"), BigDecimal.ZERO.setScale(2), new BigDecimal("100.00"), 7L, null);
+        for (int i = 0; i < itemCount; i++) {
+            cart.addItem(new CartItem("prod-" + i, 1 + i % 5, BigDecimal.valueOf(199 + i * 37L, 2)));
+        }
+    }
+
+    @Benchmark
+    public CartCheckedoutEvent buildCheckoutEvent() {
+        return CartService.buildCheckoutEvent(cart, ConfirmationType.OTP, null, 31.2357, 30.0444, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.podzilla.cart.benchmark;
+
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.repository.CartRepository;
+import com.podzilla.cart.repository.PromoCodeRepository;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.PromoCodeService;
+import com.podzilla.cart.store.CartHistoryStore;
+import com.podzilla.cart.store.EventSourcedCartStore;
+import com.podzilla.cart.store.WriteBehindCartStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Repository stubs for benchmarks that go through CartService. Only the
+ * methods the benchmarked paths call are implemented; anything else throws,
+ * so a path that starts touching another query shows up instead of being
+ * silently measured against a no-op.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    /**
+     * CartService with the default configuration: carts written straight to
+     * the repository, no write-behind, event sourcing or undo history. The
+     * event publisher and checkout outbox are only used by checkout, which
+     * is not benchmarked through the service.
+     */
+    static CartService cartService(final Cart stored, final PromoCode promo) {
+        CartMetrics metrics = new CartMetrics(new SimpleMeterRegistry());
+        return new CartService(carts(stored), null, new PromoCodeService(promoCodes(promo)), metrics,
+                new WriteBehindCartStore(null, null, metrics, false, 0, Path.of("target"), false),
+                null,
+                new EventSourcedCartStore(null, false, 50, false),
+                new CartHistoryStore(null, false, 20, 0));
+    }
+
+    /**
+     * Every read returns a fresh copy of {@code stored}, as a Mongo read
+     * would, and saves are discarded, so each invocation starts from the
+     * same cart.
+     */
+    static CartRepository carts(final Cart stored) {
+        return proxy(CartRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findByCustomerId" -> Optional.of(stored.copy());
+            case "save" -> args[0];
+            default -> unsupported(method.getName());
+        });
+    }
+
+    static PromoCodeRepository promoCodes(final PromoCode promo) {
+        return proxy(PromoCodeRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findByCode" -> promo != null && promo.getCode().equals(args[0])
+                    ? Optional.of(promo) : Optional.empty();
+            default -> unsupported(method.getName());
+        });
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> "InMemory" + type.getSimpleName();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.invoke(proxy, method, args);
+                }));
+    }
+
+    private static Object unsupported(final String method) {
+        throw new UnsupportedOperationException(method + " is not stubbed for benchmarks");
+    }
+}
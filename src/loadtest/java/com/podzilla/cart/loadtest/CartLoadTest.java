@@ -0,0 +1,208 @@
+package com.podzilla.cart.loadtest;
+
+import com.podzilla.cart.CartApplication;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.service.PromoCodeService;
+import com.podzilla.mq.EventPublisher;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * End-to-end load test of the REST API. Boots CartApplication against an
+ * embedded mongod, with an in-process stand-in for the EventPublisher so no
+ * broker is needed, and drives it over HTTP with an open-model workload:
+ * requests arrive as a Poisson process at the configured rate whether or
+ * not earlier ones have completed, as real traffic does.
+ *
+ * <p>Prints throughput and p50/p99/p99.9 latency per endpoint, writes them
+ * to target/loadtest-report.json and exits with status 1 if any SLO in
+ * loadtest.properties was missed.
+ *
+ * <pre>
+ * mvn -Ploadtest -DskipTests test-compile exec:exec [-Dloadtest.args="rate=400 duration=2m"]
+ * </pre>
+ *
+ * <p>To compare thread models, run it twice at the same rate and seed, with
+ * and without {@code virtual-threads=true}, and compare the p99 per endpoint.
+ * The report is overwritten, so keep the first run's copy.
+ */
+@Slf4j
+public final class CartLoadTest {
+
+    private static final Path REPORT = Path.of("target", "loadtest-report.json");
+
+    private CartLoadTest() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.load(args);
+        List<String> violations;
+        try (TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V6_0)) {
+            ServerAddress address = mongod.current().getServerAddress();
+            LongAdder published = new LongAdder();
+            try (ConfigurableApplicationContext app = startApplication(
+                    "mongodb://" + address.getHost() + ":" + address.getPort() + "/cart_loadtest",
+                    settings.virtualThreads(), eventPublisher(settings.publishLatency(), published))) {
+                int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+                URI baseUri = URI.create("http://localhost:" + port + "/api");
+                HttpClient client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+
+                createPromoCode(app);
+                LoadReport report = run(client, new CartWorkload(baseUri, settings), settings);
+                violations = report.sloViolations();
+                report.print(System.out);
+                System.out.printf("Checkout events published to the stand-in: %d%n", published.sum());
+                report.writeJson(REPORT, violations);
+            }
+        }
+
+        if (violations.isEmpty()) {
+            System.out.println("All SLOs met. Report: " + REPORT);
+            System.exit(0);
+        }
+        System.out.println("SLO violations:");
+        violations.forEach(violation -> System.out.println("  " + violation));
+        System.exit(1);
+    }
+
+    /**
+     * Runs the application with its main application.properties. The test
+     * classpath also carries the unit tests' application.properties, so the
+     * main one is named explicitly; what the load test must change is passed
+     * as command-line properties, which take precedence.
+     */
+    private static ConfigurableApplicationContext startApplication(final String mongoUri,
+                                                                   final boolean virtualThreads,
+                                                                   final EventPublisher eventPublisher)
+            throws URISyntaxException {
+        URI mainConfig = Path.of(CartApplication.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .resolve("application.properties").toUri();
+        SpringApplication application = new SpringApplication(CartApplication.class);
+        application.addInitializers(context -> ((GenericApplicationContext) context).registerBean(
+                "loadTestEventPublisher", EventPublisher.class, () -> eventPublisher,
+                definition -> definition.setPrimary(true)));
+        return application.run(
+                "--spring.config.location=" + mainConfig,
+                "--spring.data.mongodb.uri=" + mongoUri,
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                // No broker: nothing listens for or broadcasts cache invalidations.
+                "--cart.cache.invalidation.enabled=false",
+                "--spring.rabbitmq.listener.simple.auto-startup=false",
+                "--management.health.rabbit.enabled=false",
+                // Request logging at debug would dominate the measurements.
+                "--logging.level.root=warn",
+                "--logging.level.org.springframework.web=warn",
+                "--logging.level.com.podzilla.cart=warn",
+                "--logging.level.com.podzilla.cart.loadtest=info",
+                "--logging.file.name=target/loadtest-app.log");
+    }
+
+    /**
+     * Stands in for the RabbitMQ publisher: counts checkout events and
+     * optionally waits as long as a broker round trip would. Stub-only, so
+     * the mock does not keep every invocation.
+     */
+    private static EventPublisher eventPublisher(final Duration latency, final LongAdder published) {
+        return mock(EventPublisher.class, withSettings().stubOnly().defaultAnswer(invocation -> {
+            published.increment();
+            if (!latency.isZero()) {
+                Thread.sleep(latency);
+            }
+            return null;
+        }));
+    }
+
+    /** Directly through the service: the admin API requires an authenticated admin. */
+    private static void createPromoCode(final ConfigurableApplicationContext app) {
+        PromoCode promoCode = new PromoCode();
+        promoCode.setCode(CartWorkload.PROMO_CODE);
+        promoCode.setDiscountType(PromoCode.DiscountType.PERCENTAGE);
+        promoCode.setDiscountValue(BigDecimal.TEN);
+        app.getBean(PromoCodeService.class).createOrUpdatePromoCode(promoCode);
+    }
+
+    private static LoadReport run(final HttpClient client, final CartWorkload workload,
+                                  final LoadTestSettings settings) {
+        LoadReport report = new LoadReport(settings);
+        Random random = new Random(settings.seed());
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long measureTo = measureFrom + settings.duration().toNanos();
+        log.info("Warming up for {}, then measuring {} at {} req/s", settings.warmup(), settings.duration(),
+                settings.rate());
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            long arrival = start;
+            while (arrival < measureTo) {
+                long wait = arrival - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                CartWorkload.Call call = workload.next(random);
+                long scheduledAt = arrival;
+                boolean measured = scheduledAt >= measureFrom;
+                if (measured) {
+                    report.scheduled();
+                }
+                requests.execute(() -> {
+                    int status = send(client, call.request());
+                    long completedAt = System.nanoTime();
+                    if (measured) {
+                        report.record(call.endpoint(), status, completedAt - scheduledAt, completedAt <= measureTo);
+                    }
+                    workload.completed(call, status);
+                });
+                // Exponential gaps between arrivals make a Poisson process.
+                arrival += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            }
+            log.info("Arrivals finished, waiting for requests in flight");
+        }
+        return report;
+    }
+
+    private static int send(final HttpClient client, final HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            log.debug("Request {} {} failed", request.method(), request.uri(), e);
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.podzilla.cart.loadtest;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shoppers and what they do next. Each arrival is one request from a
+ * customer who is not waiting on another one: an idle customer if there is
+ * one, otherwise a new customer, whose first request creates the cart. The
+ * operation is drawn from the configured mix, constrained by what is in the
+ * customer's cart, and a customer whose checkout succeeds leaves.
+ *
+ * <p>{@link #next} is called from the single scheduling thread only;
+ * customers are handed between threads through the idle queue.
+ */
+final class CartWorkload {
+
+    static final String PROMO_CODE = "LOAD10";
+
+    private static final String CHECKOUT_QUERY = "?confirmationType=OTP&longitude=31.2357&latitude=30.0444";
+    private static final String DELIVERY_ADDRESS = "{\"street\":\"1 Load Test St\",\"city\":\"Cairo\","
+            + "\"state\":\"Cairo\",\"country\":\"EG\",\"postalCode\":\"11511\"}";
+
+    private final URI baseUri;
+    private final Duration timeout;
+    private final int products;
+    private final Endpoint[] endpoints;
+    private final int[] cumulativeWeights;
+    private final Queue<Customer> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicLong customerIds = new AtomicLong();
+
+    CartWorkload(final URI baseUri, final LoadTestSettings settings) {
+        this.baseUri = baseUri;
+        this.timeout = settings.requestTimeout();
+        this.products = settings.products();
+        Map<Endpoint, Integer> mix = settings.mix();
+        this.endpoints = mix.keySet().toArray(new Endpoint[0]);
+        this.cumulativeWeights = new int[endpoints.length];
+        int total = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            total += mix.get(endpoints[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    static final class Customer {
+        private final String id;
+        private final List<String> productIds = new ArrayList<>();
+        private boolean hasCart;
+        private boolean promoApplied;
+
+        Customer(final String id) {
+            this.id = id;
+        }
+    }
+
+    record Call(Customer customer, Endpoint endpoint, String productId, HttpRequest request) {
+    }
+
+    Call next(final Random random) {
+        Customer customer = idle.poll();
+        if (customer == null) {
+            customer = new Customer("load-" + customerIds.incrementAndGet());
+        }
+        Endpoint endpoint = choose(customer, random);
+        String productId = switch (endpoint) {
+            case ADD -> "sku-" + random.nextInt(products);
+            case UPDATE, REMOVE -> customer.productIds.get(random.nextInt(customer.productIds.size()));
+            default -> null;
+        };
+        return new Call(customer, endpoint, productId, request(customer, endpoint, productId, random));
+    }
+
+    /** Updates the customer from the response status (-1 if none) and releases it. */
+    void completed(final Call call, final int status) {
+        Customer customer = call.customer();
+        if (status >= 200 && status < 300) {
+            switch (call.endpoint()) {
+                case CREATE -> customer.hasCart = true;
+                case ADD -> {
+                    if (!customer.productIds.contains(call.productId())) {
+                        customer.productIds.add(call.productId());
+                    }
+                }
+                case REMOVE -> customer.productIds.remove(call.productId());
+                case APPLY_PROMO -> customer.promoApplied = true;
+                case CHECKOUT -> {
+                    return;
+                }
+                default -> { }
+            }
+        } else if (status == 404) {
+            // Most likely the cart itself; start the customer over.
+            customer.hasCart = false;
+            customer.promoApplied = false;
+            customer.productIds.clear();
+        }
+        idle.add(customer);
+    }
+
+    private Endpoint choose(final Customer customer, final Random random) {
+        if (!customer.hasCart) {
+            return Endpoint.CREATE;
+        }
+        int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        Endpoint endpoint = endpoints[endpoints.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                endpoint = endpoints[i];
+                break;
+            }
+        }
+        return switch (endpoint) {
+            case UPDATE, REMOVE, CHECKOUT -> customer.productIds.isEmpty() ? Endpoint.ADD : endpoint;
+            case APPLY_PROMO -> customer.promoApplied ? Endpoint.GET : endpoint;
+            default -> endpoint;
+        };
+    }
+
+    private HttpRequest request(final Customer customer, final Endpoint endpoint, final String productId,
+                                final Random random) {
+        HttpRequest.Builder builder = switch (endpoint) {
+            case CREATE -> HttpRequest.newBuilder(uri("/carts/create"))
+                    .POST(HttpRequest.BodyPublishers.noBody());
+            case GET -> HttpRequest.newBuilder(uri("/carts/customer")).GET();
+            case ADD -> HttpRequest.newBuilder(uri("/carts/items"))
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", UUID.randomUUID().toString())
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"productId\":\"" + productId
+                            + "\",\"quantity\":" + (1 + random.nextInt(3))
+                            + ",\"unitPrice\":" + price(productId) + "}"));
+            case UPDATE -> HttpRequest.newBuilder(uri("/carts/items/" + productId
+                            + "?quantity=" + (1 + random.nextInt(5))))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody());
+            case REMOVE -> HttpRequest.newBuilder(uri("/carts/items/" + productId)).DELETE();
+            case APPLY_PROMO -> HttpRequest.newBuilder(uri("/carts/promo/" + PROMO_CODE))
+                    .POST(HttpRequest.BodyPublishers.noBody());
+            case CHECKOUT -> HttpRequest.newBuilder(uri("/carts/checkout" + CHECKOUT_QUERY))
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", UUID.randomUUID().toString())
+                    .POST(HttpRequest.BodyPublishers.ofString(DELIVERY_ADDRESS));
+        };
+        return builder.header("X-User-Id", customer.id).timeout(timeout).build();
+    }
+
+    private URI uri(final String path) {
+        return URI.create(baseUri + path);
+    }
+
+    /** A stable price per product, so repeated adds of a product agree. */
+    private static BigDecimal price(final String productId) {
+        int n = Integer.parseInt(productId.substring("sku-".length()));
+        return BigDecimal.valueOf(199 + (n * 37L) % 5000, 2);
+    }
+}
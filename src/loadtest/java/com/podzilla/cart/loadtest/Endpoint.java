@@ -0,0 +1,22 @@
+package com.podzilla.cart.loadtest;
+
+/** The cart API calls the load test makes, as named in settings and reports. */
+enum Endpoint {
+    CREATE("create"),
+    GET("get"),
+    ADD("add"),
+    UPDATE("update"),
+    REMOVE("remove"),
+    APPLY_PROMO("apply-promo"),
+    CHECKOUT("checkout");
+
+    private final String key;
+
+    Endpoint(final String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+}
@@ -0,0 +1,171 @@
+package com.podzilla.cart.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of the measured window. Latencies run from the time a request
+ * was scheduled to start, not from when it was sent, so a stalled server
+ * shows up in the percentiles instead of only slowing the arrivals
+ * (coordinated omission).
+ */
+final class LoadReport {
+
+    private static final Map<String, Double> PERCENTILES = new TreeMap<>(Map.of("p50", 50.0, "p99", 99.0,
+            "p999", 99.9));
+
+    private final LoadTestSettings settings;
+    private final Map<Endpoint, EndpointStats> endpoints = new EnumMap<>(Endpoint.class);
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder completedInWindow = new LongAdder();
+
+    LoadReport(final LoadTestSettings settings) {
+        this.settings = settings;
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointStats());
+        }
+    }
+
+    private static final class EndpointStats {
+        private final Histogram latencyMicros = new ConcurrentHistogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    void scheduled() {
+        scheduled.increment();
+    }
+
+    /** {@code status} is -1 when no response arrived (timeout or I/O error). */
+    void record(final Endpoint endpoint, final int status, final long latencyNanos, final boolean inWindow) {
+        EndpointStats stats = endpoints.get(endpoint);
+        stats.latencyMicros.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        stats.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (status < 200 || status >= 300) {
+            stats.errors.increment();
+        }
+        if (inWindow) {
+            completedInWindow.increment();
+        }
+    }
+
+    /** Everything checked against the configured SLOs; empty if all were met. */
+    List<String> sloViolations() {
+        List<String> violations = new ArrayList<>();
+        long total = totalCount();
+        double errorRate = total == 0 ? 0 : (double) totalErrors() / total;
+        settings.maxErrorRate().filter(max -> errorRate > max).ifPresent(max ->
+                violations.add(String.format("error rate %.4f above %.4f", errorRate, max)));
+        double ratio = throughputRatio();
+        settings.minThroughputRatio().filter(min -> ratio < min).ifPresent(min ->
+                violations.add(String.format("completed %.3f of scheduled arrivals in the window, below %.3f",
+                        ratio, min)));
+        for (Map.Entry<Endpoint, EndpointStats> entry : endpoints.entrySet()) {
+            Histogram histogram = entry.getValue().latencyMicros;
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            for (Map.Entry<String, Double> percentile : PERCENTILES.entrySet()) {
+                long micros = histogram.getValueAtPercentile(percentile.getValue());
+                settings.latencyObjective(entry.getKey(), percentile.getKey())
+                        .filter(objective -> micros > TimeUnit.NANOSECONDS.toMicros(objective.toNanos()))
+                        .ifPresent(objective -> violations.add(String.format("%s %s %.1fms above %dms",
+                                entry.getKey().key(), percentile.getKey(), millis(micros), objective.toMillis())));
+            }
+        }
+        return violations;
+    }
+
+    void print(final PrintStream out) {
+        double seconds = settings.duration().toNanos() / 1e9;
+        out.printf("%nTarget %.1f req/s for %s on %s threads: %d scheduled, %.1f req/s completed in window"
+                        + " (%.1f%%)%n", settings.rate(), settings.duration(),
+                settings.virtualThreads() ? "virtual" : "platform", scheduled.sum(),
+                completedInWindow.sum() / seconds, throughputRatio() * 100);
+        out.printf("%-12s %9s %9s %9s %10s %10s %10s %10s%n",
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        endpoints.forEach((endpoint, stats) -> {
+            Histogram h = stats.latencyMicros;
+            if (h.getTotalCount() == 0) {
+                return;
+            }
+            out.printf("%-12s %9d %9d %9.1f %10.2f %10.2f %10.2f %10.2f%n", endpoint.key(), h.getTotalCount(),
+                    stats.errors.sum(), h.getTotalCount() / seconds, millis(h.getValueAtPercentile(50)),
+                    millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue()));
+            if (stats.errors.sum() > 0) {
+                out.printf("%-12s statuses: %s%n", "", statuses(stats));
+            }
+        });
+    }
+
+    void writeJson(final Path file, final List<String> violations) throws IOException {
+        double seconds = settings.duration().toNanos() / 1e9;
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("targetRate", settings.rate());
+        json.put("warmupSeconds", settings.warmup().toSeconds());
+        json.put("durationSeconds", settings.duration().toSeconds());
+        json.put("virtualThreads", settings.virtualThreads());
+        json.put("scheduled", scheduled.sum());
+        json.put("completedInWindow", completedInWindow.sum());
+        json.put("throughput", completedInWindow.sum() / seconds);
+        Map<String, Object> perEndpoint = new LinkedHashMap<>();
+        endpoints.forEach((endpoint, stats) -> {
+            Histogram h = stats.latencyMicros;
+            if (h.getTotalCount() == 0) {
+                return;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("requests", h.getTotalCount());
+            values.put("errors", stats.errors.sum());
+            values.put("throughput", h.getTotalCount() / seconds);
+            values.put("p50Ms", millis(h.getValueAtPercentile(50)));
+            values.put("p99Ms", millis(h.getValueAtPercentile(99)));
+            values.put("p999Ms", millis(h.getValueAtPercentile(99.9)));
+            values.put("maxMs", millis(h.getMaxValue()));
+            values.put("statuses", statuses(stats));
+            perEndpoint.put(endpoint.key(), values);
+        });
+        json.put("endpoints", perEndpoint);
+        json.put("sloViolations", violations);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), json);
+    }
+
+    private double throughputRatio() {
+        return scheduled.sum() == 0 ? 1 : (double) completedInWindow.sum() / scheduled.sum();
+    }
+
+    private long totalCount() {
+        return endpoints.values().stream().mapToLong(stats -> stats.latencyMicros.getTotalCount()).sum();
+    }
+
+    private long totalErrors() {
+        return endpoints.values().stream().mapToLong(stats -> stats.errors.sum()).sum();
+    }
+
+    private static Map<String, Long> statuses(final EndpointStats stats) {
+        Map<String, Long> statuses = new TreeMap<>();
+        stats.statuses.forEach((status, count) -> statuses.put(status < 0 ? "none" : status.toString(), count.sum()));
+        return statuses;
+    }
+
+    private static double millis(final long micros) {
+        return micros / 1000.0;
+    }
+}
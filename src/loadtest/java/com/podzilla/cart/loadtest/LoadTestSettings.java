@@ -0,0 +1,126 @@
+package com.podzilla.cart.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Settings for a load-test run: {@code loadtest.properties} from the
+ * classpath, overridden by {@code key=value} arguments (the
+ * {@code loadtest.} prefix may be left out).
+ */
+final class LoadTestSettings {
+
+    private static final String PREFIX = "loadtest.";
+
+    private final Properties properties;
+
+    private LoadTestSettings(final Properties properties) {
+        this.properties = properties;
+    }
+
+    static LoadTestSettings load(final String[] overrides) {
+        Properties properties = new Properties();
+        try (InputStream in = LoadTestSettings.class.getResourceAsStream("/loadtest.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read loadtest.properties", e);
+        }
+        for (String override : overrides) {
+            int separator = override.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + override);
+            }
+            String key = override.substring(0, separator).trim();
+            properties.setProperty(key.startsWith(PREFIX) ? key : PREFIX + key,
+                    override.substring(separator + 1).trim());
+        }
+        return new LoadTestSettings(properties);
+    }
+
+    /** Arrivals per second. */
+    double rate() {
+        return Double.parseDouble(required("rate"));
+    }
+
+    Duration warmup() {
+        return duration("warmup").orElse(Duration.ZERO);
+    }
+
+    Duration duration() {
+        return duration("duration").orElseThrow();
+    }
+
+    int products() {
+        return Integer.parseInt(required("products"));
+    }
+
+    Duration publishLatency() {
+        return duration("publish-latency").orElse(Duration.ZERO);
+    }
+
+    Duration requestTimeout() {
+        return duration("request-timeout").orElse(Duration.ofSeconds(10));
+    }
+
+    /** Whether the application serves requests on virtual threads instead of Tomcat's platform pool. */
+    boolean virtualThreads() {
+        return Boolean.parseBoolean(properties.getProperty(PREFIX + "virtual-threads", "false"));
+    }
+
+    long seed() {
+        return Long.parseLong(properties.getProperty(PREFIX + "seed", "42"));
+    }
+
+    /** Relative weight of each operation for customers who already have a cart. */
+    Map<Endpoint, Integer> mix() {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            String weight = properties.getProperty(PREFIX + "mix." + endpoint.key());
+            if (weight != null && Integer.parseInt(weight) > 0) {
+                mix.put(endpoint, Integer.parseInt(weight));
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("No loadtest.mix.* weights configured");
+        }
+        return mix;
+    }
+
+    Optional<Double> maxErrorRate() {
+        return Optional.ofNullable(properties.getProperty(PREFIX + "slo.error-rate")).map(Double::parseDouble);
+    }
+
+    /** Completed requests as a fraction of the scheduled arrivals. */
+    Optional<Double> minThroughputRatio() {
+        return Optional.ofNullable(properties.getProperty(PREFIX + "slo.min-throughput-ratio"))
+                .map(Double::parseDouble);
+    }
+
+    /** Latency objective for an endpoint at a percentile key such as {@code p99}. */
+    Optional<Duration> latencyObjective(final Endpoint endpoint, final String percentile) {
+        return duration("slo." + endpoint.key() + "." + percentile);
+    }
+
+    private String required(final String key) {
+        String value = properties.getProperty(PREFIX + key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing setting " + PREFIX + key);
+        }
+        return value;
+    }
+
+    private Optional<Duration> duration(final String key) {
+        String value = properties.getProperty(PREFIX + key);
+        return value == null || value.isBlank() ? Optional.empty() : Optional.of(DurationStyle.detectAndParse(value));
+    }
+}
@@ -0,0 +1,124 @@
+package com.podzilla.cart.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Local cache whose evictions are also broadcast to the other replicas.
+ * Puts stay local: they come from read-through loads, and every replica
+ * loads the same value on its own miss.
+ *
+ * <p>A read-through load that missed before a write evicted the key would
+ * otherwise put the value it read before the write, and serve it until the
+ * entry expires. Each thread remembers its last miss with the eviction count
+ * of that key's stripe; a put for that key is dropped once an eviction, local
+ * or broadcast, has happened since.
+ */
+public class BroadcastingCache implements Cache {
+
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private record Miss(Object key, long invalidations) {
+    }
+
+    private final Cache delegate;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+    private final AtomicLong clears = new AtomicLong();
+    private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+
+    public BroadcastingCache(final Cache delegate,
+                             final CacheInvalidationBroadcaster broadcaster) {
+        this.delegate = delegate;
+        this.broadcaster = broadcaster;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(final Object key) {
+        ValueWrapper value = delegate.get(key);
+        if (value == null) {
+            lastMiss.set(new Miss(key, invalidations(key)));
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(final Object key, final Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(final Object key, final Callable<T> valueLoader) {
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(final Object key, final Object value) {
+        Miss miss = lastMiss.get();
+        if (miss == null || !miss.key().equals(key)) {
+            delegate.put(key, value);
+            return;
+        }
+        lastMiss.remove();
+        if (invalidations(key) != miss.invalidations()) {
+            return;
+        }
+        delegate.put(key, value);
+        // Evictions count up before they evict, so one that slipped in after the check above is caught here.
+        if (invalidations(key) != miss.invalidations()) {
+            delegate.evict(key);
+        }
+    }
+
+    @Override
+    public void evict(final Object key) {
+        evictLocally(key);
+        broadcaster.broadcastEvict(getName(), key);
+    }
+
+    @Override
+    public boolean evictIfPresent(final Object key) {
+        invalidations.incrementAndGet(stripe(key));
+        boolean present = delegate.evictIfPresent(key);
+        broadcaster.broadcastEvict(getName(), key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        clearLocally();
+        broadcaster.broadcastClear(getName());
+    }
+
+    public void evictLocally(final Object key) {
+        invalidations.incrementAndGet(stripe(key));
+        delegate.evict(key);
+    }
+
+    public void clearLocally() {
+        clears.incrementAndGet();
+        delegate.clear();
+    }
+
+    /** Both counters only grow, so the sum changes whenever either does. */
+    private long invalidations(final Object key) {
+        return invalidations.get(stripe(key)) + clears.get();
+    }
+
+    private static int stripe(final Object key) {
+        return Math.floorMod(key.hashCode(), INVALIDATION_STRIPES);
+    }
+}
@@ -0,0 +1,67 @@
+package com.podzilla.cart.cache;
+
+import com.podzilla.cart.config.CacheConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+@Component
+@Slf4j
+public class CacheInvalidationBroadcaster {
+
+    static final String CACHE_HEADER = "x-cache-name";
+    static final String ORIGIN_HEADER = "x-cache-origin";
+    static final String CLEAR_HEADER = "x-cache-clear";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final boolean enabled;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public CacheInvalidationBroadcaster(final RabbitTemplate rabbitTemplate,
+                                        @Value("${cart.cache.invalidation.enabled:true}") final boolean enabled) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.enabled = enabled;
+    }
+
+    public void broadcastEvict(final String cacheName, final Object key) {
+        send(MessageBuilder.withBody(String.valueOf(key).getBytes(StandardCharsets.UTF_8))
+                .setHeader(CACHE_HEADER, cacheName)
+                .setHeader(ORIGIN_HEADER, instanceId)
+                .build());
+    }
+
+    public void broadcastClear(final String cacheName) {
+        send(MessageBuilder.withBody(new byte[0])
+                .setHeader(CACHE_HEADER, cacheName)
+                .setHeader(ORIGIN_HEADER, instanceId)
+                .setHeader(CLEAR_HEADER, true)
+                .build());
+    }
+
+    boolean isOwnMessage(final Message message) {
+        return instanceId.equals(message.getMessageProperties().getHeader(ORIGIN_HEADER));
+    }
+
+    /**
+     * Losing a broadcast is tolerated: the cache TTL bounds how long other
+     * replicas can serve the stale entry.
+     */
+    private void send(final Message message) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rabbitTemplate.send(CacheConfig.INVALIDATION_EXCHANGE, "", message);
+        } catch (AmqpException e) {
+            log.warn("Failed to broadcast cache invalidation for {}: {}",
+                    message.getMessageProperties().getHeader(CACHE_HEADER), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.podzilla.cart.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationListener {
+
+    private final CacheManager cacheManager;
+    private final CacheInvalidationBroadcaster broadcaster;
+
+    @RabbitListener(queues = "#{cacheInvalidationQueue.name}",
+            autoStartup = "${cart.cache.invalidation.enabled:true}")
+    public void onInvalidation(final Message message) {
+        if (broadcaster.isOwnMessage(message)) {
+            return;
+        }
+        String cacheName = message.getMessageProperties()
+                .getHeader(CacheInvalidationBroadcaster.CACHE_HEADER);
+        Cache cache = cacheName == null ? null : cacheManager.getCache(cacheName);
+        if (!(cache instanceof BroadcastingCache broadcastingCache)) {
+            log.warn("Ignoring invalidation for unknown cache: {}", cacheName);
+            return;
+        }
+
+        if (Boolean.TRUE.equals(message.getMessageProperties()
+                .getHeader(CacheInvalidationBroadcaster.CLEAR_HEADER))) {
+            log.debug("Clearing cache {} on remote request", cacheName);
+            broadcastingCache.clearLocally();
+        } else {
+            String key = new String(message.getBody(), StandardCharsets.UTF_8);
+            log.debug("Evicting key {} from cache {} on remote request", key, cacheName);
+            broadcastingCache.evictLocally(key);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.podzilla.cart.concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.metrics.CartMetrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the requests in flight per endpoint, configured as
+ * {@code METHOD /path-pattern=limit} rules (method {@code *} matches any).
+ * The first matching rule applies; requests over its limit are turned away
+ * at once with 429, before any other filter or Mongo work. With virtual
+ * threads there is no thread pool to do this implicitly.
+ *
+ * <p>A request that goes async, such as the NDJSON promo code export,
+ * keeps its permit until the async processing completes, errors or times
+ * out, not just until the initial dispatch returns.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    record Rule(String method, String pattern, int limit, Semaphore permits) {
+
+        String name() {
+            return method + " " + pattern;
+        }
+    }
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ObjectMapper objectMapper;
+    private final CartMetrics cartMetrics;
+    private final List<Rule> rules;
+
+    public ConcurrencyLimitFilter(final ObjectMapper objectMapper,
+                                  final CartMetrics cartMetrics,
+                                  @Value("${cart.limits.endpoints:}") final List<String> endpoints) {
+        this.objectMapper = objectMapper;
+        this.cartMetrics = cartMetrics;
+        this.rules = parse(endpoints);
+    }
+
+    private static List<Rule> parse(final List<String> endpoints) {
+        List<Rule> rules = new ArrayList<>();
+        for (String endpoint : endpoints) {
+            if (endpoint.isBlank()) {
+                continue;
+            }
+            int separator = endpoint.lastIndexOf('=');
+            String[] route = endpoint.substring(0, Math.max(separator, 0)).trim().split("\\s+");
+            if (separator < 0 || route.length != 2) {
+                throw new IllegalArgumentException("Expected 'METHOD /path=limit' in cart.limits.endpoints, got: "
+                        + endpoint);
+            }
+            int limit = Integer.parseInt(endpoint.substring(separator + 1).trim());
+            rules.add(new Rule(route[0].toUpperCase(), route[1], limit, new Semaphore(limit)));
+        }
+        return rules;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return rules.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain chain) throws ServletException, IOException {
+        Rule rule = match(request);
+        if (rule == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!rule.permits().tryAcquire()) {
+            log.debug("Rejecting {} {}: {} requests already in flight", request.getMethod(),
+                    request.getServletPath(), rule.limit());
+            cartMetrics.recordConcurrencyLimited(rule.name());
+            writeTooManyRequests(response);
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(rule.permits()));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                rule.permits().release();
+            }
+        }
+    }
+
+    /** Releases the permit once, whichever of complete, error or timeout comes first. */
+    private static final class ReleaseOnCompletion implements AsyncListener {
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleaseOnCompletion(final Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // Async restarted from a later dispatch: listeners are cleared, so stay registered.
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private Rule match(final HttpServletRequest request) {
+        for (Rule rule : rules) {
+            if (("*".equals(rule.method()) || rule.method().equals(request.getMethod()))
+                    && PATH_MATCHER.match(rule.pattern(), request.getServletPath())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private void writeTooManyRequests(final HttpServletResponse response) throws IOException {
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.put("error", HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        errorResponse.put("message", "Too many requests in progress for this endpoint, please retry");
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+}
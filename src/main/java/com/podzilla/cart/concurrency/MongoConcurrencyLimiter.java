@@ -0,0 +1,131 @@
+package com.podzilla.cart.concurrency;
+
+import com.podzilla.cart.exception.GlobalHandlerException;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Caps concurrent MongoTemplate operations when requests run on virtual
+ * threads. Without a platform thread pool in front, every request can
+ * reach the driver at once and pile up in its connection pool wait queue;
+ * with this they wait here instead, and give up with 503 after the acquire
+ * timeout. Repositories go through the same template, so they are covered.
+ *
+ * <p>A {@code stream(...)} call returns an open cursor that fetches more
+ * batches as it is consumed, so its permit is held until the stream is
+ * closed; callers must close it, as the promo code export does with
+ * try-with-resources. {@code bulkOps(...)} returns operations whose
+ * {@code execute()} takes a permit for the write.
+ *
+ * <p>Only the accessors in {@link #ACCESSORS} skip the permit. Raw driver
+ * collections from {@code getCollection(...)} are not limited once
+ * returned, so driver calls go through {@code execute(collectionName,
+ * callback)}, which holds a permit for the whole callback.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class MongoConcurrencyLimiter implements BeanPostProcessor {
+
+    /** MongoTemplate methods that do no I/O. */
+    static final Set<String> ACCESSORS = Set.of("getConverter", "getCollectionName", "getMongoDatabaseFactory",
+            "getExceptionTranslator", "getReadPreference");
+
+    private final int maxInFlight;
+    private final Duration acquireTimeout;
+    private final Semaphore permits;
+
+    public MongoConcurrencyLimiter(@Value("${cart.mongo.max-in-flight:100}") final int maxInFlight,
+                                   @Value("${cart.mongo.acquire-timeout:2s}") final Duration acquireTimeout) {
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(Math.max(maxInFlight, 1), true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (!(bean instanceof MongoTemplate) || maxInFlight <= 0) {
+            return bean;
+        }
+        log.info("Limiting {} to {} concurrent Mongo operations", beanName, maxInFlight);
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice((MethodInterceptor) this::invokeWithPermit);
+        return factory.getProxy();
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private Object invokeWithPermit(final MethodInvocation invocation) throws Throwable {
+        String name = invocation.getMethod().getName();
+        if (invocation.getMethod().getDeclaringClass() == Object.class || ACCESSORS.contains(name)) {
+            return invocation.proceed();
+        }
+        acquire(name);
+        boolean held = false;
+        try {
+            Object result = invocation.proceed();
+            if (result instanceof Stream<?> stream) {
+                Stream<?> limited = stream.onClose(permits::release);
+                held = true;
+                return limited;
+            }
+            if (result instanceof BulkOperations bulk) {
+                return limitExecute(bulk);
+            }
+            return result;
+        } finally {
+            if (!held) {
+                permits.release();
+            }
+        }
+    }
+
+    /** Queuing bulk writes does no I/O; execute() sends them, so it takes a permit of its own. */
+    private BulkOperations limitExecute(final BulkOperations bulk) {
+        ProxyFactory factory = new ProxyFactory(bulk);
+        factory.setInterfaces(BulkOperations.class);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            if (!"execute".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            acquire("bulkOps().execute");
+            try {
+                return invocation.proceed();
+            } finally {
+                permits.release();
+            }
+        });
+        return (BulkOperations) factory.getProxy();
+    }
+
+    private void acquire(final String operation) {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("No Mongo permit for {} within {}", operation, acquireTimeout);
+                throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE, "Database is busy, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Interrupted while waiting for the database", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.podzilla.cart.concurrency;
+
+import com.podzilla.cart.metrics.CartMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams JFR jdk.VirtualThreadPinned events and logs where a virtual
+ * thread blocked while pinned to its carrier (inside synchronized code or a
+ * native frame), which starves every other virtual thread of that carrier.
+ * Each distinct stack is logged in full once; repeats are only counted in
+ * the cart.virtual-threads.pinned metric.
+ */
+@Component
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_REPORTED_STACKS = 1000;
+
+    private final CartMetrics cartMetrics;
+    private final boolean enabled;
+    private final Duration threshold;
+    private final int maxFrames;
+    private final Set<String> reportedStacks = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(final CartMetrics cartMetrics,
+                                       @Value("${spring.threads.virtual.enabled:false}") final boolean virtualThreads,
+                                       @Value("${cart.virtual-threads.pinning-monitor.enabled:true}")
+                                       final boolean enabled,
+                                       @Value("${cart.virtual-threads.pinning-monitor.threshold:20ms}")
+                                       final Duration threshold,
+                                       @Value("${cart.virtual-threads.pinning-monitor.max-frames:24}")
+                                       final int maxFrames) {
+        this.cartMetrics = cartMetrics;
+        this.enabled = virtualThreads && enabled;
+        this.threshold = threshold;
+        this.maxFrames = maxFrames;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+        log.info("Reporting virtual thread pinning longer than {}", threshold);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    void report(final RecordedEvent event) {
+        Duration duration = event.getDuration();
+        String stack = format(event.getStackTrace());
+        cartMetrics.recordVirtualThreadPinned(duration);
+        if (reportedStacks.size() < MAX_REPORTED_STACKS && reportedStacks.add(stack)) {
+            log.warn("Virtual thread {} pinned its carrier for {} ms at:{}",
+                    event.getThread() == null ? "?" : event.getThread().getJavaName(),
+                    duration.toMillis(), stack);
+        } else {
+            log.debug("Virtual thread pinned for {} ms at a known stack", duration.toMillis());
+        }
+    }
+
+    private String format(final RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return " <no stack trace>";
+        }
+        StringBuilder builder = new StringBuilder();
+        int count = 0;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (count++ == maxFrames) {
+                builder.append("\n\t...");
+                break;
+            }
+            builder.append("\n\tat ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber());
+        }
+        return builder.toString();
+    }
+}
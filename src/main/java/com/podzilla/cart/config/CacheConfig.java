@@ -0,0 +1,86 @@
+package com.podzilla.cart.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.podzilla.cart.cache.BroadcastingCache;
+import com.podzilla.cart.cache.CacheInvalidationBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PROMO_CODES_CACHE = "promoCodes";
+    public static final String CARTS_CACHE = "carts";
+    public static final String CART_SUMMARIES_CACHE = "cartSummaries";
+    public static final String INVALIDATION_EXCHANGE = "cart.cache.invalidation";
+
+    @Bean
+    public CacheManager cacheManager(
+            final CacheInvalidationBroadcaster broadcaster,
+            final MeterRegistry meterRegistry,
+            @Value("${cart.cache.promo-codes.max-size:10000}") final long promoCodesMaxSize,
+            @Value("${cart.cache.promo-codes.ttl:5m}") final Duration promoCodesTtl,
+            @Value("${cart.cache.carts.max-size:50000}") final long cartsMaxSize,
+            @Value("${cart.cache.carts.ttl:30s}") final Duration cartsTtl,
+            @Value("${cart.cache.cart-summaries.max-size:50000}") final long cartSummariesMaxSize,
+            @Value("${cart.cache.cart-summaries.ttl:30s}") final Duration cartSummariesTtl) {
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(
+                broadcastingCache(PROMO_CODES_CACHE, promoCodesMaxSize, promoCodesTtl,
+                        broadcaster, meterRegistry),
+                broadcastingCache(CARTS_CACHE, cartsMaxSize, cartsTtl,
+                        broadcaster, meterRegistry),
+                broadcastingCache(CART_SUMMARIES_CACHE, cartSummariesMaxSize, cartSummariesTtl,
+                        broadcaster, meterRegistry)));
+        return cacheManager;
+    }
+
+    @Bean
+    public FanoutExchange cacheInvalidationExchange() {
+        return new FanoutExchange(INVALIDATION_EXCHANGE);
+    }
+
+    @Bean
+    public Queue cacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding cacheInvalidationBinding(final Queue cacheInvalidationQueue,
+                                            final FanoutExchange cacheInvalidationExchange) {
+        return BindingBuilder.bind(cacheInvalidationQueue).to(cacheInvalidationExchange);
+    }
+
+    /**
+     * Bounded, TTL-evicting Caffeine cache. Null values are allowed so that
+     * lookups of unknown keys are cached too.
+     */
+    private static BroadcastingCache broadcastingCache(final String name, final long maxSize,
+                                                       final Duration ttl,
+                                                       final CacheInvalidationBroadcaster broadcaster,
+                                                       final MeterRegistry meterRegistry) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nativeCache, name);
+        return new BroadcastingCache(new CaffeineCache(name, nativeCache, true), broadcaster);
+    }
+}
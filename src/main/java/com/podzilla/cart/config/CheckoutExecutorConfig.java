@@ -0,0 +1,48 @@
+package com.podzilla.cart.config;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Map;
+
+@Configuration
+public class CheckoutExecutorConfig {
+
+    public static final String CHECKOUT_EXECUTOR = "checkoutExecutor";
+
+    /**
+     * Fixed-size pool for asynchronous checkouts. The queue is bounded so
+     * that a stalled broker or database turns into fast 503s instead of an
+     * unbounded backlog.
+     */
+    @Bean(name = CHECKOUT_EXECUTOR)
+    public ThreadPoolTaskExecutor checkoutExecutor(
+            @Value("${cart.checkout.async.workers:8}") final int workers,
+            @Value("${cart.checkout.async.queue-capacity:1000}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("checkout-");
+        // Carry the request's MDC (customerId) over, so a traced customer's checkout stays traced
+        executor.setTaskDecorator(task -> {
+            Map<String, String> context = MDC.getCopyOfContextMap();
+            return () -> {
+                if (context != null) {
+                    MDC.setContextMap(context);
+                }
+                try {
+                    task.run();
+                } finally {
+                    MDC.clear();
+                }
+            };
+        });
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
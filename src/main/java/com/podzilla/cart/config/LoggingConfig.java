@@ -0,0 +1,56 @@
+package com.podzilla.cart.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import com.podzilla.cart.logging.CustomerDebugTurboFilter;
+import com.podzilla.cart.logging.SamplingTurboFilter;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds the per-customer trace and sampling filters to logback once it has
+ * been configured from logback-spring.xml, and takes them out again when
+ * the context closes.
+ */
+@Configuration
+public class LoggingConfig implements DisposableBean {
+
+    private final List<TurboFilter> registered = new ArrayList<>();
+
+    @Bean
+    public CustomerDebugTurboFilter customerDebugTurboFilter() {
+        return register(new CustomerDebugTurboFilter(Clock.systemUTC()));
+    }
+
+    /** Registered after the customer trace, which has to see events first. */
+    @Bean
+    public SamplingTurboFilter samplingTurboFilter(final CustomerDebugTurboFilter customerDebugTurboFilter,
+                                                   @Value("${cart.logging.sample-every:100}") final int every) {
+        return register(new SamplingTurboFilter(every));
+    }
+
+    @Override
+    public void destroy() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getTurboFilterList().removeAll(registered);
+        }
+        registered.forEach(TurboFilter::stop);
+    }
+
+    private <T extends TurboFilter> T register(final T filter) {
+        filter.start();
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            filter.setContext(context);
+            context.addTurboFilter(filter);
+            registered.add(filter);
+        }
+        return filter;
+    }
+}
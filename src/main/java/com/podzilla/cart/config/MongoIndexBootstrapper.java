@@ -0,0 +1,128 @@
+package com.podzilla.cart.config;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartEvent;
+import com.podzilla.cart.model.CartHistory;
+import com.podzilla.cart.model.CheckoutJob;
+import com.podzilla.cart.model.IdempotencyRecord;
+import com.podzilla.cart.model.OutboxEvent;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the declared indexes once the application is ready, on a
+ * separate thread so that index builds on large collections never delay
+ * startup or readiness, after backfilling cart versions the same way.
+ * Spring Data's auto-index-creation stays off.
+ */
+@Component
+@Slf4j
+public class MongoIndexBootstrapper {
+
+    static final String LAST_MODIFIED_INDEX = "last_modified_idx";
+
+    private static final List<Class<?>> INDEXED_DOCUMENTS =
+            List.of(Cart.class, CartEvent.class, CartHistory.class, PromoCode.class, OutboxEvent.class,
+                    CheckoutJob.class, IdempotencyRecord.class, PromoCodeBulkJob.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final Duration cartTtl;
+
+    public MongoIndexBootstrapper(final MongoTemplate mongoTemplate,
+                                  @Value("${cart.index.bootstrap.enabled:true}") final boolean enabled,
+                                  @Value("${cart.index.cart-ttl:}") final Duration cartTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.cartTtl = cartTtl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("Mongo index bootstrap disabled");
+            return;
+        }
+        Thread.ofVirtual().name("mongo-index-bootstrap").start(() -> {
+            backfillCartVersions();
+            ensureIndexes();
+        });
+    }
+
+    /**
+     * Gives carts stored before carts were versioned version 0. Without a
+     * version, Spring Data treats a loaded cart as new and its save fails
+     * with a duplicate key; CartService also covers carts it reads before
+     * this has run.
+     */
+    public void backfillCartVersions() {
+        try {
+            long updated = mongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), Cart.class).getModifiedCount();
+            if (updated > 0) {
+                log.info("Set version 0 on {} carts stored without one", updated);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to backfill cart versions", e);
+        }
+    }
+
+    public void ensureIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        for (Class<?> type : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            resolver.resolveIndexFor(type).forEach(definition -> {
+                try {
+                    String name = indexOps.ensureIndex(definition);
+                    log.info("Ensured index {} on {}", name, type.getSimpleName());
+                } catch (RuntimeException e) {
+                    log.error("Failed to ensure index {} on {}", definition.getIndexKeys(),
+                            type.getSimpleName(), e);
+                }
+            });
+        }
+        ensureLastModifiedIndex(mongoTemplate.indexOps(Cart.class));
+    }
+
+    /**
+     * Indexes lastModified, with a TTL when cart.index.cart-ttl is set so that
+     * abandoned carts expire. Changing the TTL later requires dropping the
+     * existing index first.
+     */
+    private void ensureLastModifiedIndex(final IndexOperations indexOps) {
+        Index index = new Index().on("lastModified", Sort.Direction.ASC)
+                .named(LAST_MODIFIED_INDEX);
+        if (cartTtl != null && !cartTtl.isZero()) {
+            index.expire(cartTtl);
+        }
+        try {
+            indexOps.ensureIndex(index);
+            log.info("Ensured index {} on Cart (ttl: {})", LAST_MODIFIED_INDEX, cartTtl);
+        } catch (RuntimeException e) {
+            log.error("Failed to ensure index {} on Cart", LAST_MODIFIED_INDEX, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.podzilla.cart.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class PromoCodeBulkExecutorConfig {
+
+    public static final String PROMO_CODE_BULK_EXECUTOR = "promoCodeBulkExecutor";
+
+    /**
+     * Runs bulk promo code jobs, each on one thread that reads its input
+     * and hands batches to the database. Few jobs run at once and few wait;
+     * more are turned away with 503 rather than queued behind hours of work.
+     */
+    @Bean(name = PROMO_CODE_BULK_EXECUTOR)
+    public ThreadPoolTaskExecutor promoCodeBulkExecutor(
+            @Value("${cart.promo-codes.bulk.workers:2}") final int workers,
+            @Value("${cart.promo-codes.bulk.queue-capacity:4}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("promo-bulk-");
+        return executor;
+    }
+}
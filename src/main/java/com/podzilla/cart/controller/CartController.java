@@ -1,7 +1,13 @@
 package com.podzilla.cart.controller;
 
+import com.podzilla.cart.dto.BatchCartRequest;
+import com.podzilla.cart.dto.BatchCartResponse;
+import com.podzilla.cart.dto.CartDelta;
+import com.podzilla.cart.dto.CartSummary;
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CheckoutJob;
 import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CheckoutJobService;
 import com.podzilla.mq.events.ConfirmationType;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,6 +15,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,8 +32,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import com.podzilla.cart.model.CartItem;
 import io.swagger.v3.oas.annotations.media.Content;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/carts")
 @RequiredArgsConstructor
 @Tag(name = "Cart Controller", description = "Handles cart"
@@ -35,7 +44,11 @@ import org.springframework.web.bind.annotation.RequestHeader;
 @Slf4j
 public class CartController {
 
+    private static final String MINIMAL_RESPONSE_DESCRIPTION = "Send 'Prefer: return=minimal' to get only"
+            + " the affected item, the new totals and the cart version instead of the whole cart";
+
     private final CartService cartService;
+    private final CheckoutJobService checkoutJobService;
 
     @Operation(summary = "Create a new cart for a "
             + "customer or return existing one")
@@ -64,6 +77,9 @@ public class CartController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Cart retrieved successfully"),
+            @ApiResponse(responseCode = "304",
+                    description = "Cart unchanged since the ETag in If-None-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "404",
                     description = "Cart not found for this customer")
     })
@@ -76,7 +92,51 @@ public class CartController {
                 customerId);
         Cart cart = cartService.getCartByCustomerId(customerId);
         log.debug("Cart retrieved:", cart);
-        return ResponseEntity.ok(cart);
+        // Spring answers 304 without writing the body when If-None-Match matches.
+        String eTag = eTagOf(cart.getId(), cart.getVersion());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.body(cart);
+    }
+
+    @Operation(summary = "Get cart totals and item count",
+            description = "Everything the header badge and mini-cart need,"
+                    + " without the items. Carries the same ETag as the full cart.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Cart summary retrieved successfully"),
+            @ApiResponse(responseCode = "304",
+                    description = "Cart unchanged since the ETag in If-None-Match",
+                    content = @Content),
+            @ApiResponse(responseCode = "404",
+                    description = "Cart not found for this customer")
+    })
+
+    @GetMapping("/customer/summary")
+    public ResponseEntity<CartSummary> getCartSummary(
+            @RequestHeader("X-User-Id") final String customerId) {
+        log.debug("Entering getCartSummary endpoint with customerId: {}", customerId);
+        CartSummary summary = cartService.getCartSummary(customerId);
+        String eTag = eTagOf(summary.getId(), summary.getVersion());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (eTag != null) {
+            response.eTag(eTag);
+        }
+        return response.body(summary);
+    }
+
+    /**
+     * Strong ETag from the cart id and version, which every write bumps.
+     * Carts stored before versioning have none and are never reported as
+     * unchanged.
+     */
+    private static String eTagOf(final String cartId, final Long version) {
+        if (version == null) {
+            return null;
+        }
+        return "\"" + cartId + "-" + version + "\"";
     }
 
     @Operation(summary = "Delete cart by customer ID")
@@ -100,7 +160,8 @@ public class CartController {
     }
 
     @Operation(summary = "Add an item to the cart"
-            + " or update its quantity if already exists")
+            + " or update its quantity if already exists",
+            description = MINIMAL_RESPONSE_DESCRIPTION)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Item added or updated successfully"),
@@ -110,19 +171,43 @@ public class CartController {
                     description = "Cart not found for this customer")
     })
     @PostMapping("/items")
-    public ResponseEntity<Cart> addItemToCart(
+    public ResponseEntity<?> addItemToCart(
             @RequestHeader("X-User-Id") final String customerId,
+            @RequestHeader(value = "Prefer", required = false) final String prefer,
             @RequestBody final CartItem cartItem) {
         log.debug("Entering addItemToCart"
                 + " endpoint with customerId: {},"
                 + " cartItem: {}", customerId, cartItem);
         Cart updatedCart = cartService.addItemToCart(customerId, cartItem);
         log.debug("Cart updated with new item: {}", updatedCart);
-        return ResponseEntity.ok(updatedCart);
+        return mutationResponse(updatedCart, cartItem.getProductId(), prefer);
+    }
+
+    @Operation(summary = "Apply several add, update and remove "
+            + "operations with one load and one save")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "All operations applied"),
+            @ApiResponse(responseCode = "400",
+                    description = "Invalid operation, nothing was applied"),
+            @ApiResponse(responseCode = "404",
+                    description = "Cart or item not found, nothing was applied")
+    })
+    @PostMapping("/items:batch")
+    public ResponseEntity<BatchCartResponse> applyBatch(
+            @RequestHeader("X-User-Id") final String customerId,
+            @RequestBody final BatchCartRequest request) {
+        log.debug("Entering applyBatch endpoint with customerId: {},"
+                + " operations: {}", customerId, request.getOperations());
+        BatchCartResponse response = cartService.applyBatch(
+                customerId, request.getOperations());
+        log.debug("Batch applied, updated cart: {}", response.getCart());
+        return ResponseEntity.ok(response);
     }
 
     @Operation(summary = "Update quantity "
-            + "of an existing item in the cart")
+            + "of an existing item in the cart",
+            description = MINIMAL_RESPONSE_DESCRIPTION)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Quantity updated successfully"),
@@ -132,8 +217,9 @@ public class CartController {
                     description = "Cart or item not found")
     })
     @PatchMapping("/items/{productId}")
-    public ResponseEntity<Cart> updateItemQuantity(
+    public ResponseEntity<?> updateItemQuantity(
             @RequestHeader("X-User-Id") final String customerId,
+            @RequestHeader(value = "Prefer", required = false) final String prefer,
             @PathVariable("productId") final String productId,
             @RequestParam final int quantity) {
         log.debug("Entering updateItemQuantity"
@@ -144,10 +230,11 @@ public class CartController {
                 customerId, productId, quantity);
         log.debug("Cart updated with new quantity:",
                 updatedCart);
-        return ResponseEntity.ok(updatedCart);
+        return mutationResponse(updatedCart, productId, prefer);
     }
 
-    @Operation(summary = "Remove an item from the cart")
+    @Operation(summary = "Remove an item from the cart",
+            description = MINIMAL_RESPONSE_DESCRIPTION)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Item removed successfully"),
@@ -155,8 +242,9 @@ public class CartController {
                     description = "Cart or item not found")
     })
     @DeleteMapping("/items/{productId}")
-    public ResponseEntity<Cart> removeItemFromCart(
+    public ResponseEntity<?> removeItemFromCart(
             @RequestHeader("X-User-Id") final String customerId,
+            @RequestHeader(value = "Prefer", required = false) final String prefer,
             @PathVariable("productId") final String productId) {
         log.debug("Entering removeItemFromCart"
                 + " endpoint with customerId:,"
@@ -165,6 +253,50 @@ public class CartController {
                 .removeItemFromCart(customerId, productId);
         log.debug("Cart updated after item removal:",
                 updatedCart);
+        return mutationResponse(updatedCart, productId, prefer);
+    }
+
+    @Operation(summary = "Undo the most recent item change",
+            description = "Takes back the last add, quantity update, remove or batch still in the"
+                    + " customer's undo history. History is cleared by clear, archive and checkout.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Change undone, returns the updated cart"),
+            @ApiResponse(responseCode = "404",
+                    description = "Cart not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409",
+                    description = "Nothing to undo",
+                    content = @Content)
+    })
+
+    @PostMapping("/undo")
+    public ResponseEntity<Cart> undo(
+            @RequestHeader("X-User-Id") final String customerId) {
+        log.debug("Entering undo endpoint with customerId: {}", customerId);
+        Cart updatedCart = cartService.undo(customerId);
+        log.debug("Undo applied, updated cart: {}", updatedCart);
+        return ResponseEntity.ok(updatedCart);
+    }
+
+    @Operation(summary = "Redo the most recently undone item change")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Change redone, returns the updated cart"),
+            @ApiResponse(responseCode = "404",
+                    description = "Cart not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "409",
+                    description = "Nothing to redo",
+                    content = @Content)
+    })
+
+    @PostMapping("/redo")
+    public ResponseEntity<Cart> redo(
+            @RequestHeader("X-User-Id") final String customerId) {
+        log.debug("Entering redo endpoint with customerId: {}", customerId);
+        Cart updatedCart = cartService.redo(customerId);
+        log.debug("Redo applied, updated cart: {}", updatedCart);
         return ResponseEntity.ok(updatedCart);
     }
 
@@ -222,19 +354,25 @@ public class CartController {
         return ResponseEntity.ok(activeCart);
     }
 
-    @Operation(summary = "Checkout cart by sending it to the Order Service")
+    @Operation(summary = "Checkout cart by sending it to the Order Service."
+            + " Send 'Prefer: respond-async' to get 202 and poll the checkout status")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Cart checked out and sent to Order Service"),
+            @ApiResponse(responseCode = "202",
+                    description = "Checkout accepted, poll the Location for its status"),
+            @ApiResponse(responseCode = "400",
+                    description = "Empty cart or missing signature"),
             @ApiResponse(responseCode = "404",
                     description = "Cart not found"),
-            @ApiResponse(responseCode = "500",
-                    description = "Failed to communicate with Order Service")
+            @ApiResponse(responseCode = "503",
+                    description = "Could not publish the checkout, or too many in progress")
     })
 
     @PostMapping("/checkout")
-    public ResponseEntity<Cart> checkoutCart(
+    public ResponseEntity<?> checkoutCart(
             @RequestHeader("X-User-Id") final String customerId,
+            @RequestHeader(value = "Prefer", required = false) final String prefer,
             @RequestParam(required = true) final ConfirmationType confirmationType,
             @RequestParam(required = false) final String signature,
             @RequestParam(required = true) final Double longitude,
@@ -244,18 +382,44 @@ public class CartController {
         log.debug("Entering checkoutCart endpoint with customerId: {},"
                         + " confirmationType: {}, signature: {}",
                 customerId, confirmationType, signature);
-        try {
-            Cart updatedCart = cartService.checkoutCart(customerId, confirmationType,
-             signature, longitude, latitude, address);
-            log.debug("Cart checked out: {}", updatedCart);
-            return ResponseEntity.ok(updatedCart);
-        } catch (Exception ex) {
-            log.error("Error during checkout for customerId: {}", customerId, ex);
-            throw new IllegalCallerException("Error communicating with Order Service");
+        if (prefer != null && prefer.toLowerCase().contains("respond-async")) {
+            CheckoutJob job = checkoutJobService.submit(customerId,
+                    confirmationType, signature, longitude, latitude, address);
+            log.debug("Checkout accepted as job: {}", job.getId());
+            return ResponseEntity.accepted()
+                    .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                            .path("/{checkoutId}")
+                            .buildAndExpand(job.getId())
+                            .toUri())
+                    .header("Preference-Applied", "respond-async")
+                    .body(job);
         }
+        Cart updatedCart = cartService.checkoutCart(customerId, confirmationType,
+                signature, longitude, latitude, address);
+        log.debug("Cart checked out: {}", updatedCart);
+        return ResponseEntity.ok(updatedCart);
+    }
+
+    @Operation(summary = "Get the status of an asynchronous checkout")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Checkout status (PENDING, PUBLISHED, STAGED or FAILED)"),
+            @ApiResponse(responseCode = "404",
+                    description = "No such checkout for this customer")
+    })
+
+    @GetMapping("/checkout/{checkoutId}")
+    public ResponseEntity<CheckoutJob> getCheckoutStatus(
+            @RequestHeader("X-User-Id") final String customerId,
+            @PathVariable("checkoutId") final String checkoutId) {
+        log.debug("Entering getCheckoutStatus endpoint with customerId: {},"
+                + " checkoutId: {}", customerId, checkoutId);
+        CheckoutJob job = checkoutJobService.getJob(customerId, checkoutId);
+        return ResponseEntity.ok(job);
     }
 
-    @Operation(summary = "Apply a promo code to the cart")
+    @Operation(summary = "Apply a promo code to the cart",
+            description = MINIMAL_RESPONSE_DESCRIPTION)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Promo code applied successfully"),
@@ -266,8 +430,9 @@ public class CartController {
     })
 
     @PostMapping("/promo/{promoCode}")
-    public ResponseEntity<Cart> applyPromoCode(
+    public ResponseEntity<?> applyPromoCode(
             @RequestHeader("X-User-Id") final String customerId,
+            @RequestHeader(value = "Prefer", required = false) final String prefer,
             @PathVariable("promoCode") final String promoCode) {
         log.debug("Entering applyPromoCode endpoint with "
                 + "customerId: {}, promoCode: {}",
@@ -276,7 +441,7 @@ public class CartController {
                 customerId, promoCode);
         log.debug("Promo code applied, updated cart: "
                 + "{}", updatedCart);
-        return ResponseEntity.ok(updatedCart);
+        return mutationResponse(updatedCart, null, prefer);
     }
 
     @Operation(summary = "Remove the applied promo code from the cart")
@@ -297,4 +462,18 @@ public class CartController {
                 + " updated cart: {}", updatedCart);
         return ResponseEntity.ok(updatedCart);
     }
+
+    /**
+     * The full cart, or with {@code Prefer: return=minimal} only what the
+     * mutation changed: the item for {@code productId}, totals and version.
+     */
+    private static ResponseEntity<?> mutationResponse(final Cart cart, final String productId,
+                                                      final String prefer) {
+        if (prefer != null && prefer.toLowerCase().contains("return=minimal")) {
+            return ResponseEntity.ok()
+                    .header("Preference-Applied", "return=minimal")
+                    .body(CartDelta.of(cart, productId));
+        }
+        return ResponseEntity.ok(cart);
+    }
 }
@@ -0,0 +1,72 @@
+package com.podzilla.cart.controller;
+
+import com.podzilla.auth.annotations.AllowedRoles;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.logging.CustomerDebugTurboFilter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/admin/logging/customers")
+@AllowedRoles({"ROLE_ADMIN"})
+@Tag(name = "Logging Admin", description = "Trace single customers at debug level (Requires Admin Role)")
+@Slf4j
+public class LoggingController {
+
+    private final CustomerDebugTurboFilter customerDebug;
+    private final Duration maxDuration;
+
+    public LoggingController(final CustomerDebugTurboFilter customerDebug,
+                             @Value("${cart.logging.customer-debug.max-duration:1h}") final Duration maxDuration) {
+        this.customerDebug = customerDebug;
+        this.maxDuration = maxDuration;
+    }
+
+    @Operation(summary = "List customers being traced and when each trace ends")
+    @GetMapping
+    public ResponseEntity<Map<String, Instant>> getTracedCustomers() {
+        return ResponseEntity.ok(customerDebug.traced());
+    }
+
+    @Operation(summary = "Log everything for a customer's requests, at any level, for a number of minutes")
+    @PutMapping("/{customerId}")
+    public ResponseEntity<Map<String, Instant>> traceCustomer(
+            @PathVariable final String customerId,
+            @RequestParam(defaultValue = "15") final long minutes) {
+        Duration duration = Duration.ofMinutes(minutes);
+        if (minutes <= 0 || duration.compareTo(maxDuration) > 0) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                    "minutes must be between 1 and " + maxDuration.toMinutes());
+        }
+        Instant until = customerDebug.enable(customerId, duration);
+        log.info("Tracing customerId: {} at debug level until {}", customerId, until);
+        return ResponseEntity.ok(Map.of(customerId, until));
+    }
+
+    @Operation(summary = "Stop tracing a customer")
+    @DeleteMapping("/{customerId}")
+    public ResponseEntity<Void> stopTracingCustomer(@PathVariable final String customerId) {
+        if (!customerDebug.disable(customerId)) {
+            return ResponseEntity.notFound().build();
+        }
+        log.info("Stopped tracing customerId: {}", customerId);
+        return ResponseEntity.noContent().build();
+    }
+}
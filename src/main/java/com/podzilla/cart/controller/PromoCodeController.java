@@ -1,14 +1,28 @@
 package com.podzilla.cart.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.podzilla.auth.annotations.AllowedRoles;
+import com.podzilla.cart.dto.PromoCodeFilter;
+import com.podzilla.cart.dto.PromoCodeGenerationRequest;
+import com.podzilla.cart.dto.PromoCodePage;
+import com.podzilla.cart.exception.GlobalHandlerException;
 import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import com.podzilla.cart.service.PromoCodeBulkService;
 import com.podzilla.cart.service.PromoCodeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
@@ -17,11 +31,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/admin/promocodes")
 @AllowedRoles({"ROLE_ADMIN"})
 @RequiredArgsConstructor
@@ -29,7 +49,11 @@ import java.util.List;
 @Slf4j
 public class PromoCodeController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final PromoCodeService promoCodeService;
+    private final PromoCodeBulkService promoCodeBulkService;
+    private final ObjectMapper objectMapper;
 
     @Operation(summary = "Create a Promo Code")
     @PostMapping
@@ -40,11 +64,101 @@ public class PromoCodeController {
         return ResponseEntity.ok(savedPromoCode);
     }
 
-    @Operation(summary = "Get all Promo Codes")
+    @Operation(summary = "List Promo Codes",
+            description = "One page in code order. Pass the last code of a page as 'after' to get the next;"
+                    + " the Link header (rel=next) carries that URL and is absent on the last page.")
     @GetMapping
-    public ResponseEntity<List<PromoCode>> getAllPromoCodes() {
-        log.info("Admin request to get all promo codes");
-        return ResponseEntity.ok(promoCodeService.findAll());
+    public ResponseEntity<List<PromoCode>> getPromoCodes(
+            @RequestParam(required = false) final String after,
+            @RequestParam(defaultValue = "100") final int limit,
+            @RequestParam(required = false) final Boolean active,
+            @RequestParam(required = false) final Boolean expired,
+            @RequestParam(required = false) final PromoCode.DiscountType discountType) {
+        log.info("Admin request to list promo codes after {} (limit {})", after, limit);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        PromoCodePage page = promoCodeService.findPage(
+                new PromoCodeFilter(active, expired, discountType), after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextAfter() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.getNextAfter())
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.getPromoCodes());
+    }
+
+    @Operation(summary = "Export Promo Codes as NDJSON",
+            description = "Every matching code in code order, one JSON object per line, written"
+                    + " from a database cursor as it is read. Takes the same filters as the listing.")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPromoCodes(
+            @RequestParam(required = false) final String after,
+            @RequestParam(required = false) final Boolean active,
+            @RequestParam(required = false) final Boolean expired,
+            @RequestParam(required = false) final PromoCode.DiscountType discountType) {
+        log.info("Admin request to export promo codes after {}", after);
+        PromoCodeFilter filter = new PromoCodeFilter(active, expired, discountType);
+        ObjectWriter writer = objectMapper.writerFor(PromoCode.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (Stream<PromoCode> promoCodes = promoCodeService.stream(filter, after);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+                         .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                         .setRootValueSeparator(null)) {
+                // Each object ends its own line instead of being space-separated.
+                Iterator<PromoCode> iterator = promoCodes.iterator();
+                while (iterator.hasNext()) {
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @Operation(summary = "Generate Promo Codes in bulk",
+            description = "Creates 'count' codes of the form prefix + random suffix sharing one discount,"
+                    + " in the background. Poll the Location for progress.")
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PromoCodeBulkJob> generatePromoCodes(
+            @RequestBody final PromoCodeGenerationRequest request) {
+        log.info("Admin request to generate {} promo codes with prefix '{}'",
+                request.getCount(), request.getPrefix());
+        return accepted(promoCodeBulkService.submitGeneration(request));
+    }
+
+    @Operation(summary = "Import Promo Codes in bulk",
+            description = "Inserts codes from CSV (header row of PromoCode field names) or NDJSON (one"
+                    + " PromoCode per line) in the background. Existing codes are counted as duplicates"
+                    + " and left unchanged. Poll the Location for progress.")
+    @PostMapping(value = "/bulk", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<PromoCodeBulkJob> importPromoCodes(final HttpServletRequest request)
+            throws IOException {
+        log.info("Admin request to import promo codes ({})", request.getContentType());
+        return accepted(promoCodeBulkService.submitImport(
+                MediaType.parseMediaType(request.getContentType()), request.getInputStream()));
+    }
+
+    @Operation(summary = "Get the progress of a bulk generation or import")
+    @GetMapping("/bulk/{jobId}")
+    public ResponseEntity<PromoCodeBulkJob> getBulkJob(@PathVariable final String jobId) {
+        return ResponseEntity.ok(promoCodeBulkService.getJob(jobId));
+    }
+
+    private static ResponseEntity<PromoCodeBulkJob> accepted(final PromoCodeBulkJob job) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                        .path("/{jobId}")
+                        .buildAndExpand(job.getId())
+                        .toUri())
+                .body(job);
     }
 
     @Operation(summary = "Get a specific Promo Code by code")
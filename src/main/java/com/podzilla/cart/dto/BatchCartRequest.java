@@ -0,0 +1,16 @@
+package com.podzilla.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCartRequest {
+
+    private List<CartOperation> operations = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.Cart;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCartResponse {
+
+    private Cart cart;
+
+    private List<CartOperationResult> results;
+}
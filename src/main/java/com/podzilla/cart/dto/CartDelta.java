@@ -0,0 +1,41 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Response of a cart mutation sent with {@code Prefer: return=minimal}:
+ * the affected item, the recomputed totals and the new version instead of
+ * the whole cart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDelta {
+
+    private String cartId;
+
+    private Long version;
+
+    /** The item as it is after the change; null once removed and for promo changes. */
+    private CartItem item;
+
+    private BigDecimal subTotal;
+
+    private BigDecimal discountAmount;
+
+    private BigDecimal totalPrice;
+
+    private String appliedPromoCode;
+
+    public static CartDelta of(final Cart cart, final String productId) {
+        CartItem item = productId == null ? null : cart.findItem(productId).orElse(null);
+        return new CartDelta(cart.getId(), cart.getVersion(), item, cart.getSubTotal(),
+                cart.getDiscountAmount(), cart.getTotalPrice(), cart.getAppliedPromoCode());
+    }
+}
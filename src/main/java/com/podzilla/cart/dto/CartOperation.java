@@ -0,0 +1,27 @@
+package com.podzilla.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperation {
+
+    public enum Type {
+        ADD,
+        UPDATE_QUANTITY,
+        REMOVE
+    }
+
+    private Type type;
+
+    private String productId;
+
+    private Integer quantity;
+
+    private BigDecimal unitPrice;
+}
@@ -0,0 +1,20 @@
+package com.podzilla.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationResult {
+
+    private int index;
+
+    private CartOperation.Type type;
+
+    private String productId;
+
+    /** Quantity of the product in the cart after the operation, 0 if absent. */
+    private int quantity;
+}
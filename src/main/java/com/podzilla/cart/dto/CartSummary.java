@@ -0,0 +1,40 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.Cart;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * What the header badge and mini-cart show: the cart's totals and how many
+ * lines it has, without the items themselves.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+
+    private String id;
+
+    /** Number of distinct products in the cart. */
+    private int itemCount;
+
+    private BigDecimal subTotal;
+
+    private BigDecimal discountAmount;
+
+    private BigDecimal totalPrice;
+
+    private String appliedPromoCode;
+
+    /** The cart's version, for the ETag. */
+    private Long version;
+
+    public static CartSummary of(final Cart cart) {
+        return new CartSummary(cart.getId(), cart.getItems() == null ? 0 : cart.getItems().size(),
+                cart.getSubTotal(), cart.getDiscountAmount(), cart.getTotalPrice(),
+                cart.getAppliedPromoCode(), cart.getVersion());
+    }
+}
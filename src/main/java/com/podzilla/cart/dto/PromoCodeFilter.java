@@ -0,0 +1,20 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.PromoCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Admin listing filters; a null field does not filter. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromoCodeFilter {
+
+    private Boolean active;
+
+    /** True for codes past their expiry date, false for codes without one or not yet expired. */
+    private Boolean expired;
+
+    private PromoCode.DiscountType discountType;
+}
@@ -0,0 +1,38 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.PromoCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Generates {@code count} codes of the form prefix + random suffix, all
+ * sharing the discount given here.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromoCodeGenerationRequest {
+
+    private String prefix = "";
+
+    private long count;
+
+    /** Length of the random part; 10 characters give 2^50 possible codes per prefix. */
+    private int suffixLength = 10;
+
+    private String description;
+
+    private PromoCode.DiscountType discountType;
+
+    private BigDecimal discountValue;
+
+    private boolean active = true;
+
+    private Instant expiryDate;
+
+    private BigDecimal minimumPurchaseAmount;
+}
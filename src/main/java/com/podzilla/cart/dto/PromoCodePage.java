@@ -0,0 +1,19 @@
+package com.podzilla.cart.dto;
+
+import com.podzilla.cart.model.PromoCode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromoCodePage {
+
+    private List<PromoCode> promoCodes;
+
+    /** Code to pass as {@code after} for the next page, null on the last page. */
+    private String nextAfter;
+}
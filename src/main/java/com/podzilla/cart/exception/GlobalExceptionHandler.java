@@ -1,5 +1,7 @@
 package com.podzilla.cart.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -21,4 +23,13 @@ public class GlobalExceptionHandler
         errorResponse.put("message", ex.getMessage());
         return new ResponseEntity<>(errorResponse, ex.getStatus());
     }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>>
+    handleOptimisticLockingFailure(final
+                                   OptimisticLockingFailureException ex) {
+        return handleGlobalHandlerException(new GlobalHandlerException(
+                HttpStatus.CONFLICT,
+                "Cart was modified concurrently, please retry", ex));
+    }
 }
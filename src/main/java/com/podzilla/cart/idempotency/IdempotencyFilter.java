@@ -0,0 +1,239 @@
+package com.podzilla.cart.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.IdempotencyRecord;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes POSTs to the configured cart endpoints safe to retry. A request
+ * carrying an Idempotency-Key runs once per customer and key; retries with
+ * the same key and the same request get the stored response back, marked
+ * with Idempotent-Replayed, without running the command again.
+ *
+ * <p>Server errors, 409 and 429 are not stored, so the key can be retried.
+ * {@link ReactiveIdempotencyFilter} does the same on the reactive stack.
+ */
+@Component
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final String CUSTOMER_HEADER = "X-User-Id";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<String> paths;
+
+    public IdempotencyFilter(final IdempotencyStore store,
+                             final ObjectMapper objectMapper,
+                             @Value("${cart.idempotency.enabled:true}") final boolean enabled,
+                             @Value("${cart.idempotency.paths:/carts/items,/carts/items:batch,/carts/checkout}")
+                             final List<String> paths) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.paths = paths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || !paths.contains(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain chain) throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        String customerId = request.getHeader(CUSTOMER_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH || customerId == null) {
+            writeError(response, HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be 1-" + MAX_KEY_LENGTH + " characters and needs X-User-Id");
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        IdempotencyStore.Claim claim = store.claim(customerId, key, fingerprint(request.getMethod(),
+                request.getServletPath(), request.getQueryString(), cachedRequest.body));
+        switch (claim.result()) {
+            case REPLAY -> replay(claim.record(), response);
+            case IN_PROGRESS -> {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                writeError(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is in progress");
+            }
+            case MISMATCH -> writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+            case ACQUIRED -> execute(claim.record(), cachedRequest, response, chain);
+            default -> throw new IllegalStateException("Unexpected claim result " + claim.result());
+        }
+    }
+
+    private void execute(final IdempotencyRecord record, final HttpServletRequest request,
+                         final HttpServletResponse response, final FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(request, cachingResponse);
+            int status = cachingResponse.getStatus();
+            if (isReplayable(status)) {
+                try {
+                    store.complete(record, status, cachingResponse.getContentType(),
+                            cachingResponse.getHeader(HttpHeaders.LOCATION),
+                            cachingResponse.getContentAsByteArray());
+                    stored = true;
+                } catch (RuntimeException e) {
+                    log.error("Could not store response for idempotency key {}", record.getId(), e);
+                }
+            }
+        } finally {
+            if (!stored) {
+                store.release(record);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    static boolean isReplayable(final int status) {
+        return status < HttpStatus.INTERNAL_SERVER_ERROR.value()
+                && status != HttpStatus.CONFLICT.value()
+                && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static void replay(final IdempotencyRecord record, final HttpServletResponse response)
+            throws IOException {
+        response.setStatus(record.getResponseStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (record.getResponseContentType() != null) {
+            response.setContentType(record.getResponseContentType());
+        }
+        if (record.getResponseLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, record.getResponseLocation());
+        }
+        if (record.getResponseBody() != null) {
+            response.setContentLength(record.getResponseBody().length);
+            response.getOutputStream().write(record.getResponseBody());
+        }
+    }
+
+    private void writeError(final HttpServletResponse response, final HttpStatus status, final String message)
+            throws IOException {
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("status", status.value());
+        errorResponse.put("error", status.getReasonPhrase());
+        errorResponse.put("message", message);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    /** Shared with ReactiveIdempotencyFilter, so a key means the same request on either stack. */
+    static String fingerprint(final String method, final String path, final String query, final byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + '\n' + path + '\n' + (query == null ? "" : query) + '\n')
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Reads the body up front so it can be fingerprinted and still be read by the controller. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(final HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(final ReadListener readListener) {
+                    // The whole body is already in memory, so it can be read at once.
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.podzilla.cart.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.podzilla.cart.model.IdempotencyRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Mongo-backed store of idempotency keys with a small local cache of
+ * completed records, which never change once written. Records expire
+ * through the TTL index on createdAt.
+ *
+ * <p>Every claim carries a fresh token. Completing or releasing a key is
+ * conditional on that token, so a request whose key was taken over after
+ * its lease ran out cannot overwrite or delete the new owner's record.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public enum ClaimResult {
+        /** The caller owns the key and must complete or release it. */
+        ACQUIRED,
+        /** A previous request with this key finished; replay its response. */
+        REPLAY,
+        /** A request with this key is still running. */
+        IN_PROGRESS,
+        /** The key was used for a different request. */
+        MISMATCH
+    }
+
+    public record Claim(ClaimResult result, IdempotencyRecord record) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration inProgressLease;
+    private final Cache<String, IdempotencyRecord> completed;
+
+    public IdempotencyStore(final MongoTemplate mongoTemplate,
+                            @Value("${cart.idempotency.in-progress-lease:60s}") final Duration inProgressLease,
+                            @Value("${cart.idempotency.front-cache.max-size:10000}") final long frontCacheSize,
+                            @Value("${cart.idempotency.front-cache.ttl:10m}") final Duration frontCacheTtl) {
+        this.mongoTemplate = mongoTemplate;
+        this.inProgressLease = inProgressLease;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(frontCacheSize)
+                .expireAfterWrite(frontCacheTtl)
+                .build();
+    }
+
+    public Claim claim(final String customerId, final String key, final String fingerprint) {
+        String id = id(customerId, key);
+        IdempotencyRecord cached = completed.getIfPresent(id);
+        if (cached != null) {
+            return existing(cached, fingerprint);
+        }
+
+        Instant now = Instant.now();
+        IdempotencyRecord record = new IdempotencyRecord(id, fingerprint, IdempotencyRecord.Status.IN_PROGRESS,
+                UUID.randomUUID().toString(), now, 0, null, null, null);
+        try {
+            mongoTemplate.insert(record);
+            return new Claim(ClaimResult.ACQUIRED, record);
+        } catch (DuplicateKeyException e) {
+            log.debug("Idempotency key {} already recorded", id);
+        }
+
+        // Take over a claim whose owner died without completing or releasing it.
+        IdempotencyRecord takenOver = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(id)
+                        .and("fingerprint").is(fingerprint)
+                        .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                        .and("createdAt").lt(now.minus(inProgressLease))),
+                new Update().set("createdAt", now).set("claimToken", UUID.randomUUID().toString()),
+                FindAndModifyOptions.options().returnNew(true),
+                IdempotencyRecord.class);
+        if (takenOver != null) {
+            log.warn("Taking over stale idempotency key {}", id);
+            return new Claim(ClaimResult.ACQUIRED, takenOver);
+        }
+
+        IdempotencyRecord stored = mongoTemplate.findById(id, IdempotencyRecord.class);
+        if (stored == null) {
+            // Released or expired between the insert and the read; let the client retry.
+            return new Claim(ClaimResult.IN_PROGRESS, record);
+        }
+        if (stored.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+            completed.put(id, stored);
+        }
+        return existing(stored, fingerprint);
+    }
+
+    /**
+     * Stores the response for replay. Throws
+     * {@link OptimisticLockingFailureException} if the claim was taken over
+     * meanwhile; the new owner's response is the one that counts.
+     */
+    public void complete(final IdempotencyRecord record, final int status, final String contentType,
+                         final String location, final byte[] body) {
+        Update update = new Update()
+                .set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("responseStatus", status)
+                .set("responseContentType", contentType)
+                .set("responseLocation", location)
+                .set("responseBody", body);
+        if (mongoTemplate.updateFirst(ownedBy(record), update, IdempotencyRecord.class).getMatchedCount() == 0) {
+            throw new OptimisticLockingFailureException("Idempotency key " + record.getId()
+                    + " was taken over by another request");
+        }
+        record.setStatus(IdempotencyRecord.Status.COMPLETED);
+        record.setResponseStatus(status);
+        record.setResponseContentType(contentType);
+        record.setResponseLocation(location);
+        record.setResponseBody(body);
+        completed.put(record.getId(), record);
+    }
+
+    /** Frees the key for a retry, unless another request has taken it over since. */
+    public void release(final IdempotencyRecord record) {
+        mongoTemplate.remove(ownedBy(record), IdempotencyRecord.class);
+    }
+
+    private static Query ownedBy(final IdempotencyRecord record) {
+        return Query.query(Criteria.where("_id").is(record.getId())
+                .and("claimToken").is(record.getClaimToken())
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS));
+    }
+
+    private static Claim existing(final IdempotencyRecord record, final String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            return new Claim(ClaimResult.MISMATCH, record);
+        }
+        if (record.getStatus() == IdempotencyRecord.Status.IN_PROGRESS) {
+            return new Claim(ClaimResult.IN_PROGRESS, record);
+        }
+        return new Claim(ClaimResult.REPLAY, record);
+    }
+
+    private static String id(final String customerId, final String key) {
+        return customerId + ":" + key;
+    }
+}
@@ -0,0 +1,199 @@
+package com.podzilla.cart.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.IdempotencyRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link IdempotencyFilter} for the 'reactive' profile: the same paths,
+ * fingerprint, store and responses, so a retried POST /carts/checkout runs
+ * once on either stack. IdempotencyStore is blocking, so its calls run on
+ * the bounded elastic scheduler.
+ */
+@Component
+@Profile("reactive")
+@Slf4j
+public class ReactiveIdempotencyFilter implements WebFilter {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<String> paths;
+
+    public ReactiveIdempotencyFilter(final IdempotencyStore store,
+                                     final ObjectMapper objectMapper,
+                                     @Value("${cart.idempotency.enabled:true}") final boolean enabled,
+                                     @Value("${cart.idempotency.paths:/carts/items,/carts/items:batch,/carts/checkout}")
+                                     final List<String> paths) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.paths = paths;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String key = request.getHeaders().getFirst(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER);
+        String path = request.getPath().pathWithinApplication().value();
+        if (!enabled || !HttpMethod.POST.equals(request.getMethod()) || key == null
+                || !paths.contains(path)) {
+            return chain.filter(exchange);
+        }
+        String customerId = request.getHeaders().getFirst(IdempotencyFilter.CUSTOMER_HEADER);
+        if (key.isBlank() || key.length() > IdempotencyFilter.MAX_KEY_LENGTH || customerId == null) {
+            return writeError(exchange.getResponse(), HttpStatus.BAD_REQUEST, "Idempotency-Key must be 1-"
+                    + IdempotencyFilter.MAX_KEY_LENGTH + " characters and needs X-User-Id");
+        }
+
+        return bytesOf(request.getBody())
+                .flatMap(body -> Mono.fromCallable(() -> store.claim(customerId, key,
+                                IdempotencyFilter.fingerprint(request.getMethod().name(), path,
+                                        request.getURI().getRawQuery(), body)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(claim -> switch (claim.result()) {
+                            case REPLAY -> replay(claim.record(), exchange.getResponse());
+                            case IN_PROGRESS -> {
+                                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                                yield writeError(exchange.getResponse(), HttpStatus.CONFLICT,
+                                        "A request with this Idempotency-Key is in progress");
+                            }
+                            case MISMATCH -> writeError(exchange.getResponse(), HttpStatus.UNPROCESSABLE_ENTITY,
+                                    "Idempotency-Key was already used for a different request");
+                            case ACQUIRED -> execute(claim.record(), exchange, body, chain);
+                        }));
+    }
+
+    private static Mono<byte[]> bytesOf(final Publisher<? extends DataBuffer> buffers) {
+        return DataBufferUtils.join(buffers)
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .defaultIfEmpty(EMPTY);
+    }
+
+    /**
+     * Runs the request with the buffered body and stores the response before
+     * it is written, or releases the key if it is not replayable or the
+     * request fails.
+     */
+    private Mono<Void> execute(final IdempotencyRecord record, final ServerWebExchange exchange,
+                               final byte[] body, final WebFilterChain chain) {
+        AtomicBoolean settled = new AtomicBoolean();
+        ServerHttpResponse response = exchange.getResponse();
+        ServerHttpRequest cachedRequest = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.defer(() -> Flux.just(response.bufferFactory().wrap(body)));
+            }
+        };
+        ServerHttpResponse recordingResponse = new ServerHttpResponseDecorator(response) {
+            @Override
+            public Mono<Void> writeWith(final Publisher<? extends DataBuffer> responseBody) {
+                return bytesOf(responseBody)
+                        .flatMap(bytes -> settle(record, getDelegate(), bytes, settled)
+                                .then(super.writeWith(Mono.just(bufferFactory().wrap(bytes)))));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return writeWith(Flux.from(body).concatMap(Flux::from));
+            }
+        };
+        return chain.filter(exchange.mutate().request(cachedRequest).response(recordingResponse).build())
+                .then(Mono.defer(() -> settle(record, response, EMPTY, settled)))
+                .doFinally(signal -> {
+                    if (settled.compareAndSet(false, true)) {
+                        Schedulers.boundedElastic().schedule(() -> store.release(record));
+                    }
+                });
+    }
+
+    private Mono<Void> settle(final IdempotencyRecord record, final ServerHttpResponse response,
+                              final byte[] body, final AtomicBoolean settled) {
+        if (!settled.compareAndSet(false, true)) {
+            return Mono.empty();
+        }
+        HttpStatusCode statusCode = response.getStatusCode();
+        int status = statusCode == null ? HttpStatus.OK.value() : statusCode.value();
+        HttpHeaders headers = response.getHeaders();
+        return Mono.<Void>fromRunnable(() -> {
+            if (!IdempotencyFilter.isReplayable(status)) {
+                store.release(record);
+                return;
+            }
+            try {
+                MediaType contentType = headers.getContentType();
+                store.complete(record, status, contentType == null ? null : contentType.toString(),
+                        headers.getFirst(HttpHeaders.LOCATION), body);
+            } catch (RuntimeException e) {
+                log.error("Could not store response for idempotency key {}", record.getId(), e);
+                store.release(record);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Mono<Void> replay(final IdempotencyRecord record, final ServerHttpResponse response) {
+        response.setStatusCode(HttpStatusCode.valueOf(record.getResponseStatus()));
+        response.getHeaders().set(IdempotencyFilter.REPLAYED_HEADER, "true");
+        if (record.getResponseContentType() != null) {
+            response.getHeaders().set(HttpHeaders.CONTENT_TYPE, record.getResponseContentType());
+        }
+        if (record.getResponseLocation() != null) {
+            response.getHeaders().set(HttpHeaders.LOCATION, record.getResponseLocation());
+        }
+        if (record.getResponseBody() == null) {
+            return response.setComplete();
+        }
+        response.getHeaders().setContentLength(record.getResponseBody().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(record.getResponseBody())));
+    }
+
+    private Mono<Void> writeError(final ServerHttpResponse response, final HttpStatus status, final String message) {
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("status", status.value());
+        errorResponse.put("error", status.getReasonPhrase());
+        errorResponse.put("message", message);
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(errorResponse);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(json)));
+    }
+}
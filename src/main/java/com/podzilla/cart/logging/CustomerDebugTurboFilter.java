@@ -0,0 +1,75 @@
+package com.podzilla.cart.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets every log statement of the service through, whatever its level,
+ * while the request's customer is being traced; other customers get the
+ * configured levels. Customers are traced for a limited time, so a
+ * forgotten trace does not keep debug output on.
+ *
+ * <p>This is per instance: with several replicas, enable the trace on each
+ * one (or route the customer to one of them).
+ */
+public class CustomerDebugTurboFilter extends TurboFilter {
+
+    private static final String SERVICE_LOGGERS = "com.podzilla";
+
+    private final Map<String, Instant> tracedUntil = new ConcurrentHashMap<>();
+    private final Clock clock;
+
+    public CustomerDebugTurboFilter(final Clock clock) {
+        this.clock = clock;
+        setName("customer-debug");
+    }
+
+    public Instant enable(final String customerId, final Duration duration) {
+        Instant until = clock.instant().plus(duration);
+        tracedUntil.put(customerId, until);
+        return until;
+    }
+
+    public boolean disable(final String customerId) {
+        return tracedUntil.remove(customerId) != null;
+    }
+
+    /** Customers being traced, with the time their trace ends. */
+    public Map<String, Instant> traced() {
+        Instant now = clock.instant();
+        tracedUntil.values().removeIf(until -> !until.isAfter(now));
+        return new TreeMap<>(tracedUntil);
+    }
+
+    @Override
+    public FilterReply decide(final Marker marker, final Logger logger, final Level level,
+                              final String format, final Object[] params, final Throwable t) {
+        if (tracedUntil.isEmpty() || !logger.getName().startsWith(SERVICE_LOGGERS)) {
+            return FilterReply.NEUTRAL;
+        }
+        String customerId = MDC.get(CustomerMdcFilter.CUSTOMER_ID);
+        if (customerId == null) {
+            return FilterReply.NEUTRAL;
+        }
+        Instant until = tracedUntil.get(customerId);
+        if (until == null) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!until.isAfter(clock.instant())) {
+            tracedUntil.remove(customerId, until);
+            return FilterReply.NEUTRAL;
+        }
+        return FilterReply.ACCEPT;
+    }
+}
@@ -0,0 +1,45 @@
+package com.podzilla.cart.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Puts the request's X-User-Id in the MDC as {@code customerId}, so every
+ * log line written for the request carries it (a field of its own in the
+ * JSON log) and {@link CustomerDebugTurboFilter} can pick out the
+ * customers being traced. Runs right after the concurrency limits, which
+ * turn requests away before anything is logged for them.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class CustomerMdcFilter extends OncePerRequestFilter {
+
+    public static final String CUSTOMER_ID = "customerId";
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        String customerId = request.getHeader(USER_ID_HEADER);
+        if (customerId == null || customerId.isBlank()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        MDC.put(CUSTOMER_ID, customerId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(CUSTOMER_ID);
+        }
+    }
+}
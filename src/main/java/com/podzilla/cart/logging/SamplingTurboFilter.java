@@ -0,0 +1,45 @@
+package com.podzilla.cart.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one in every {@code every} events logged with the {@link #SAMPLED}
+ * marker, counted per message template: for warnings a misbehaving client
+ * can trigger on every request, such as a cart that does not exist. The
+ * first occurrence is always written. Events for a customer being traced
+ * are let through before this filter sees them.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    public static final Marker SAMPLED = MarkerFactory.getMarker("SAMPLED");
+
+    private final int every;
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public SamplingTurboFilter(final int every) {
+        this.every = every;
+        setName("sampling");
+    }
+
+    @Override
+    public FilterReply decide(final Marker marker, final Logger logger, final Level level,
+                              final String format, final Object[] params, final Throwable t) {
+        // A null format is a level check (isWarnEnabled and the like), not an event; disabled
+        // statements are not counted, so that the first one logged after a level change gets through.
+        if (every <= 1 || marker == null || format == null || !marker.contains(SAMPLED)
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        long seen = counters.computeIfAbsent(format, key -> new AtomicLong()).getAndIncrement();
+        return seen % every == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
@@ -0,0 +1,155 @@
+package com.podzilla.cart.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+@Component
+public class CartMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public CartMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordVersionConflict(final String operation) {
+        Counter.builder("cart.version.conflicts")
+                .description("Cart writes rejected because the stored version changed")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordRetry(final String operation) {
+        Counter.builder("cart.version.retries")
+                .description("Cart operations re-executed after a version conflict")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordWriteBehindSave() {
+        Counter.builder("cart.write-behind.saves")
+                .description("Cart saves absorbed by the write-behind store")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordWriteBehindFlush(final int carts, final boolean success) {
+        Counter.builder("cart.write-behind.writes")
+                .description("Cart documents sent to Mongo by write-behind flushes")
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .increment(carts);
+    }
+
+    public void registerWriteBehindBacklog(final Supplier<Number> dirtyCarts) {
+        Gauge.builder("cart.write-behind.dirty", dirtyCarts)
+                .description("Carts changed in memory and not yet flushed to Mongo")
+                .register(meterRegistry);
+    }
+
+    public void recordOutboxRelayed(final int events, final boolean success) {
+        Counter.builder("cart.outbox.relayed")
+                .description("Outbox events handed to RabbitMQ, by confirm outcome")
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .increment(events);
+    }
+
+    public void registerOutboxBacklog(final Supplier<Number> unsentEvents,
+                                      final Supplier<Number> oldestAgeSeconds) {
+        Gauge.builder("cart.outbox.backlog", unsentEvents)
+                .description("Outbox events not yet confirmed by RabbitMQ")
+                .register(meterRegistry);
+        Gauge.builder("cart.outbox.lag.seconds", oldestAgeSeconds)
+                .description("Age of the oldest outbox event not yet confirmed by RabbitMQ")
+                .register(meterRegistry);
+    }
+
+    public void recordCoalescedBatch(final int mutations) {
+        DistributionSummary.builder("cart.mutation.coalesced")
+                .description("Queued cart mutations applied with one load and one save")
+                .register(meterRegistry)
+                .record(mutations);
+    }
+
+    public void recordConcurrencyLimited(final String endpoint) {
+        Counter.builder("cart.requests.limited")
+                .description("Requests rejected with 429 because their endpoint was at its concurrency limit")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordVirtualThreadPinned(final Duration duration) {
+        Timer.builder("cart.virtual-threads.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void recordCommand(final Timer.Sample sample, final String command, final boolean success) {
+        sample.stop(Timer.builder("cart.commands")
+                .description("Cart commands from call to saved cart, including queueing and conflict retries")
+                .tag("command", command)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry));
+    }
+
+    public void recordTotalsRecalculation(final Timer.Sample sample, final boolean withPromo) {
+        sample.stop(Timer.builder("cart.totals.recalculation")
+                .description("Cart totals recalculations, including the promo code lookup")
+                .tag("promo", String.valueOf(withPromo))
+                .register(meterRegistry));
+    }
+
+    /** {@code path} is "direct" for a publish during the request, "outbox" for a relayed batch. */
+    public void recordEventPublish(final Timer.Sample sample, final String event, final String path,
+                                   final boolean success) {
+        sample.stop(Timer.builder("cart.events.publish")
+                .description("Event publishes to RabbitMQ; outbox batches include waiting for confirms")
+                .tag("event", event)
+                .tag("path", path)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry));
+    }
+
+    public void recordCheckout(final String outcome) {
+        Counter.builder("cart.checkouts")
+                .description("Checkout attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /** {@code stage} is "apply" when a customer enters the code, "recalculate" when an applied one lapses. */
+    public void recordPromoRejected(final String stage, final String reason) {
+        Counter.builder("cart.promo.rejected")
+                .description("Promo codes refused or dropped from carts")
+                .tag("stage", stage)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordCartSize(final String event, final int lines) {
+        DistributionSummary.builder("cart.size")
+                .description("Distinct products in the cart")
+                .baseUnit("items")
+                .tag("event", event)
+                .register(meterRegistry)
+                .record(lines);
+    }
+}
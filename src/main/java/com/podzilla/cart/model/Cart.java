@@ -1,40 +1,196 @@
 package com.podzilla.cart.model;
 
 import jakarta.validation.constraints.NotBlank;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Document(collection = "carts")
+@CompoundIndexes({
+        @CompoundIndex(name = "customer_archived_idx",
+                def = "{'customerId': 1, 'archived': 1}", unique = true),
+        @CompoundIndex(name = "items_product_idx",
+                def = "{'items.productId': 1}")
+})
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
+@ToString(onlyExplicitlyIncluded = true)
 public class Cart {
 
     @Id
     @Field("_id")
+    @ToString.Include
     private String id;
 
     @NotBlank
+    @ToString.Include
     private String customerId;
 
     private List<CartItem> items = new ArrayList<>();
 
+    @ToString.Include
     private boolean archived = false;
 
+    @ToString.Include
     private String appliedPromoCode;
 
     private BigDecimal subTotal = BigDecimal.ZERO;
     private BigDecimal discountAmount = BigDecimal.ZERO;
+    @ToString.Include
     private BigDecimal totalPrice = BigDecimal.ZERO;
 
+    @Version
+    @ToString.Include
+    private Long version;
 
-}
+    @LastModifiedDate
+    private Instant lastModified;
+
+    /**
+     * productId-keyed view over {@link #items}, built on first lookup. It is
+     * rebuilt when the list is replaced or its size changes behind our back;
+     * in-place edits should go through {@link #addItem} and
+     * {@link #removeItem}.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient Map<String, CartItem> itemIndex;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient List<CartItem> indexedItems;
+
+    /**
+     * Changes made since the cart was read, for the event-sourced store.
+     * Recorded by the cart commands and CartService, never stored as such.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient List<CartChange> pendingChanges;
+
+    public Cart(final String id, final String customerId, final List<CartItem> items,
+                final boolean archived, final String appliedPromoCode,
+                final BigDecimal subTotal, final BigDecimal discountAmount,
+                final BigDecimal totalPrice, final Long version, final Instant lastModified) {
+        this.id = id;
+        this.customerId = customerId;
+        this.items = items;
+        this.archived = archived;
+        this.appliedPromoCode = appliedPromoCode;
+        this.subTotal = subTotal;
+        this.discountAmount = discountAmount;
+        this.totalPrice = totalPrice;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Carts are logged on every change, so toString is a summary: the line
+     * count instead of the lines.
+     */
+    @ToString.Include(name = "items")
+    private int itemCount() {
+        return items == null ? 0 : items.size();
+    }
+
+    public void setItems(final List<CartItem> items) {
+        this.items = items;
+        this.itemIndex = null;
+    }
+
+    public Optional<CartItem> findItem(final String productId) {
+        return Optional.ofNullable(itemIndex().get(productId));
+    }
 
+    public void addItem(final CartItem item) {
+        Map<String, CartItem> index = itemIndex();
+        items.add(item);
+        index.putIfAbsent(item.getProductId(), item);
+    }
+
+    public Optional<CartItem> removeItem(final String productId) {
+        CartItem removed = itemIndex().remove(productId);
+        if (removed != null) {
+            items.removeIf(item -> productId.equals(item.getProductId()));
+        }
+        return Optional.ofNullable(removed);
+    }
+
+    public void recordChange(final CartChange change) {
+        if (pendingChanges == null) {
+            pendingChanges = new ArrayList<>();
+        }
+        pendingChanges.add(change);
+    }
+
+    public List<CartChange> pendingChanges() {
+        return pendingChanges == null ? List.of() : pendingChanges;
+    }
+
+    public void clearPendingChanges() {
+        pendingChanges = null;
+    }
+
+    /**
+     * Copy with its own item list and items, so that changes to either cart
+     * do not show up in the other. Pending changes are copied too.
+     */
+    public Cart copy() {
+        List<CartItem> itemsCopy = new ArrayList<>(items == null ? 0 : items.size());
+        if (items != null) {
+            for (CartItem item : items) {
+                itemsCopy.add(new CartItem(item.getProductId(), item.getQuantity(), item.getUnitPrice()));
+            }
+        }
+        Cart copy = new Cart(id, customerId, itemsCopy, archived, appliedPromoCode, subTotal, discountAmount,
+                totalPrice, version, lastModified);
+        if (pendingChanges != null) {
+            copy.pendingChanges = new ArrayList<>(pendingChanges);
+        }
+        return copy;
+    }
+
+    private Map<String, CartItem> itemIndex() {
+        if (items == null) {
+            items = new ArrayList<>();
+        }
+        if (itemIndex == null || indexedItems != items || itemIndex.size() != items.size()) {
+            Map<String, CartItem> index = new LinkedHashMap<>(Math.max(16, items.size() * 2));
+            for (CartItem item : items) {
+                index.putIfAbsent(item.getProductId(), item);
+            }
+            itemIndex = index;
+            indexedItems = items;
+        }
+        return itemIndex;
+    }
+}
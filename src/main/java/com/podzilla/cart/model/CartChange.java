@@ -0,0 +1,112 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * One change to a cart, as recorded in the event-sourced store. Only the
+ * fields the type needs are set, so unset ones are left out of the stored
+ * document.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartChange {
+
+    public enum Type {
+        CART_CREATED,
+        ITEM_ADDED,
+        /** A quantity of zero or less removes the item, as in UpdateQuantityCommand. */
+        QUANTITY_CHANGED,
+        /** Takes {@code quantity} off the item, removing it when nothing is left; undoes ITEM_ADDED. */
+        QUANTITY_REDUCED,
+        ITEM_REMOVED,
+        PROMO_APPLIED,
+        PROMO_REMOVED,
+        CART_CLEARED,
+        CHECKED_OUT,
+        ARCHIVED,
+        UNARCHIVED
+    }
+
+    private Type type;
+
+    private String productId;
+
+    private Integer quantity;
+
+    private BigDecimal unitPrice;
+
+    private String promoCode;
+
+    public static CartChange of(final Type type) {
+        return new CartChange(type, null, null, null, null);
+    }
+
+    /** {@code quantity} is the amount added, which is merged into an existing line. */
+    public static CartChange itemAdded(final String productId, final int quantity, final BigDecimal unitPrice) {
+        return new CartChange(Type.ITEM_ADDED, productId, quantity, unitPrice, null);
+    }
+
+    public static CartChange quantityChanged(final String productId, final int quantity) {
+        return new CartChange(Type.QUANTITY_CHANGED, productId, quantity, null, null);
+    }
+
+    public static CartChange quantityReduced(final String productId, final int quantity) {
+        return new CartChange(Type.QUANTITY_REDUCED, productId, quantity, null, null);
+    }
+
+    public static CartChange itemRemoved(final String productId) {
+        return new CartChange(Type.ITEM_REMOVED, productId, null, null, null);
+    }
+
+    public static CartChange promoApplied(final String promoCode) {
+        return new CartChange(Type.PROMO_APPLIED, null, null, null, promoCode);
+    }
+
+    /**
+     * Replays the change onto the cart. Totals are not touched; the store
+     * takes them from the event that carried the change.
+     */
+    public void applyTo(final Cart cart) {
+        switch (type) {
+            case ITEM_ADDED -> {
+                Optional<CartItem> existing = cart.findItem(productId);
+                if (existing.isPresent()) {
+                    existing.get().setQuantity(existing.get().getQuantity() + quantity);
+                } else {
+                    cart.addItem(new CartItem(productId, quantity, unitPrice));
+                }
+            }
+            case QUANTITY_CHANGED -> {
+                if (quantity <= 0) {
+                    cart.removeItem(productId);
+                } else {
+                    cart.findItem(productId).ifPresent(item -> item.setQuantity(quantity));
+                }
+            }
+            case QUANTITY_REDUCED -> cart.findItem(productId).ifPresent(item -> {
+                if (item.getQuantity() - quantity <= 0) {
+                    cart.removeItem(productId);
+                } else {
+                    item.setQuantity(item.getQuantity() - quantity);
+                }
+            });
+            case ITEM_REMOVED -> cart.removeItem(productId);
+            case PROMO_APPLIED -> cart.setAppliedPromoCode(promoCode);
+            case PROMO_REMOVED -> cart.setAppliedPromoCode(null);
+            case CART_CLEARED, CHECKED_OUT -> {
+                cart.getItems().clear();
+                cart.setAppliedPromoCode(null);
+            }
+            case ARCHIVED -> cart.setArchived(true);
+            case UNARCHIVED -> cart.setArchived(false);
+            case CART_CREATED -> { }
+            default -> throw new IllegalStateException("Unknown cart change type: " + type);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes made to a cart by one save, appended to the customer's
+ * stream. Sequences are consecutive per customer and double as the cart
+ * version; the unique index turns two saves racing for the same sequence
+ * into an optimistic-locking conflict.
+ *
+ * <p>The promo code and totals after the save are stored alongside the
+ * changes, since they also depend on the promo code's state at the time.
+ */
+@Document(collection = "cart_events")
+@CompoundIndex(name = "customer_sequence_idx", def = "{'customerId': 1, 'sequence': 1}", unique = true)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartEvent {
+
+    @Id
+    private String id;
+
+    private String customerId;
+
+    private String cartId;
+
+    private long sequence;
+
+    private List<CartChange> changes = new ArrayList<>();
+
+    private String appliedPromoCode;
+
+    private BigDecimal subTotal;
+    private BigDecimal discountAmount;
+    private BigDecimal totalPrice;
+
+    private Instant occurredAt;
+
+    /**
+     * Replays this event onto the cart, or onto a new empty cart when this
+     * is the first event of the stream, and returns it.
+     */
+    public Cart applyTo(final Cart cart) {
+        Cart result = cart;
+        if (result == null) {
+            result = new Cart(cartId, customerId, new ArrayList<>(), false, null,
+                    BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2),
+                    null, null);
+        }
+        for (CartChange change : changes) {
+            change.applyTo(result);
+        }
+        result.setAppliedPromoCode(appliedPromoCode);
+        result.setSubTotal(subTotal);
+        result.setDiscountAmount(discountAmount);
+        result.setTotalPrice(totalPrice);
+        result.setVersion(sequence);
+        result.setLastModified(occurredAt);
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A customer's undo and redo stacks, most recent entry last. Every change
+ * bumps {@code revision}, which replicas use to detect that their cached
+ * copy is stale.
+ */
+@Document(collection = "cart_history")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartHistory {
+
+    /** The customerId. */
+    @Id
+    private String id;
+
+    private long revision;
+
+    private List<CartHistoryEntry> undo = new ArrayList<>();
+
+    private List<CartHistoryEntry> redo = new ArrayList<>();
+
+    @Indexed(name = "history_ttl_idx", expireAfter = "1d")
+    private Instant updatedAt;
+}
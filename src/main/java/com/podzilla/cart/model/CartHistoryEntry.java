@@ -0,0 +1,29 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One undoable cart operation, kept as the item changes it made and the
+ * changes that take it back rather than as copies of the cart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartHistoryEntry {
+
+    private String operation;
+
+    /** Replayed by redo. */
+    private List<CartChange> changes = new ArrayList<>();
+
+    /** Replayed by undo. */
+    private List<CartChange> inverse = new ArrayList<>();
+
+    private Instant recordedAt;
+}
@@ -0,0 +1,30 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * The customer's cart as of event {@code sequence}, so that reads replay
+ * only the events after it. One per customer, replaced as the stream grows.
+ */
+@Document(collection = "cart_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSnapshot {
+
+    /** The customerId. */
+    @Id
+    private String id;
+
+    private long sequence;
+
+    private Cart cart;
+
+    private Instant createdAt;
+}
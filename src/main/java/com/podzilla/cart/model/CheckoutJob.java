@@ -0,0 +1,45 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Status of a checkout accepted with {@code Prefer: respond-async}.
+ */
+@Document(collection = "checkout_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutJob {
+
+    public enum Status {
+        PENDING,
+        /** The checkout event was sent to the broker. */
+        PUBLISHED,
+        /** The checkout event was stored in the outbox with the cart change; the outbox relay publishes it. */
+        STAGED,
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private String customerId;
+
+    private String cartId;
+
+    private Status status;
+
+    @Indexed(name = "created_ttl_idx", expireAfter = "1d")
+    private Instant createdAt;
+
+    private Instant completedAt;
+
+    private String error;
+}
@@ -0,0 +1,53 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A request made with an Idempotency-Key and, once it finished, the
+ * response to replay for retries of it. Keys are scoped per customer.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+
+    /** customerId + ":" + Idempotency-Key. */
+    @Id
+    private String id;
+
+    /** SHA-256 of method, path, query and body of the original request. */
+    private String fingerprint;
+
+    private Status status;
+
+    /**
+     * Identifies the request that currently owns an IN_PROGRESS key; a stale
+     * takeover replaces it, so the previous owner can no longer complete or
+     * release the key.
+     */
+    private String claimToken;
+
+    @Indexed(name = "created_ttl_idx", expireAfter = "24h")
+    private Instant createdAt;
+
+    private int responseStatus;
+
+    private String responseContentType;
+
+    private String responseLocation;
+
+    private byte[] responseBody;
+}
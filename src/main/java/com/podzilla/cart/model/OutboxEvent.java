@@ -0,0 +1,57 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * An event written in the same transaction as the cart change that caused
+ * it, waiting to be relayed to RabbitMQ.
+ */
+@Document(collection = "outbox")
+@CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'createdAt': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    public enum Status {
+        PENDING,
+        IN_FLIGHT,
+        SENT,
+        /** Payload could not be read; left for inspection, never retried. */
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private String eventType;
+
+    private String aggregateId;
+
+    /** The event serialized as JSON. */
+    private String payload;
+
+    private Status status;
+
+    private Instant createdAt;
+
+    /** Set while a relay instance holds the entry; stale claims are taken over. */
+    private String claimToken;
+
+    private Instant claimedAt;
+
+    @Indexed(name = "sent_ttl_idx", expireAfter = "7d")
+    private Instant sentAt;
+
+    private int attempts;
+
+    private String lastError;
+}
@@ -7,6 +7,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -14,6 +16,12 @@ import java.math.BigDecimal;
 import java.time.Instant;
 
 @Document(collection = "promo_codes")
+@CompoundIndexes({
+        @CompoundIndex(name = "active_code_idx",
+                def = "{'active': 1, 'code': 1, 'expiryDate': 1}"),
+        @CompoundIndex(name = "type_active_code_idx",
+                def = "{'discountType': 1, 'active': 1, 'code': 1, 'expiryDate': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
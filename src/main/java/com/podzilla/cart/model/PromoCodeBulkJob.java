@@ -0,0 +1,70 @@
+package com.podzilla.cart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of a bulk promo code generation or import. Counts are updated
+ * while the job runs; {@code updatedAt} doubles as its heartbeat.
+ */
+@Document(collection = "promo_code_bulk_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PromoCodeBulkJob {
+
+    public enum Type {
+        GENERATE,
+        IMPORT
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private Type type;
+
+    private Status status;
+
+    /** Codes asked for by a generation; null for imports. */
+    private Long requested;
+
+    /** Codes generated, or records read from the import. */
+    private long processed;
+
+    private long inserted;
+
+    /** Codes that already existed and were left as they are. */
+    private long duplicates;
+
+    /** Import records that could not be parsed or are invalid. */
+    private long rejected;
+
+    /** Codes the database refused for reasons other than a duplicate. */
+    private long failed;
+
+    /** The first few rejections and failures, with their import line where known. */
+    private List<String> errors = new ArrayList<>();
+
+    @Indexed(name = "created_ttl_idx", expireAfter = "7d")
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    private Instant completedAt;
+
+    private String error;
+}
@@ -0,0 +1,70 @@
+package com.podzilla.cart.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Writes events to the outbox collection inside the Mongo transaction that
+ * performs the state change, so that either both are stored or neither is.
+ * {@link OutboxRelay} publishes them afterwards. Requires a replica set.
+ */
+@Component
+@Slf4j
+public class CheckoutOutbox {
+
+    public static final String CART_CHECKEDOUT = "CART_CHECKEDOUT";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public CheckoutOutbox(final MongoTemplate mongoTemplate,
+                          final MongoDatabaseFactory mongoDatabaseFactory,
+                          final ObjectMapper objectMapper,
+                          @Value("${cart.checkout.outbox.enabled:false}") final boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(new MongoTransactionManager(mongoDatabaseFactory));
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs the write and stores the event in one transaction, returning the
+     * write's result. Any exception from the write rolls both back.
+     */
+    public <T> T stage(final String eventType, final String aggregateId, final Object event,
+                       final Supplier<T> write) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize " + eventType + " event", e);
+        }
+        OutboxEvent entry = new OutboxEvent(UUID.randomUUID().toString(), eventType, aggregateId, payload,
+                OutboxEvent.Status.PENDING, Instant.now(), null, null, null, 0, null);
+
+        return transactionTemplate.execute(status -> {
+            T result = write.get();
+            mongoTemplate.insert(entry);
+            log.debug("Staged {} outbox event {} for aggregate {}", eventType, entry.getId(), aggregateId);
+            return result;
+        });
+    }
+}
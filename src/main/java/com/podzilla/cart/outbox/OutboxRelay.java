@@ -0,0 +1,208 @@
+package com.podzilla.cart.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.OutboxEvent;
+import com.podzilla.mq.EventPublisher;
+import com.podzilla.mq.EventsConstants;
+import com.podzilla.mq.events.CartCheckedoutEvent;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drains the outbox to RabbitMQ in batches. Each batch is claimed with a
+ * token so that replicas do not relay the same entries, published on one
+ * channel and confirmed with a single wait for publisher confirms before
+ * the entries are marked sent. Delivery is at least once: a crash between
+ * the confirm and the update re-sends the batch, so consumers must be
+ * idempotent on cartId.
+ *
+ * <p>Publishing goes through the shared {@link EventPublisher} inside
+ * {@link RabbitTemplate#invoke}, which binds one channel to the thread for
+ * the application's RabbitTemplate; spring.rabbitmq.publisher-confirm-type
+ * must be {@code simple}.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final EventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final CartMetrics cartMetrics;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long confirmTimeoutMillis;
+    private final Duration claimLease;
+
+    private volatile long backlog;
+    private volatile double oldestPendingAgeSeconds;
+
+    public OutboxRelay(final MongoTemplate mongoTemplate,
+                       final RabbitTemplate rabbitTemplate,
+                       final EventPublisher eventPublisher,
+                       final ObjectMapper objectMapper,
+                       final CartMetrics cartMetrics,
+                       @Value("${cart.checkout.outbox.enabled:false}") final boolean enabled,
+                       @Value("${cart.outbox.relay.batch-size:100}") final int batchSize,
+                       @Value("${cart.outbox.relay.confirm-timeout-ms:5000}") final long confirmTimeoutMillis,
+                       @Value("${cart.outbox.relay.claim-lease:30s}") final Duration claimLease) {
+        this.mongoTemplate = mongoTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.cartMetrics = cartMetrics;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.claimLease = claimLease;
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        if (enabled) {
+            cartMetrics.registerOutboxBacklog(() -> backlog, () -> oldestPendingAgeSeconds);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.outbox.relay.interval-ms:200}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<OutboxEvent> batch;
+            do {
+                batch = claimBatch();
+                if (!batch.isEmpty()) {
+                    publish(batch);
+                }
+            } while (batch.size() == batchSize);
+            refreshLag();
+        } catch (RuntimeException e) {
+            log.error("Outbox relay run failed", e);
+        }
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        Instant now = Instant.now();
+        Criteria claimable = new Criteria().orOperator(
+                Criteria.where("status").is(OutboxEvent.Status.PENDING),
+                Criteria.where("status").is(OutboxEvent.Status.IN_FLIGHT)
+                        .and("claimedAt").lt(now.minus(claimLease)));
+
+        Query candidates = Query.query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String token = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+                Query.query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable)),
+                new Update().set("status", OutboxEvent.Status.IN_FLIGHT)
+                        .set("claimToken", token)
+                        .set("claimedAt", now),
+                OutboxEvent.class);
+        return mongoTemplate.find(Query.query(Criteria.where("claimToken").is(token))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt")), OutboxEvent.class);
+    }
+
+    private void publish(final List<OutboxEvent> batch) {
+        Map<String, CartCheckedoutEvent> events = new LinkedHashMap<>();
+        List<String> unreadable = new ArrayList<>();
+        for (OutboxEvent entry : batch) {
+            try {
+                events.put(entry.getId(), read(entry));
+            } catch (IOException | IllegalStateException e) {
+                log.error("Outbox entry {} cannot be relayed, marking it failed", entry.getId(), e);
+                unreadable.add(entry.getId());
+            }
+        }
+        if (!unreadable.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(unreadable)),
+                    new Update().set("status", OutboxEvent.Status.FAILED)
+                            .unset("claimToken")
+                            .set("lastError", "Unreadable payload"),
+                    OutboxEvent.class);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        List<String> ids = new ArrayList<>(events.keySet());
+        Timer.Sample sample = cartMetrics.startTimer();
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (CartCheckedoutEvent event : events.values()) {
+                    eventPublisher.publishEvent(EventsConstants.CART_CHECKEDOUT, event);
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to relay {} outbox events, releasing them for retry: {}", ids.size(), e.getMessage());
+            cartMetrics.recordEventPublish(sample, CheckoutOutbox.CART_CHECKEDOUT, "outbox", false);
+            cartMetrics.recordOutboxRelayed(ids.size(), false);
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                    new Update().set("status", OutboxEvent.Status.PENDING)
+                            .unset("claimToken")
+                            .unset("claimedAt")
+                            .inc("attempts", 1)
+                            .set("lastError", String.valueOf(e.getMessage())),
+                    OutboxEvent.class);
+            return;
+        }
+        cartMetrics.recordEventPublish(sample, CheckoutOutbox.CART_CHECKEDOUT, "outbox", true);
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)),
+                new Update().set("status", OutboxEvent.Status.SENT)
+                        .set("sentAt", Instant.now())
+                        .unset("claimToken")
+                        .unset("claimedAt"),
+                OutboxEvent.class);
+        cartMetrics.recordOutboxRelayed(ids.size(), true);
+        log.debug("Relayed {} outbox events", ids.size());
+    }
+
+    private CartCheckedoutEvent read(final OutboxEvent entry) throws IOException {
+        if (!CheckoutOutbox.CART_CHECKEDOUT.equals(entry.getEventType())) {
+            throw new IllegalStateException("Unknown outbox event type " + entry.getEventType());
+        }
+        return objectMapper.readValue(entry.getPayload(), CartCheckedoutEvent.class);
+    }
+
+    private void refreshLag() {
+        Criteria unsent = Criteria.where("status").in(OutboxEvent.Status.PENDING, OutboxEvent.Status.IN_FLIGHT);
+        backlog = mongoTemplate.count(Query.query(unsent), OutboxEvent.class);
+        OutboxEvent oldest = mongoTemplate.findOne(Query.query(unsent)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt")), OutboxEvent.class);
+        oldestPendingAgeSeconds = oldest == null
+                ? 0
+                : Duration.between(oldest.getCreatedAt(), Instant.now()).toMillis() / 1000.0;
+    }
+}
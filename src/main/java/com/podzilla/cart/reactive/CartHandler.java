@@ -0,0 +1,214 @@
+package com.podzilla.cart.reactive;
+
+import com.podzilla.cart.dto.BatchCartRequest;
+import com.podzilla.cart.dto.CartDelta;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.mq.events.ConfirmationType;
+import com.podzilla.mq.events.DeliveryAddress;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Functional handlers behind {@link ReactiveCartRoutes}, one per
+ * CartController endpoint, with the same headers, parameters and status
+ * codes.
+ */
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class CartHandler {
+
+    private static final String CUSTOMER_HEADER = "X-User-Id";
+
+    private final ReactiveCartService cartService;
+
+    public Mono<ServerResponse> createCart(final ServerRequest request) {
+        return ok(cartService.createCart(customerId(request)));
+    }
+
+    public Mono<ServerResponse> getCart(final ServerRequest request) {
+        return cartService.getCartByCustomerId(customerId(request))
+                .flatMap(cart -> okWithETag(request, eTagOf(cart.getId(), cart.getVersion()), cart));
+    }
+
+    public Mono<ServerResponse> getCartSummary(final ServerRequest request) {
+        return cartService.getCartSummary(customerId(request))
+                .flatMap(summary -> okWithETag(request, eTagOf(summary.getId(), summary.getVersion()), summary));
+    }
+
+    /** Same strong ETag as the servlet endpoints, so clients can switch stacks. */
+    private static String eTagOf(final String cartId, final Long version) {
+        if (version == null) {
+            return null;
+        }
+        return "\"" + cartId + "-" + version + "\"";
+    }
+
+    /** 304 without a body when If-None-Match names the current ETag. */
+    private static Mono<ServerResponse> okWithETag(final ServerRequest request, final String eTag,
+                                                   final Object body) {
+        if (eTag == null) {
+            return ServerResponse.ok().bodyValue(body);
+        }
+        return request.checkNotModified(eTag)
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.ok().eTag(eTag).bodyValue(body)));
+    }
+
+    public Mono<ServerResponse> deleteCart(final ServerRequest request) {
+        return cartService.deleteCartByCustomerId(customerId(request))
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> addItem(final ServerRequest request) {
+        String customerId = customerId(request);
+        return request.bodyToMono(CartItem.class)
+                .flatMap(item -> mutationResponse(request, cartService.addItemToCart(customerId, item),
+                        item.getProductId()));
+    }
+
+    public Mono<ServerResponse> applyBatch(final ServerRequest request) {
+        String customerId = customerId(request);
+        return request.bodyToMono(BatchCartRequest.class)
+                .flatMap(batch -> cartService.applyBatch(customerId, batch.getOperations()))
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    public Mono<ServerResponse> updateItemQuantity(final ServerRequest request) {
+        int quantity = Integer.parseInt(requiredParam(request, "quantity"));
+        String productId = request.pathVariable("productId");
+        return mutationResponse(request, cartService.updateItemQuantity(customerId(request), productId, quantity),
+                productId);
+    }
+
+    public Mono<ServerResponse> removeItem(final ServerRequest request) {
+        String productId = request.pathVariable("productId");
+        return mutationResponse(request, cartService.removeItemFromCart(customerId(request), productId), productId);
+    }
+
+    public Mono<ServerResponse> undo(final ServerRequest request) {
+        return ok(cartService.undo(customerId(request)));
+    }
+
+    public Mono<ServerResponse> redo(final ServerRequest request) {
+        return ok(cartService.redo(customerId(request)));
+    }
+
+    public Mono<ServerResponse> clearCart(final ServerRequest request) {
+        return cartService.clearCart(customerId(request))
+                .then(ServerResponse.noContent().build());
+    }
+
+    public Mono<ServerResponse> archiveCart(final ServerRequest request) {
+        return ok(cartService.archiveCart(customerId(request)));
+    }
+
+    public Mono<ServerResponse> unarchiveCart(final ServerRequest request) {
+        return ok(cartService.unarchiveCart(customerId(request)));
+    }
+
+    public Mono<ServerResponse> checkout(final ServerRequest request) {
+        String customerId = customerId(request);
+        ConfirmationType confirmationType = ConfirmationType.valueOf(requiredParam(request, "confirmationType"));
+        String signature = request.queryParam("signature").orElse(null);
+        Double longitude = Double.valueOf(requiredParam(request, "longitude"));
+        Double latitude = Double.valueOf(requiredParam(request, "latitude"));
+        String prefer = request.headers().firstHeader("Prefer");
+        boolean async = prefer != null && prefer.toLowerCase().contains("respond-async");
+
+        return request.bodyToMono(DeliveryAddress.class)
+                .switchIfEmpty(Mono.error(() -> new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                        "Delivery address is required")))
+                .flatMap(address -> async
+                        ? cartService.submitCheckout(customerId, confirmationType, signature,
+                                longitude, latitude, address)
+                                .flatMap(job -> ServerResponse.accepted()
+                                        .location(request.uriBuilder().path("/{checkoutId}").build(job.getId()))
+                                        .header("Preference-Applied", "respond-async")
+                                        .bodyValue(job))
+                        : ok(cartService.checkoutCart(customerId, confirmationType, signature,
+                                longitude, latitude, address)));
+    }
+
+    public Mono<ServerResponse> getCheckoutStatus(final ServerRequest request) {
+        return cartService.getCheckoutJob(customerId(request), request.pathVariable("checkoutId"))
+                .flatMap(job -> ServerResponse.ok().bodyValue(job));
+    }
+
+    public Mono<ServerResponse> applyPromoCode(final ServerRequest request) {
+        return mutationResponse(request,
+                cartService.applyPromoCode(customerId(request), request.pathVariable("promoCode")), null);
+    }
+
+    public Mono<ServerResponse> removePromoCode(final ServerRequest request) {
+        return ok(cartService.removePromoCode(customerId(request)));
+    }
+
+    /** Error bodies in the same shape as GlobalExceptionHandler. */
+    public Mono<ServerResponse> handleError(final Throwable error, final ServerRequest request) {
+        HttpStatus status;
+        String message = error.getMessage();
+        if (error instanceof GlobalHandlerException e) {
+            status = e.getStatus();
+        } else if (error instanceof OptimisticLockingFailureException) {
+            status = HttpStatus.CONFLICT;
+            message = "Cart was modified concurrently, please retry";
+        } else if (error instanceof NoSuchElementException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (error instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else {
+            log.error("Unhandled error on {} {}", request.method(), request.path(), error);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "Internal server error";
+        }
+        Map<String, Object> errorResponse = new LinkedHashMap<>();
+        errorResponse.put("status", status.value());
+        errorResponse.put("error", status.getReasonPhrase());
+        errorResponse.put("message", message);
+        return ServerResponse.status(status).bodyValue(errorResponse);
+    }
+
+    private static Mono<ServerResponse> ok(final Mono<Cart> cart) {
+        return cart.flatMap(body -> ServerResponse.ok().bodyValue(body));
+    }
+
+    /** As in the servlet controller, {@code Prefer: return=minimal} answers with a {@link CartDelta}. */
+    private static Mono<ServerResponse> mutationResponse(final ServerRequest request, final Mono<Cart> cart,
+                                                         final String productId) {
+        String prefer = request.headers().firstHeader("Prefer");
+        if (prefer == null || !prefer.toLowerCase().contains("return=minimal")) {
+            return ok(cart);
+        }
+        return cart.flatMap(body -> ServerResponse.ok()
+                .header("Preference-Applied", "return=minimal")
+                .bodyValue(CartDelta.of(body, productId)));
+    }
+
+    private static String customerId(final ServerRequest request) {
+        String customerId = request.headers().firstHeader(CUSTOMER_HEADER);
+        if (customerId == null) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, "Missing header " + CUSTOMER_HEADER);
+        }
+        return customerId;
+    }
+
+    private static String requiredParam(final ServerRequest request, final String name) {
+        return request.queryParam(name)
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                        "Missing request parameter " + name));
+    }
+}
@@ -0,0 +1,10 @@
+package com.podzilla.cart.reactive;
+
+import com.podzilla.cart.model.Cart;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCartRepository extends ReactiveMongoRepository<Cart, String> {
+    Mono<Cart> findByCustomerId(String customerId);
+    Mono<Cart> findByCustomerIdAndArchived(String customerId, boolean archived);
+}
@@ -0,0 +1,50 @@
+package com.podzilla.cart.reactive;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux routes mirroring CartController, active with the 'reactive'
+ * profile (see application-reactive.properties), which also switches the
+ * application to a reactive web server.
+ */
+@Configuration
+@Profile("reactive")
+@EnableReactiveMongoRepositories(basePackages = "com.podzilla.cart.reactive")
+@EnableReactiveMongoAuditing
+public class ReactiveCartRoutes {
+
+    @Bean
+    public RouterFunction<ServerResponse> cartRoutes(final CartHandler handler) {
+        return RouterFunctions.route()
+                .path("/carts", carts -> carts
+                        .POST("/create", handler::createCart)
+                        .GET("/customer", handler::getCart)
+                        .GET("/customer/summary", handler::getCartSummary)
+                        .DELETE("/customer", handler::deleteCart)
+                        .POST("/items", handler::addItem)
+                        .POST("/items:batch", handler::applyBatch)
+                        .PATCH("/items/{productId}", handler::updateItemQuantity)
+                        .DELETE("/items/{productId}", handler::removeItem)
+                        .POST("/undo", handler::undo)
+                        .POST("/redo", handler::redo)
+                        .DELETE("/clear", handler::clearCart)
+                        .PATCH("/archive", handler::archiveCart)
+                        .PATCH("/unarchive", handler::unarchiveCart)
+                        .POST("/checkout", handler::checkout)
+                        .GET("/checkout/{checkoutId}", handler::getCheckoutStatus)
+                        .POST("/promo/{promoCode}", handler::applyPromoCode)
+                        .DELETE("/promo", handler::removePromoCode))
+                .onError(Throwable.class, handler::handleError)
+                // Inside onError, so exceptions thrown while reading headers and parameters are mapped too.
+                .filter((request, next) -> Mono.defer(() -> next.handle(request)))
+                .build();
+    }
+}
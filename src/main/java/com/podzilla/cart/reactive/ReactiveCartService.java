@@ -0,0 +1,317 @@
+package com.podzilla.cart.reactive;
+
+import com.podzilla.cart.dto.BatchCartResponse;
+import com.podzilla.cart.dto.CartOperation;
+import com.podzilla.cart.dto.CartSummary;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.CheckoutJob;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.service.AddItemCommand;
+import com.podzilla.cart.service.BatchCartCommand;
+import com.podzilla.cart.service.CartCommand;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CartTotals;
+import com.podzilla.cart.service.CartTotalsCalculator;
+import com.podzilla.cart.service.CheckoutJobService;
+import com.podzilla.cart.service.RemoveItemCommand;
+import com.podzilla.cart.service.UpdateQuantityCommand;
+import com.podzilla.cart.store.CartHistoryStore;
+import com.podzilla.mq.events.ConfirmationType;
+import com.podzilla.mq.events.DeliveryAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non-blocking counterpart of {@link CartService} for the 'reactive'
+ * profile. Cart commands are the same ones the servlet stack uses, applied
+ * in memory to a cart read through the reactive driver and saved with the
+ * same optimistic version check and conflict retries.
+ *
+ * <p>Checkout still goes through {@link CartService} on the bounded elastic
+ * scheduler: publishing waits for the broker, and this keeps the outbox and
+ * cart clearing rules in one place. Undo history is kept in the same
+ * blocking {@link CartHistoryStore}, so recording it and undo/redo run
+ * there too. Write-behind and mutation coalescing are servlet-stack features
+ * and are not used here.
+ */
+@Service
+@Profile("reactive")
+@Slf4j
+public class ReactiveCartService {
+
+    private final ReactiveCartRepository cartRepository;
+    private final ReactivePromoCodeRepository promoCodeRepository;
+    private final CartService cartService;
+    private final CheckoutJobService checkoutJobService;
+    private final CartMetrics cartMetrics;
+    private final CartHistoryStore cartHistory;
+
+    @Value("${cart.concurrency.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${cart.concurrency.backoff-base-ms:10}")
+    private long backoffBaseMillis = 10;
+
+    @Value("${cart.concurrency.backoff-max-ms:200}")
+    private long backoffMaxMillis = 200;
+
+    public ReactiveCartService(final ReactiveCartRepository cartRepository,
+                               final ReactivePromoCodeRepository promoCodeRepository,
+                               final CartService cartService,
+                               final CheckoutJobService checkoutJobService,
+                               final CartMetrics cartMetrics,
+                               final CartHistoryStore cartHistory) {
+        this.cartRepository = cartRepository;
+        this.promoCodeRepository = promoCodeRepository;
+        this.cartService = cartService;
+        this.checkoutJobService = checkoutJobService;
+        this.cartMetrics = cartMetrics;
+        this.cartHistory = cartHistory;
+    }
+
+    public Mono<Cart> createCart(final String customerId) {
+        log.debug("Entering reactive createCart with customerId: {}", customerId);
+        return cartRepository.findByCustomerId(customerId)
+                .switchIfEmpty(Mono.defer(() -> cartRepository.save(new Cart(
+                        UUID.randomUUID().toString(),
+                        customerId,
+                        new ArrayList<>(),
+                        false,
+                        null,
+                        BigDecimal.ZERO.setScale(2),
+                        BigDecimal.ZERO.setScale(2),
+                        BigDecimal.ZERO.setScale(2),
+                        null,
+                        null))));
+    }
+
+    public Mono<Cart> getCartByCustomerId(final String customerId) {
+        return cartRepository.findByCustomerId(customerId)
+                .switchIfEmpty(Mono.error(() -> new GlobalHandlerException(HttpStatus.NOT_FOUND, "Cart not found")));
+    }
+
+    /** Summarized from the full cart, like CartService does for carts it does not write directly. */
+    public Mono<CartSummary> getCartSummary(final String customerId) {
+        return getCartByCustomerId(customerId).map(CartSummary::of);
+    }
+
+    public Mono<Void> deleteCartByCustomerId(final String customerId) {
+        log.debug("Entering reactive deleteCartByCustomerId with customerId: {}", customerId);
+        return cartRepository.findByCustomerId(customerId)
+                .flatMap(cartRepository::delete)
+                .then(clearHistory(customerId));
+    }
+
+    public Mono<Cart> addItemToCart(final String customerId, final CartItem newItem) {
+        return mutate("addItem", customerId, new AddItemCommand(null, customerId, newItem));
+    }
+
+    public Mono<Cart> updateItemQuantity(final String customerId, final String productId, final int quantity) {
+        return mutate("updateQuantity", customerId,
+                new UpdateQuantityCommand(null, customerId, productId, quantity));
+    }
+
+    public Mono<Cart> removeItemFromCart(final String customerId, final String productId) {
+        return mutate("removeItem", customerId, new RemoveItemCommand(null, customerId, productId));
+    }
+
+    public Mono<BatchCartResponse> applyBatch(final String customerId, final List<CartOperation> operations) {
+        return Mono.fromCallable(() -> {
+            cartService.validateBatch(operations);
+            return new BatchCartCommand(null, customerId, operations);
+        }).flatMap(command -> mutate("batch", customerId, command)
+                .map(cart -> new BatchCartResponse(cart, command.getResults())));
+    }
+
+    public Mono<Void> clearCart(final String customerId) {
+        log.debug("Entering reactive clearCart with customerId: {}", customerId);
+        return getCartByCustomerId(customerId)
+                .flatMap(cart -> {
+                    cart.getItems().clear();
+                    cart.setAppliedPromoCode(null);
+                    cart.setSubTotal(BigDecimal.ZERO.setScale(2));
+                    cart.setDiscountAmount(BigDecimal.ZERO.setScale(2));
+                    cart.setTotalPrice(BigDecimal.ZERO.setScale(2));
+                    return cartRepository.save(cart);
+                })
+                .then(clearHistory(customerId));
+    }
+
+    public Mono<Cart> archiveCart(final String customerId) {
+        return findCart(customerId, false, "Cart not found for customer ID: ")
+                .flatMap(cart -> {
+                    cart.setArchived(true);
+                    return cartRepository.save(cart);
+                })
+                .flatMap(cart -> clearHistory(customerId).thenReturn(cart));
+    }
+
+    /** Takes back the customer's most recent recorded item change. */
+    public Mono<Cart> undo(final String customerId) {
+        return Mono.fromCallable(() -> cartService.undo(customerId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Re-applies the change most recently taken back by {@link #undo}. */
+    public Mono<Cart> redo(final String customerId) {
+        return Mono.fromCallable(() -> cartService.redo(customerId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Cart> unarchiveCart(final String customerId) {
+        return findCart(customerId, true, "No archived cart found for customer ID: ")
+                .flatMap(cart -> {
+                    cart.setArchived(false);
+                    return cartRepository.save(cart);
+                });
+    }
+
+    public Mono<Cart> applyPromoCode(final String customerId, final String promoCodeInput) {
+        String promoCodeUpper = promoCodeInput.toUpperCase();
+        return Mono.defer(() -> findCart(customerId, false, "Cart not found for customer ID: "))
+                .flatMap(cart -> activePromoCode(promoCodeUpper)
+                        .switchIfEmpty(Mono.error(() -> new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                                "Invalid, inactive, or expired promo code: " + promoCodeInput)))
+                        .flatMap(promo -> {
+                            log.info("Applying valid promo code '{}' to cartId: {}", promoCodeUpper, cart.getId());
+                            cart.setAppliedPromoCode(promoCodeUpper);
+                            return saveCart(cart);
+                        }))
+                .retryWhen(conflictRetry("applyPromoCode"));
+    }
+
+    public Mono<Cart> removePromoCode(final String customerId) {
+        return Mono.defer(() -> findCart(customerId, false, "Cart not found for customer ID: "))
+                .flatMap(cart -> {
+                    if (cart.getAppliedPromoCode() == null) {
+                        return Mono.just(cart);
+                    }
+                    cart.setAppliedPromoCode(null);
+                    return saveCart(cart);
+                })
+                .retryWhen(conflictRetry("removePromoCode"));
+    }
+
+    public Mono<Cart> checkoutCart(final String customerId, final ConfirmationType confirmationType,
+                                   final String signature, final Double longitude, final Double latitude,
+                                   final DeliveryAddress address) {
+        return Mono.fromCallable(() -> cartService.checkoutCart(customerId, confirmationType, signature,
+                        longitude, latitude, address))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<CheckoutJob> submitCheckout(final String customerId, final ConfirmationType confirmationType,
+                                            final String signature, final Double longitude,
+                                            final Double latitude, final DeliveryAddress address) {
+        return Mono.fromCallable(() -> checkoutJobService.submit(customerId, confirmationType, signature,
+                        longitude, latitude, address))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<CheckoutJob> getCheckoutJob(final String customerId, final String checkoutId) {
+        return Mono.fromCallable(() -> checkoutJobService.getJob(customerId, checkoutId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Read, apply and save, starting again from a fresh read (hence the
+     * defer) when the versioned save loses a race. The commands are only applied in memory
+     * here, so they are built without a {@link CartService}.
+     */
+    private Mono<Cart> mutate(final String operation, final String customerId, final CartCommand command) {
+        log.debug("Entering reactive {} with customerId: {}", operation, customerId);
+        return Mono.defer(() -> getCartByCustomerId(customerId))
+                .map(command::apply)
+                .flatMap(this::saveCart)
+                .retryWhen(conflictRetry(operation))
+                .flatMap(cart -> Mono.fromRunnable(() -> cartService.recordHistory(operation, customerId, command))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(cart));
+    }
+
+    private Mono<Void> clearHistory(final String customerId) {
+        return Mono.fromRunnable(() -> cartHistory.clear(customerId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<Cart> saveCart(final Cart cart) {
+        return recalculateCartTotals(cart).flatMap(cartRepository::save);
+    }
+
+    private Retry conflictRetry(final String operation) {
+        return Retry.backoff(maxAttempts - 1, Duration.ofMillis(backoffBaseMillis))
+                .maxBackoff(Duration.ofMillis(Math.max(backoffBaseMillis, backoffMaxMillis)))
+                .jitter(1.0)
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .doBeforeRetry(signal -> {
+                    cartMetrics.recordVersionConflict(operation);
+                    cartMetrics.recordRetry(operation);
+                    log.debug("Version conflict on {} (attempt {}), retrying", operation, signal.totalRetries() + 1);
+                })
+                .onRetryExhaustedThrow((spec, signal) -> {
+                    cartMetrics.recordVersionConflict(operation);
+                    log.warn("Giving up {} after {} conflicting attempts", operation, signal.totalRetries() + 1);
+                    return new GlobalHandlerException(HttpStatus.CONFLICT,
+                            "Cart was modified concurrently, please retry", signal.failure());
+                });
+    }
+
+    private Mono<Cart> findCart(final String customerId, final boolean archived, final String notFoundMessage) {
+        return cartRepository.findByCustomerIdAndArchived(customerId, archived)
+                .switchIfEmpty(Mono.error(() -> new NoSuchElementException(notFoundMessage + customerId)));
+    }
+
+    private Mono<PromoCode> activePromoCode(final String code) {
+        return promoCodeRepository.findByCode(code.toUpperCase())
+                .filter(PromoCode::isActive);
+    }
+
+    private Mono<Cart> recalculateCartTotals(final Cart cart) {
+        if (cart.getAppliedPromoCode() == null) {
+            return Mono.just(applyTotals(cart, null));
+        }
+        return activePromoCode(cart.getAppliedPromoCode())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(promoOpt -> {
+                    PromoCode promo = promoOpt.orElse(null);
+                    if (promo == null) {
+                        log.warn("Applied promo code {} is no longer valid. Removing.", cart.getAppliedPromoCode());
+                        cart.setAppliedPromoCode(null);
+                    } else if (promo.getExpiryDate() != null && promo.getExpiryDate().isBefore(Instant.now())) {
+                        log.warn("Applied promo code {} is expired. Removing.", cart.getAppliedPromoCode());
+                        cart.setAppliedPromoCode(null);
+                        promo = null;
+                    }
+                    return applyTotals(cart, promo);
+                });
+    }
+
+    private static Cart applyTotals(final Cart cart, final PromoCode promo) {
+        CartTotals totals = CartTotalsCalculator.calculate(cart.getItems(), promo);
+        cart.setSubTotal(totals.subTotal());
+        cart.setDiscountAmount(totals.discountAmount());
+        cart.setTotalPrice(totals.totalPrice());
+        return cart;
+    }
+}
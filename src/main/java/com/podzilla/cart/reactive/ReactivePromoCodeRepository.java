@@ -0,0 +1,9 @@
+package com.podzilla.cart.reactive;
+
+import com.podzilla.cart.model.PromoCode;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePromoCodeRepository extends ReactiveMongoRepository<PromoCode, String> {
+    Mono<PromoCode> findByCode(String code);
+}
@@ -0,0 +1,50 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.dto.CartSummary;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single round-trip cart mutations executed server-side by MongoDB.
+ * Each method applies the item change and recomputes the stored totals
+ * in one findAndModify, returning the cart as it is after the update.
+ */
+public interface CartRepositoryCustom {
+
+    Optional<Cart> addItem(String customerId, CartItem item);
+
+    Optional<Cart> setItemQuantity(String customerId, String productId, int quantity);
+
+    Optional<Cart> removeItem(String customerId, String productId);
+
+    /**
+     * Applies a sequence of item changes (added, quantity changed or
+     * reduced, removed) in one update, as used by undo and redo.
+     */
+    Optional<Cart> applyChanges(String customerId, List<CartChange> changes);
+
+    /**
+     * Overwrites promo-dependent totals, but only while the stored subtotal
+     * still equals {@code expectedSubTotal}. A concurrent item change wins
+     * and recomputes its own totals.
+     */
+    boolean updateTotals(Cart cart, BigDecimal expectedSubTotal);
+
+    /**
+     * Sets version 0 on a cart stored before carts were versioned, so that
+     * saving it updates the document instead of inserting it again. Returns
+     * false if there is no such unversioned cart.
+     */
+    boolean initializeVersion(String cartId);
+
+    /**
+     * The customer's cart totals and item count, projected server-side so
+     * the items themselves are never read off the wire.
+     */
+    Optional<CartSummary> findSummaryByCustomerId(String customerId);
+}
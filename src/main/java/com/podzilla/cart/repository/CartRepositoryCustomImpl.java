@@ -0,0 +1,216 @@
+package com.podzilla.cart.repository;
+
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.podzilla.cart.dto.CartSummary;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartItem;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class CartRepositoryCustomImpl implements CartRepositoryCustom {
+
+    private static final String ITEMS = "$items";
+    private static final String ITEM = "item";
+    private static final String ITEM_PRODUCT_ID = "$$item.productId";
+    private static final String ITEM_QUANTITY = "$$item.quantity";
+    private static final String ZERO_AMOUNT = "0.00";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<Cart> addItem(final String customerId, final CartItem item) {
+        return findAndModify(new Document("customerId", customerId), List.of(withAdded(item)));
+    }
+
+    @Override
+    public Optional<Cart> setItemQuantity(final String customerId,
+                                          final String productId, final int quantity) {
+        return findAndModify(new Document("customerId", customerId)
+                .append("items.productId", productId), List.of(withQuantity(productId, quantity)));
+    }
+
+    @Override
+    public Optional<Cart> removeItem(final String customerId, final String productId) {
+        return findAndModify(new Document("customerId", customerId), List.of(withoutProduct(productId)));
+    }
+
+    @Override
+    public Optional<Cart> applyChanges(final String customerId, final List<CartChange> changes) {
+        List<Document> itemsExpressions = new ArrayList<>();
+        for (CartChange change : changes) {
+            switch (change.getType()) {
+                case ITEM_ADDED -> itemsExpressions.add(withAdded(
+                        new CartItem(change.getProductId(), change.getQuantity(), change.getUnitPrice())));
+                case QUANTITY_CHANGED -> itemsExpressions.add(
+                        withQuantity(change.getProductId(), change.getQuantity()));
+                case QUANTITY_REDUCED -> {
+                    itemsExpressions.add(mapMatching(change.getProductId(), new Document("$mergeObjects",
+                            List.of("$$item", new Document("quantity", new Document("$subtract",
+                                    List.of(ITEM_QUANTITY, change.getQuantity())))))));
+                    itemsExpressions.add(new Document("$filter", new Document("input", ITEMS)
+                            .append("as", ITEM)
+                            .append("cond", new Document("$or", List.of(
+                                    new Document("$ne", List.of(ITEM_PRODUCT_ID, literal(change.getProductId()))),
+                                    new Document("$gt", List.of(ITEM_QUANTITY, 0)))))));
+                }
+                case ITEM_REMOVED -> itemsExpressions.add(withoutProduct(change.getProductId()));
+                default -> throw new IllegalArgumentException("Not an item change: " + change.getType());
+            }
+        }
+        return findAndModify(new Document("customerId", customerId), itemsExpressions);
+    }
+
+    @Override
+    public boolean updateTotals(final Cart cart, final BigDecimal expectedSubTotal) {
+        Query query = Query.query(Criteria.where("_id").is(cart.getId())
+                .and("subTotal").is(expectedSubTotal));
+        Update update = new Update()
+                .set("appliedPromoCode", cart.getAppliedPromoCode())
+                .set("discountAmount", cart.getDiscountAmount())
+                .set("totalPrice", cart.getTotalPrice())
+                .inc("version", 1)
+                .currentDate("lastModified");
+        return mongoTemplate.updateFirst(query, update, Cart.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public boolean initializeVersion(final String cartId) {
+        Query query = Query.query(Criteria.where("_id").is(cartId).and("version").exists(false));
+        return mongoTemplate.updateFirst(query, new Update().set("version", 0L), Cart.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public Optional<CartSummary> findSummaryByCustomerId(final String customerId) {
+        Document projection = new Document("itemCount",
+                new Document("$size", new Document("$ifNull", List.of(ITEMS, List.of()))))
+                .append("subTotal", 1)
+                .append("discountAmount", 1)
+                .append("totalPrice", 1)
+                .append("appliedPromoCode", 1)
+                .append("version", 1);
+        Document summary = mongoTemplate.execute(Cart.class, collection -> collection
+                .find(new Document("customerId", customerId))
+                .projection(projection)
+                .first());
+        return Optional.ofNullable(summary)
+                .map(document -> mongoTemplate.getConverter().read(CartSummary.class, document));
+    }
+
+    /** Each items expression is a stage of its own, so later ones see the result of earlier ones. */
+    private Optional<Cart> findAndModify(final Document filter, final List<Document> itemsExpressions) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(set("items", new Document("$ifNull", List.of(ITEMS, List.of()))));
+        for (Document itemsExpression : itemsExpressions) {
+            pipeline.add(set("items", itemsExpression));
+        }
+        pipeline.addAll(totalsStages());
+        pipeline.add(set("version", new Document("$add",
+                List.of(new Document("$ifNull", List.of("$version", 0L)), 1L))));
+        pipeline.add(set("lastModified", "$$NOW"));
+
+        Document updated = mongoTemplate.execute(Cart.class, collection -> collection
+                .findOneAndUpdate(filter, pipeline,
+                        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)));
+        return Optional.ofNullable(updated)
+                .map(document -> mongoTemplate.getConverter().read(Cart.class, document));
+    }
+
+    /**
+     * Recomputes subTotal from the items and keeps the stored discount,
+     * capped at the new subtotal. Percentage promos are re-evaluated by the
+     * caller, which knows the promo definition. BigDecimal fields are written
+     * back as strings, the representation Spring Data uses for them, and at
+     * scale 2 like CartTotalsCalculator's: updateTotals matches on the
+     * stored subtotal string.
+     */
+    private static List<Document> totalsStages() {
+        Document pricedItems = new Document("$filter", new Document("input", ITEMS)
+                .append("as", ITEM)
+                .append("cond", new Document("$and", List.of(
+                        new Document("$ne", List.of(new Document("$ifNull",
+                                Arrays.asList("$$item.unitPrice", null)), null)),
+                        new Document("$gt", List.of(ITEM_QUANTITY, 0))))));
+        Document lineTotals = new Document("$map", new Document("input", pricedItems)
+                .append("as", ITEM)
+                .append("in", new Document("$multiply", List.of(
+                        new Document("$toDecimal", "$$item.unitPrice"), ITEM_QUANTITY))));
+        Document subTotal = new Document("$round", List.of(
+                new Document("$toDecimal", new Document("$sum", lineTotals)), 2));
+
+        Document noPromo = new Document("$eq", Arrays.asList(
+                new Document("$ifNull", Arrays.asList("$appliedPromoCode", null)), null));
+        Document discount = new Document("$cond", List.of(noPromo,
+                new Document("$toDecimal", ZERO_AMOUNT),
+                new Document("$min", List.of(
+                        new Document("$toDecimal", new Document("$ifNull", List.of("$discountAmount", ZERO_AMOUNT))),
+                        "$subTotal"))));
+
+        return List.of(
+                set("subTotal", subTotal),
+                set("discountAmount", discount),
+                set("totalPrice", new Document("$subtract", List.of("$subTotal", "$discountAmount"))),
+                new Document("$set", new Document("subTotal", new Document("$toString", "$subTotal"))
+                        .append("discountAmount", new Document("$toString", "$discountAmount"))
+                        .append("totalPrice", new Document("$toString", "$totalPrice"))));
+    }
+
+    private static Document mapMatching(final String productId, final Document replacement) {
+        return new Document("$map", new Document("input", ITEMS)
+                .append("as", ITEM)
+                .append("in", new Document("$cond", List.of(
+                        new Document("$eq", List.of(ITEM_PRODUCT_ID, literal(productId))),
+                        replacement, "$$item"))));
+    }
+
+    private Document withAdded(final CartItem item) {
+        Document newItem = new Document();
+        mongoTemplate.getConverter().write(item, newItem);
+        newItem.remove("_class");
+
+        Document incremented = mapMatching(item.getProductId(),
+                new Document("$mergeObjects", List.of("$$item",
+                        new Document("quantity", new Document("$add",
+                                List.of(ITEM_QUANTITY, item.getQuantity()))))));
+        Document appended = new Document("$concatArrays",
+                List.of(ITEMS, new Document("$literal", List.of(newItem))));
+        Document containsProduct = new Document("$in",
+                List.of(literal(item.getProductId()), ITEMS + ".productId"));
+
+        return new Document("$cond", List.of(containsProduct, incremented, appended));
+    }
+
+    private static Document withQuantity(final String productId, final int quantity) {
+        return quantity <= 0
+                ? withoutProduct(productId)
+                : mapMatching(productId, new Document("$mergeObjects",
+                        List.of("$$item", new Document("quantity", quantity))));
+    }
+
+    private static Document withoutProduct(final String productId) {
+        return new Document("$filter", new Document("input", ITEMS)
+                .append("as", ITEM)
+                .append("cond", new Document("$ne", List.of(ITEM_PRODUCT_ID, literal(productId)))));
+    }
+
+    private static Document literal(final Object value) {
+        return new Document("$literal", value);
+    }
+
+    private static Document set(final String field, final Object expression) {
+        return new Document("$set", new Document(field, expression));
+    }
+}
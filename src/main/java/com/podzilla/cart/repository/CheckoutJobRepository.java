@@ -0,0 +1,12 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.CheckoutJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CheckoutJobRepository extends MongoRepository<CheckoutJob, String>, CheckoutJobRepositoryCustom {
+    Optional<CheckoutJob> findByIdAndCustomerId(String id, String customerId);
+}
@@ -0,0 +1,15 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.CheckoutJob;
+
+import java.time.Instant;
+
+/**
+ * Status changes for checkout jobs. A job leaves PENDING exactly once, so
+ * the worker and the status endpoint's timeout cannot overwrite each other.
+ */
+public interface CheckoutJobRepositoryCustom {
+
+    /** Moves the job from PENDING to the given status; false if it had already left PENDING. */
+    boolean completeIfPending(String jobId, CheckoutJob.Status status, Instant completedAt, String error);
+}
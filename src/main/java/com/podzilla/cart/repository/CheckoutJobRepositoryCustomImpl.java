@@ -0,0 +1,27 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.CheckoutJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+@RequiredArgsConstructor
+public class CheckoutJobRepositoryCustomImpl implements CheckoutJobRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean completeIfPending(final String jobId, final CheckoutJob.Status status, final Instant completedAt,
+                                     final String error) {
+        Query pending = Query.query(Criteria.where("_id").is(jobId).and("status").is(CheckoutJob.Status.PENDING));
+        Update update = new Update()
+                .set("status", status)
+                .set("completedAt", completedAt)
+                .set("error", error);
+        return mongoTemplate.updateFirst(pending, update, CheckoutJob.class).getMatchedCount() > 0;
+    }
+}
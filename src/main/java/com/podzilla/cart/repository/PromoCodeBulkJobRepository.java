@@ -0,0 +1,10 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PromoCodeBulkJobRepository extends MongoRepository<PromoCodeBulkJob, String>,
+        PromoCodeBulkJobRepositoryCustom {
+}
@@ -0,0 +1,22 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.PromoCodeBulkJob;
+
+import java.time.Instant;
+
+/**
+ * Conditional writes for bulk jobs. Once a job has left RUNNING, neither
+ * the worker's progress nor its final status can overwrite that, and the
+ * stall check never writes back a stale copy of the counters.
+ */
+public interface PromoCodeBulkJobRepositoryCustom {
+
+    /** Writes the job's counters, errors and updatedAt if it is still RUNNING; false if it had finished. */
+    boolean updateProgressIfRunning(PromoCodeBulkJob job);
+
+    /** Writes the job's progress and its final status if it is still RUNNING; false if it had finished. */
+    boolean finishIfRunning(PromoCodeBulkJob job);
+
+    /** Marks the job FAILED if it is RUNNING and last reported before {@code stalledBefore}. */
+    boolean failIfStalled(String jobId, Instant stalledBefore, Instant failedAt, String error);
+}
@@ -0,0 +1,58 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+
+@RequiredArgsConstructor
+public class PromoCodeBulkJobRepositoryCustomImpl implements PromoCodeBulkJobRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean updateProgressIfRunning(final PromoCodeBulkJob job) {
+        return mongoTemplate.updateFirst(running(job.getId()), progress(job), PromoCodeBulkJob.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean finishIfRunning(final PromoCodeBulkJob job) {
+        Update update = progress(job)
+                .set("status", job.getStatus())
+                .set("completedAt", job.getCompletedAt())
+                .set("error", job.getError());
+        return mongoTemplate.updateFirst(running(job.getId()), update, PromoCodeBulkJob.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean failIfStalled(final String jobId, final Instant stalledBefore, final Instant failedAt,
+                                 final String error) {
+        Query stalled = running(jobId).addCriteria(Criteria.where("updatedAt").lt(stalledBefore));
+        Update update = new Update()
+                .set("status", PromoCodeBulkJob.Status.FAILED)
+                .set("error", error)
+                .set("updatedAt", failedAt)
+                .set("completedAt", failedAt);
+        return mongoTemplate.updateFirst(stalled, update, PromoCodeBulkJob.class).getMatchedCount() > 0;
+    }
+
+    private static Update progress(final PromoCodeBulkJob job) {
+        return new Update()
+                .set("processed", job.getProcessed())
+                .set("inserted", job.getInserted())
+                .set("duplicates", job.getDuplicates())
+                .set("rejected", job.getRejected())
+                .set("failed", job.getFailed())
+                .set("errors", job.getErrors())
+                .set("updatedAt", job.getUpdatedAt());
+    }
+
+    private static Query running(final String jobId) {
+        return Query.query(Criteria.where("_id").is(jobId).and("status").is(PromoCodeBulkJob.Status.RUNNING));
+    }
+}
@@ -8,6 +8,6 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface PromoCodeRepository extends MongoRepository<PromoCode, String> {
+public interface PromoCodeRepository extends MongoRepository<PromoCode, String>, PromoCodeRepositoryCustom {
     Optional<PromoCode> findByCode(String code);
 }
@@ -0,0 +1,24 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.dto.PromoCodeFilter;
+import com.podzilla.cart.model.PromoCode;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Promo code listings in code order, resumed after a given code rather
+ * than skipped to by offset, so every page costs the same however deep it
+ * is. Filters and order are served by the promo code indexes.
+ */
+public interface PromoCodeRepositoryCustom {
+
+    /** Up to {@code limit} codes after {@code after} (exclusive, null for the first page). */
+    List<PromoCode> findPage(PromoCodeFilter filter, String after, int limit);
+
+    /**
+     * Every matching code after {@code after}, read lazily from a cursor.
+     * The stream holds the cursor open and must be closed.
+     */
+    Stream<PromoCode> stream(PromoCodeFilter filter, String after);
+}
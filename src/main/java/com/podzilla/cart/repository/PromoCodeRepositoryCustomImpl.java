@@ -0,0 +1,61 @@
+package com.podzilla.cart.repository;
+
+import com.podzilla.cart.dto.PromoCodeFilter;
+import com.podzilla.cart.model.PromoCode;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class PromoCodeRepositoryCustomImpl implements PromoCodeRepositoryCustom {
+
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<PromoCode> findPage(final PromoCodeFilter filter, final String after, final int limit) {
+        return mongoTemplate.find(query(filter, after).limit(limit), PromoCode.class);
+    }
+
+    @Override
+    public Stream<PromoCode> stream(final PromoCodeFilter filter, final String after) {
+        return mongoTemplate.stream(query(filter, after).cursorBatchSize(STREAM_BATCH_SIZE), PromoCode.class);
+    }
+
+    /**
+     * Equality on discountType and active, then the range on code, matching
+     * the active_code_idx and type_active_code_idx key order so Mongo never
+     * sorts in memory. With only discountType given, active is constrained
+     * to both values so the type-led index still yields code order (merged
+     * per active value). The expiry condition is checked on the index keys
+     * before documents are fetched.
+     */
+    static Query query(final PromoCodeFilter filter, final String after) {
+        Document criteria = new Document();
+        if (filter.getDiscountType() != null) {
+            criteria.append("discountType", filter.getDiscountType().name());
+        }
+        if (filter.getActive() != null) {
+            criteria.append("active", filter.getActive());
+        } else if (filter.getDiscountType() != null) {
+            criteria.append("active", new Document("$in", List.of(true, false)));
+        }
+        if (after != null) {
+            criteria.append("code", new Document("$gt", after.toUpperCase()));
+        }
+        if (filter.getExpired() != null) {
+            Document beforeNow = new Document("$lt", Date.from(Instant.now()));
+            criteria.append("expiryDate", filter.getExpired() ? beforeNow : new Document("$not", beforeNow));
+        }
+        return new BasicQuery(criteria).with(Sort.by("code"));
+    }
+}
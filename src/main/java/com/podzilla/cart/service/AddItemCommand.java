@@ -1,10 +1,12 @@
 package com.podzilla.cart.service;
 
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
 import com.podzilla.cart.model.CartItem;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
 import java.util.Optional;
 
 @RequiredArgsConstructor
@@ -18,19 +20,14 @@ public class AddItemCommand implements CartCommand {
     @Override
     public Cart execute() {
         log.debug("Executing AddItemCommand for customerId: {}, item: {}", customerId, newItem);
-        Cart cart = cartService.getCartByCustomerId(customerId);
-
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(newItem.getProductId()))
-                .findFirst();
-
-        if (existingItem.isPresent()) {
-            log.debug("Item exists, updating quantity for productId: {}", newItem.getProductId());
-            existingItem.get().setQuantity(existingItem.get().getQuantity() + newItem.getQuantity());
-        } else {
-            log.debug("Adding new item to cart for productId: {}", newItem.getProductId());
-            cart.getItems().add(newItem);
+        if (cartService.isAtomicMutationEnabled()) {
+            Cart updatedCart = cartService.mutateAtomically(
+                    repository -> repository.addItem(customerId, newItem), "Cart not found");
+            log.debug("AddItemCommand executed atomically, updated cart: {}", updatedCart);
+            return updatedCart;
         }
+        Cart cart = cartService.getCartByCustomerId(customerId);
+        apply(cart);
 
         Cart updatedCart = cartService.saveCart(cart);
         log.debug("AddItemCommand executed, updated cart: {}", updatedCart);
@@ -41,26 +38,51 @@ public class AddItemCommand implements CartCommand {
     public Cart undo() {
         log.debug("Undoing AddItemCommand for customerId: {}, item: {}", customerId, newItem);
         Cart cart = cartService.getCartByCustomerId(customerId);
+        revert(cart);
 
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(newItem.getProductId()))
-                .findFirst();
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("AddItemCommand undone, updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart apply(final Cart cart) {
+        Optional<CartItem> existingItem = cart.findItem(newItem.getProductId());
 
         if (existingItem.isPresent()) {
-            int newQuantity = existingItem.get().getQuantity() - newItem.getQuantity();
-            if (newQuantity <= 0) {
-                log.debug("Removing item during undo for productId: {}", newItem.getProductId());
-                cart.getItems().removeIf(i -> i.getProductId().equals(newItem.getProductId()));
-            } else {
-                log.debug("Reducing quantity during undo for productId: {}", newItem.getProductId());
-                existingItem.get().setQuantity(newQuantity);
-            }
+            log.debug("Item exists, updating quantity for productId: {}", newItem.getProductId());
+            existingItem.get().setQuantity(existingItem.get().getQuantity() + newItem.getQuantity());
+        } else {
+            log.debug("Adding new item to cart for productId: {}", newItem.getProductId());
+            cart.addItem(new CartItem(newItem.getProductId(), newItem.getQuantity(), newItem.getUnitPrice()));
+        }
+        cart.recordChange(CartChange.itemAdded(newItem.getProductId(), newItem.getQuantity(),
+                newItem.getUnitPrice()));
+        return cart;
+    }
+
+    @Override
+    public Cart revert(final Cart cart) {
+        Optional<CartItem> existingItem = cart.findItem(newItem.getProductId());
+
+        if (existingItem.isPresent()) {
+            log.debug("Reducing quantity during undo for productId: {}", newItem.getProductId());
+            CartChange change = CartChange.quantityReduced(newItem.getProductId(), newItem.getQuantity());
+            change.applyTo(cart);
+            cart.recordChange(change);
         } else {
             log.warn("Item not found during undo for productId: {}", newItem.getProductId());
         }
+        return cart;
+    }
 
-        Cart updatedCart = cartService.saveCart(cart);
-        log.debug("AddItemCommand undone, updated cart: {}", updatedCart);
-        return updatedCart;
+    @Override
+    public List<CartChange> changes() {
+        return List.of(CartChange.itemAdded(newItem.getProductId(), newItem.getQuantity(), newItem.getUnitPrice()));
+    }
+
+    @Override
+    public Optional<List<CartChange>> inverseChanges() {
+        return Optional.of(List.of(CartChange.quantityReduced(newItem.getProductId(), newItem.getQuantity())));
     }
 }
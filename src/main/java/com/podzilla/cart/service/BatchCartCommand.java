@@ -0,0 +1,127 @@
+package com.podzilla.cart.service;
+
+import com.podzilla.cart.dto.CartOperation;
+import com.podzilla.cart.dto.CartOperationResult;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartItem;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Applies a list of add/update/remove operations to a single loaded cart,
+ * recalculating totals and saving once. If any operation fails nothing is
+ * saved.
+ */
+@Slf4j
+public class BatchCartCommand implements CartCommand {
+
+    private final CartService cartService;
+    private final String customerId;
+    private final List<CartOperation> operations;
+    private final List<CartCommand> commands;
+    private final List<CartOperationResult> results = new ArrayList<>();
+
+    public BatchCartCommand(final CartService cartService, final String customerId,
+                            final List<CartOperation> operations) {
+        this.cartService = cartService;
+        this.customerId = customerId;
+        this.operations = operations;
+        this.commands = new ArrayList<>(operations.size());
+        for (CartOperation operation : operations) {
+            commands.add(toCommand(operation));
+        }
+    }
+
+    private CartCommand toCommand(final CartOperation operation) {
+        return switch (operation.getType()) {
+            case ADD -> new AddItemCommand(cartService, customerId, new CartItem(
+                    operation.getProductId(), operation.getQuantity(), operation.getUnitPrice()));
+            case UPDATE_QUANTITY -> new UpdateQuantityCommand(cartService, customerId,
+                    operation.getProductId(), operation.getQuantity());
+            case REMOVE -> new RemoveItemCommand(cartService, customerId, operation.getProductId());
+        };
+    }
+
+    public List<CartOperationResult> getResults() {
+        return results;
+    }
+
+    @Override
+    public Cart execute() {
+        log.debug("Executing BatchCartCommand for customerId: {} with {} operations",
+                customerId, operations.size());
+        Cart cart = cartService.getCartByCustomerId(customerId);
+        apply(cart);
+
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("BatchCartCommand executed, updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart undo() {
+        log.debug("Undoing BatchCartCommand for customerId: {}", customerId);
+        Cart cart = cartService.getCartByCustomerId(customerId);
+        revert(cart);
+
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("BatchCartCommand undone, updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart apply(final Cart cart) {
+        results.clear();
+        for (int i = 0; i < commands.size(); i++) {
+            CartOperation operation = operations.get(i);
+            try {
+                commands.get(i).apply(cart);
+            } catch (GlobalHandlerException e) {
+                throw new GlobalHandlerException(e.getStatus(), "Operation " + i + " ("
+                        + operation.getType() + " " + operation.getProductId() + "): "
+                        + e.getMessage(), e);
+            }
+            int quantity = cart.findItem(operation.getProductId())
+                    .map(CartItem::getQuantity)
+                    .orElse(0);
+            results.add(new CartOperationResult(i, operation.getType(),
+                    operation.getProductId(), quantity));
+        }
+        return cart;
+    }
+
+    @Override
+    public Cart revert(final Cart cart) {
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            commands.get(i).revert(cart);
+        }
+        return cart;
+    }
+
+    @Override
+    public List<CartChange> changes() {
+        List<CartChange> changes = new ArrayList<>();
+        for (CartCommand command : commands) {
+            changes.addAll(command.changes());
+        }
+        return changes;
+    }
+
+    @Override
+    public Optional<List<CartChange>> inverseChanges() {
+        List<CartChange> inverse = new ArrayList<>();
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            Optional<List<CartChange>> commandInverse = commands.get(i).inverseChanges();
+            if (commandInverse.isEmpty()) {
+                return Optional.empty();
+            }
+            inverse.addAll(commandInverse.get());
+        }
+        return Optional.of(inverse);
+    }
+}
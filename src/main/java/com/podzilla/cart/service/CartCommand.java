@@ -1,8 +1,36 @@
 package com.podzilla.cart.service;
 
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface CartCommand {
     Cart execute();
     Cart undo();
+
+    /**
+     * Applies the change to an already loaded cart, without loading,
+     * recalculating totals or saving.
+     */
+    Cart apply(Cart cart);
+
+    /**
+     * Reverts a previous {@link #apply} on an already loaded cart.
+     */
+    Cart revert(Cart cart);
+
+    /**
+     * The changes made by the last execution, in order. Replaying them
+     * redoes the command.
+     */
+    List<CartChange> changes();
+
+    /**
+     * The changes that undo the last execution, in order, or empty if they
+     * are not known because it ran as a server-side atomic update and never
+     * saw the previous state.
+     */
+    Optional<List<CartChange>> inverseChanges();
 }
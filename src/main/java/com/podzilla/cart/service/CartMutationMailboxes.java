@@ -0,0 +1,178 @@
+package com.podzilla.cart.service;
+
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Serialises cart mutations per customer. Each customer with pending
+ * mutations has a mailbox drained by one virtual thread; everything queued
+ * while a cycle runs is applied in the next one, with a single load and a
+ * single save. Different customers never wait for each other.
+ *
+ * <p>Every caller in a cycle gets the cart as saved at the end of the
+ * cycle, so it can include mutations queued alongside its own. A command
+ * that fails is left out of the cycle without affecting the others.
+ * Atomic server-side mutations are not used in this mode.
+ *
+ * <p>A caller that times out takes its command back out of the mailbox and
+ * gets a 503. Once the drainer has taken the command it is being applied,
+ * so the caller waits for that outcome instead of reporting a failure for a
+ * change that may still be saved.
+ */
+@Slf4j
+class CartMutationMailboxes {
+
+    private static final class Pending {
+        private final CartCommand command;
+        private final CompletableFuture<Cart> result = new CompletableFuture<>();
+
+        Pending(final CartCommand command) {
+            this.command = command;
+        }
+    }
+
+    private final CartService cartService;
+    private final CartMetrics cartMetrics;
+    private final int maxBatch;
+    private final Duration timeout;
+
+    /** Present while a customer has a drainer running; mutated only inside compute. */
+    private final ConcurrentHashMap<String, List<Pending>> mailboxes = new ConcurrentHashMap<>();
+
+    CartMutationMailboxes(final CartService cartService, final CartMetrics cartMetrics,
+                          final int maxBatch, final Duration timeout) {
+        this.cartService = cartService;
+        this.cartMetrics = cartMetrics;
+        this.maxBatch = maxBatch;
+        this.timeout = timeout;
+    }
+
+    Cart submit(final String customerId, final CartCommand command) {
+        Pending pending = new Pending(command);
+        boolean[] startDrainer = {false};
+        mailboxes.compute(customerId, (id, queue) -> {
+            List<Pending> mailbox = queue;
+            if (mailbox == null) {
+                mailbox = new ArrayList<>();
+                startDrainer[0] = true;
+            }
+            mailbox.add(pending);
+            return mailbox;
+        });
+        if (startDrainer[0]) {
+            Thread.ofVirtual().name("cart-mailbox-" + customerId).start(() -> drain(customerId));
+        }
+        return await(customerId, pending);
+    }
+
+    private void drain(final String customerId) {
+        while (true) {
+            List<Pending> batch = new ArrayList<>();
+            mailboxes.compute(customerId, (id, queue) -> {
+                int count = Math.min(queue.size(), maxBatch);
+                List<Pending> head = queue.subList(0, count);
+                batch.addAll(head);
+                head.clear();
+                // Removing the empty mailbox hands the next submit a fresh drainer.
+                return batch.isEmpty() ? null : queue;
+            });
+            if (batch.isEmpty()) {
+                return;
+            }
+            run(customerId, batch);
+        }
+    }
+
+    private void run(final String customerId, final List<Pending> batch) {
+        cartMetrics.recordCoalescedBatch(batch.size());
+        List<Pending> applied = new ArrayList<>(batch.size());
+        Map<Pending, RuntimeException> rejected = new HashMap<>();
+        Cart saved;
+        try {
+            saved = cartService.retryOnConflict("coalesced", () -> {
+                applied.clear();
+                rejected.clear();
+                Cart cart = cartService.getCartByCustomerId(customerId);
+                for (Pending pending : batch) {
+                    // A failing command may have changed the cart partway (a batch stops
+                    // at its first bad operation), so each one works on a copy.
+                    Cart attempt = cart.copy();
+                    try {
+                        pending.command.apply(attempt);
+                    } catch (GlobalHandlerException e) {
+                        rejected.put(pending, e);
+                        continue;
+                    }
+                    cart = attempt;
+                    applied.add(pending);
+                }
+                return applied.isEmpty() ? cart : cartService.saveCart(cart);
+            });
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        log.debug("Applied {} of {} queued mutations for customerId: {} in one save",
+                applied.size(), batch.size(), customerId);
+        applied.forEach(pending -> pending.result.complete(saved));
+        rejected.forEach((pending, e) -> pending.result.completeExceptionally(e));
+    }
+
+    private Cart await(final String customerId, final Pending pending) {
+        try {
+            return pending.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (TimeoutException e) {
+            if (withdraw(customerId, pending)) {
+                throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Cart update timed out, please retry", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (withdraw(customerId, pending)) {
+                throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Interrupted while waiting for cart update", e);
+            }
+        }
+        log.debug("Queued mutation for customerId: {} outlived its timeout while being applied", customerId);
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /** Removes the command from the mailbox unless the drainer has already taken it. */
+    private boolean withdraw(final String customerId, final Pending pending) {
+        boolean[] withdrawn = {false};
+        mailboxes.computeIfPresent(customerId, (id, queue) -> {
+            withdrawn[0] = queue.remove(pending);
+            // Kept even if now empty: the running drainer removes it, and removing it here would start a second one.
+            return queue;
+        });
+        return withdrawn[0];
+    }
+
+    private static RuntimeException unwrap(final Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException(cause);
+    }
+}
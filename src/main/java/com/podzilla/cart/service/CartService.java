@@ -1,11 +1,29 @@
 package com.podzilla.cart.service;
 
+import com.podzilla.cart.config.CacheConfig;
+import com.podzilla.cart.dto.BatchCartResponse;
+import com.podzilla.cart.dto.CartOperation;
+import com.podzilla.cart.dto.CartSummary;
 import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.logging.SamplingTurboFilter;
+import com.podzilla.cart.metrics.CartMetrics;
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartHistoryEntry;
 import com.podzilla.cart.model.CartItem;
 import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.outbox.CheckoutOutbox;
 import com.podzilla.cart.repository.CartRepository;
+import com.podzilla.cart.store.CartHistoryStore;
+import com.podzilla.cart.store.EventSourcedCartStore;
+import com.podzilla.cart.store.WriteBehindCartStore;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -17,12 +35,17 @@ import com.podzilla.mq.events.DeliveryAddress;
 import com.podzilla.mq.events.OrderItem;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,18 +55,60 @@ public class CartService {
     private final CartRepository cartRepository;
     private final EventPublisher eventPublisher;
     private final PromoCodeService promoCodeService;
+    private final CartMetrics cartMetrics;
+    private final WriteBehindCartStore cartStore;
+    private final CheckoutOutbox checkoutOutbox;
+    private final EventSourcedCartStore eventStore;
+    private final CartHistoryStore cartHistory;
+
+    @Value("${cart.mutation.atomic:false}")
+    private boolean atomicMutationEnabled = false;
+
+    @Value("${cart.mutation.coalescing.enabled:false}")
+    private boolean coalescingEnabled = false;
+
+    @Value("${cart.mutation.coalescing.max-batch:50}")
+    private int coalescingMaxBatch = 50;
+
+    @Value("${cart.mutation.coalescing.timeout:10s}")
+    private Duration coalescingTimeout = Duration.ofSeconds(10);
+
+    private volatile CartMutationMailboxes mailboxes;
+
+    @Value("${cart.batch.max-operations:200}")
+    private int maxBatchOperations = 200;
+
+    @Value("${cart.concurrency.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${cart.concurrency.backoff-base-ms:10}")
+    private long backoffBaseMillis = 10;
+
+    @Value("${cart.concurrency.backoff-max-ms:200}")
+    private long backoffMaxMillis = 200;
 
     public CartService(final CartRepository cartRepository,
                       final EventPublisher eventPublisher,
-                      final PromoCodeService promoCodeService) {
+                      final PromoCodeService promoCodeService,
+                      final CartMetrics cartMetrics,
+                      final WriteBehindCartStore cartStore,
+                      final CheckoutOutbox checkoutOutbox,
+                      final EventSourcedCartStore eventStore,
+                      final CartHistoryStore cartHistory) {
         this.cartRepository = cartRepository;
         this.eventPublisher = eventPublisher;
         this.promoCodeService = promoCodeService;
+        this.cartMetrics = cartMetrics;
+        this.cartStore = cartStore;
+        this.checkoutOutbox = checkoutOutbox;
+        this.eventStore = eventStore;
+        this.cartHistory = cartHistory;
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart createCart(final String customerId) {
         log.debug("Entering createCart with customerId: {}", customerId);
-        Cart cart = cartRepository.findByCustomerId(customerId)
+        Cart cart = findCart(customerId)
                 .orElseGet(() -> {
                     Cart newCart = new Cart(
                             UUID.randomUUID().toString(),
@@ -53,56 +118,242 @@ public class CartService {
                             null,
                             BigDecimal.ZERO.setScale(2),
                             BigDecimal.ZERO.setScale(2),
-                            BigDecimal.ZERO.setScale(2)
+                            BigDecimal.ZERO.setScale(2),
+                            null,
+                            null
                     );
+                    newCart.recordChange(CartChange.of(CartChange.Type.CART_CREATED));
                     log.debug("Cart created: {}", newCart);
-                    return cartRepository.save(newCart);
+                    return persist(newCart);
                 });
         log.debug("Cart retrieved: {}", cart);
         return cart;
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart addItemToCart(final String customerId, final CartItem newItem) {
         log.debug("Entering addItemToCart with customerId: {}, newItem: {}", customerId, newItem);
-        CartCommand command = new AddItemCommand(this, customerId, newItem);
-        return command.execute();
+        return mutate("addItem", customerId, new AddItemCommand(this, customerId, newItem));
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart updateItemQuantity(final String customerId, final String productId, final int quantity) {
         log.debug("Entering updateItemQuantity with customerId:"
                 + " {}, productId: {}, quantity: {}", customerId,
                 productId, quantity);
-        CartCommand command = new UpdateQuantityCommand(this, customerId, productId, quantity);
-        return command.execute();
+        return mutate("updateQuantity", customerId,
+                new UpdateQuantityCommand(this, customerId, productId, quantity));
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart removeItemFromCart(final String customerId, final String productId) {
         log.debug("Entering removeItemFromCart with customerId: {}, productId: {}", customerId, productId);
-        CartCommand command = new RemoveItemCommand(this, customerId, productId);
-        return command.execute();
+        return mutate("removeItem", customerId, new RemoveItemCommand(this, customerId, productId));
+    }
+
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
+    public BatchCartResponse applyBatch(final String customerId, final List<CartOperation> operations) {
+        log.debug("Entering applyBatch with customerId: {}, operations: {}", customerId,
+                operations == null ? 0 : operations.size());
+        validateBatch(operations);
+        BatchCartCommand command = new BatchCartCommand(this, customerId, operations);
+        Cart updatedCart = mutate("batch", customerId, command);
+        return new BatchCartResponse(updatedCart, command.getResults());
+    }
+
+    /**
+     * Runs a cart command, either through the customer's mailbox when
+     * coalescing is enabled or directly with conflict retries, and records
+     * it in the customer's undo history.
+     */
+    private Cart mutate(final String operation, final String customerId, final CartCommand command) {
+        Timer.Sample sample = cartMetrics.startTimer();
+        boolean success = false;
+        Cart cart;
+        try {
+            cart = coalescingEnabled
+                    ? mailboxes().submit(customerId, command)
+                    : retryOnConflict(operation, command::execute);
+            success = true;
+        } finally {
+            cartMetrics.recordCommand(sample, command.getClass().getSimpleName(), success);
+        }
+        cartMetrics.recordCartSize("mutation", cart.getItems().size());
+        recordHistory(operation, customerId, command);
+        return cart;
+    }
+
+    /**
+     * Records an applied command on the customer's undo stack. Public for
+     * ReactiveCartService, which applies the same commands.
+     */
+    public void recordHistory(final String operation, final String customerId, final CartCommand command) {
+        if (!cartHistory.isEnabled()) {
+            return;
+        }
+        Optional<List<CartChange>> inverse = command.inverseChanges();
+        if (inverse.isEmpty()) {
+            // An atomic update that cannot be undone; undoing older entries past it would be wrong.
+            cartHistory.clear(customerId);
+        } else if (!inverse.get().isEmpty()) {
+            cartHistory.record(customerId,
+                    new CartHistoryEntry(operation, command.changes(), inverse.get(), Instant.now()));
+        }
     }
 
+    /** Takes back the customer's most recent recorded item change. */
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
+    public Cart undo(final String customerId) {
+        log.debug("Entering undo with customerId: {}", customerId);
+        CartHistoryEntry entry = retryOnConflict("undo", () -> cartHistory.popUndo(customerId))
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.CONFLICT, "Nothing to undo"));
+        log.debug("Undoing {} for customerId: {}", entry.getOperation(), customerId);
+        // The entry is taken before it is applied so that concurrent undos cannot both apply it.
+        try {
+            return applyChanges("undo", customerId, entry.getInverse());
+        } catch (RuntimeException e) {
+            cartHistory.restoreUndo(customerId, entry);
+            throw e;
+        }
+    }
+
+    /** Re-applies the change most recently taken back by {@link #undo}. */
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
+    public Cart redo(final String customerId) {
+        log.debug("Entering redo with customerId: {}", customerId);
+        CartHistoryEntry entry = retryOnConflict("redo", () -> cartHistory.popRedo(customerId))
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.CONFLICT, "Nothing to redo"));
+        log.debug("Redoing {} for customerId: {}", entry.getOperation(), customerId);
+        try {
+            return applyChanges("redo", customerId, entry.getChanges());
+        } catch (RuntimeException e) {
+            cartHistory.restoreRedo(customerId, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies recorded changes in a single server-side update when carts are
+     * written straight to Mongo, otherwise as a read-modify-write.
+     */
+    private Cart applyChanges(final String operation, final String customerId, final List<CartChange> changes) {
+        if (writesCartsDirectly()) {
+            return mutateAtomically(repository -> repository.applyChanges(customerId, changes), "Cart not found");
+        }
+        return retryOnConflict(operation, () -> {
+            Cart cart = getCartByCustomerId(customerId);
+            for (CartChange change : changes) {
+                change.applyTo(cart);
+                cart.recordChange(change);
+            }
+            return saveCart(cart);
+        });
+    }
+
+    private CartMutationMailboxes mailboxes() {
+        CartMutationMailboxes current = mailboxes;
+        if (current == null) {
+            synchronized (this) {
+                current = mailboxes;
+                if (current == null) {
+                    current = new CartMutationMailboxes(this, cartMetrics, coalescingMaxBatch, coalescingTimeout);
+                    mailboxes = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Rejects a batch that is empty, too large or has an incomplete
+     * operation, before any cart is loaded.
+     */
+    public void validateBatch(final List<CartOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, "Batch must contain at least one operation");
+        }
+        if (operations.size() > maxBatchOperations) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                    "Batch exceeds the limit of " + maxBatchOperations + " operations");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperation operation = operations.get(i);
+            String error = null;
+            if (operation == null || operation.getType() == null) {
+                error = "type is required";
+            } else if (operation.getProductId() == null || operation.getProductId().isBlank()) {
+                error = "productId is required";
+            } else if (operation.getType() == CartOperation.Type.ADD
+                    && (operation.getQuantity() == null || operation.getQuantity() <= 0)) {
+                error = "quantity must be positive";
+            } else if (operation.getType() == CartOperation.Type.ADD
+                    && (operation.getUnitPrice() == null || operation.getUnitPrice().signum() < 0)) {
+                error = "unitPrice must be zero or positive";
+            } else if (operation.getType() == CartOperation.Type.UPDATE_QUANTITY
+                    && operation.getQuantity() == null) {
+                error = "quantity is required";
+            }
+            if (error != null) {
+                throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, "Operation " + i + ": " + error);
+            }
+        }
+    }
+
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public void deleteCartByCustomerId(final String customerId) {
         log.debug("Entering deleteCartByCustomerId with customerId: {}", customerId);
+        if (eventStore.isEnabled()) {
+            eventStore.delete(customerId);
+            cartHistory.clear(customerId);
+            log.debug("Cart events deleted for customerId: {}", customerId);
+            return;
+        }
+        cartStore.detach(customerId);
         cartRepository.findByCustomerId(customerId)
                 .ifPresent(cart -> {
                     log.debug("Deleting cart for customerId: {}", customerId);
                     cartRepository.delete(cart);
                 });
+        cartHistory.clear(customerId);
         log.debug("Cart deletion completed for customerId: {}", customerId);
     }
 
+    /**
+     * Read-through cached for callers going through the Spring proxy, i.e.
+     * the GET endpoint. Commands call this on the service itself and so
+     * always read the stored cart, which their versioned saves rely on.
+     */
+    @Cacheable(cacheNames = CacheConfig.CARTS_CACHE, key = "#customerId")
     public Cart getCartByCustomerId(final String customerId) {
         log.debug("Entering getCartByCustomerId with customerId: {}", customerId);
-        Cart cart = cartRepository.findByCustomerId(customerId)
+        Cart cart = findCart(customerId)
                 .orElseThrow(() -> {
-                    log.error("Cart not found for customerId: {}", customerId);
+                    log.error(SamplingTurboFilter.SAMPLED, "Cart not found for customerId: {}", customerId);
                     throw new GlobalHandlerException(HttpStatus.NOT_FOUND, "Cart not found");
                 });
         log.debug("Cart retrieved: {}", cart);
         return cart;
     }
 
+    /**
+     * Totals and item count only, cached separately from full carts. Read
+     * with a Mongo projection when carts are written straight to Mongo;
+     * buffered and event-sourced carts are summarized from the full cart.
+     */
+    @Cacheable(cacheNames = CacheConfig.CART_SUMMARIES_CACHE, key = "#customerId")
+    public CartSummary getCartSummary(final String customerId) {
+        log.debug("Entering getCartSummary with customerId: {}", customerId);
+        if (!writesCartsDirectly()) {
+            return CartSummary.of(getCartByCustomerId(customerId));
+        }
+        return cartRepository.findSummaryByCustomerId(customerId)
+                .orElseThrow(() -> {
+                    log.error(SamplingTurboFilter.SAMPLED, "Cart not found for customerId: {}", customerId);
+                    throw new GlobalHandlerException(HttpStatus.NOT_FOUND, "Cart not found");
+                });
+    }
+
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public void clearCart(final String customerId) {
         log.debug("Entering clearCart with customerId: {}", customerId);
         Cart cart = getCartByCustomerId(customerId);
@@ -111,33 +362,49 @@ public class CartService {
         cart.setSubTotal(BigDecimal.ZERO.setScale(2));
         cart.setDiscountAmount(BigDecimal.ZERO.setScale(2));
         cart.setTotalPrice(BigDecimal.ZERO.setScale(2));
-        cartRepository.save(cart);
+        cart.recordChange(CartChange.of(CartChange.Type.CART_CLEARED));
+        persist(cart);
+        cartHistory.clear(customerId);
         log.debug("Cart cleared for customerId: {}", customerId);
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart archiveCart(final String customerId) {
         log.debug("Entering archiveCart with customerId: {}", customerId);
         Cart cart = getActiveCart(customerId);
         cart.setArchived(true);
-        Cart archivedCart = cartRepository.save(cart);
+        cart.recordChange(CartChange.of(CartChange.Type.ARCHIVED));
+        Cart archivedCart = persist(cart);
+        cartHistory.clear(customerId);
         log.debug("Cart archived: {}", archivedCart);
         return archivedCart;
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart unarchiveCart(final String customerId) {
         log.debug("Entering unarchiveCart with customerId: {}", customerId);
         Cart cart = getArchivedCart(customerId);
         cart.setArchived(false);
-        Cart activeCart = cartRepository.save(cart);
+        cart.recordChange(CartChange.of(CartChange.Type.UNARCHIVED));
+        Cart activeCart = persist(cart);
         log.debug("Cart unarchived: {}", activeCart);
         return activeCart;
     }
 
     private Cart getActiveCart(final String customerId) {
         log.debug("Entering getActiveCart with customerId: {}", customerId);
-        Cart cart = cartRepository.findByCustomerIdAndArchived(customerId, false)
+        Optional<Cart> activeCart;
+        if (eventStore.isEnabled()) {
+            activeCart = eventStore.find(customerId).filter(cart -> !cart.isArchived());
+        } else if (cartStore.isEnabled()) {
+            activeCart = cartStore.find(customerId,
+                    () -> cartRepository.findByCustomerIdAndArchived(customerId, false));
+        } else {
+            activeCart = cartRepository.findByCustomerIdAndArchived(customerId, false);
+        }
+        Cart cart = activeCart
                 .orElseThrow(() -> {
-                    log.error("Active cart not found for customerId: {}", customerId);
+                    log.error(SamplingTurboFilter.SAMPLED, "Active cart not found for customerId: {}", customerId);
                     return new NoSuchElementException("Cart not found for customer ID: " + customerId);
                 });
         log.debug("Active cart retrieved: {}", cart);
@@ -146,37 +413,55 @@ public class CartService {
 
     private Cart getArchivedCart(final String customerId) {
         log.debug("Entering getArchivedCart with customerId: {}", customerId);
-        Cart cart = cartRepository.findByCustomerIdAndArchived(customerId, true)
+        Optional<Cart> archivedCart = eventStore.isEnabled()
+                ? eventStore.find(customerId).filter(Cart::isArchived)
+                : cartRepository.findByCustomerIdAndArchived(customerId, true);
+        Cart cart = archivedCart
                 .orElseThrow(() -> {
-                    log.error("Archived cart not found for customerId: {}", customerId);
+                    log.error(SamplingTurboFilter.SAMPLED, "Archived cart not found for customerId: {}", customerId);
                     return new NoSuchElementException("No archived cart found for customer ID: " + customerId);
                 });
         log.debug("Archived cart retrieved: {}", cart);
         return cart;
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart applyPromoCode(final String customerId, final String promoCodeInput) {
         log.debug("Entering applyPromoCode for customerId: {}, promoCode: {}", customerId, promoCodeInput);
+        return retryOnConflict("applyPromoCode", () -> applyPromoCodeOnce(customerId, promoCodeInput));
+    }
+
+    private Cart applyPromoCodeOnce(final String customerId, final String promoCodeInput) {
         Cart cart = getActiveCart(customerId);
         String promoCodeUpper = promoCodeInput.toUpperCase();
 
         PromoCode promoCode = promoCodeService.getActivePromoCode(promoCodeUpper)
-                .orElseThrow(() -> new GlobalHandlerException(
-                        HttpStatus.BAD_REQUEST, "Invalid, inactive, or expired promo code: " + promoCodeInput));
+                .orElseThrow(() -> {
+                    cartMetrics.recordPromoRejected("apply", "invalid");
+                    return new GlobalHandlerException(
+                            HttpStatus.BAD_REQUEST, "Invalid, inactive, or expired promo code: " + promoCodeInput);
+                });
 
         log.info("Applying valid promo code '{}' to cartId: {}", promoCodeUpper, cart.getId());
         cart.setAppliedPromoCode(promoCodeUpper);
+        cart.recordChange(CartChange.promoApplied(promoCodeUpper));
 
         return saveCart(cart);
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
     public Cart removePromoCode(final String customerId) {
         log.debug("Entering removePromoCode for customerId: {}", customerId);
+        return retryOnConflict("removePromoCode", () -> removePromoCodeOnce(customerId));
+    }
+
+    private Cart removePromoCodeOnce(final String customerId) {
         Cart cart = getActiveCart(customerId);
 
         if (cart.getAppliedPromoCode() != null) {
             log.info("Removing applied promo code '{}' from cartId: {}", cart.getAppliedPromoCode(), cart.getId());
             cart.setAppliedPromoCode(null);
+            cart.recordChange(CartChange.of(CartChange.Type.PROMO_REMOVED));
             return saveCart(cart);
         } else {
             log.debug("No promo code to remove from cartId: {}", cart.getId());
@@ -184,91 +469,259 @@ public class CartService {
         }
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#cart.customerId")
     public Cart saveCart(final Cart cart) {
         log.debug("Preparing to save cartId: {}", cart.getId());
         recalculateCartTotals(cart);
         log.debug("Saving cart with updated totals: {}", cart);
-        return cartRepository.save(cart);
+        return persist(cart);
+    }
+
+    private Optional<Cart> findCart(final String customerId) {
+        if (eventStore.isEnabled()) {
+            return eventStore.find(customerId);
+        }
+        if (cartStore.isEnabled()) {
+            return cartStore.find(customerId, () -> cartRepository.findByCustomerId(customerId));
+        }
+        return cartRepository.findByCustomerId(customerId);
+    }
+
+    /**
+     * Single write path for carts. With event sourcing enabled, every save
+     * appends the cart's recorded changes to its stream. With write-behind
+     * enabled, active carts are buffered by the store; new carts are inserted
+     * directly and archived carts leave the store before being written.
+     */
+    private Cart persist(final Cart cart) {
+        if (eventStore.isEnabled()) {
+            return eventStore.save(cart);
+        }
+        cart.clearPendingChanges();
+        if (cart.getVersion() == null) {
+            initializeVersion(cart);
+        }
+        if (!cartStore.isEnabled() || cart.getVersion() == null) {
+            return insertOrSave(cart);
+        }
+        if (cart.isArchived()) {
+            cartStore.detach(cart.getCustomerId());
+            return cartRepository.save(cart);
+        }
+        return cartStore.save(cart);
+    }
+
+    /**
+     * A cart without a version is either new or was stored before carts
+     * were versioned; Spring Data would insert both. A stored one is given
+     * version 0 in place first so that its save is a versioned update.
+     * MongoIndexBootstrapper backfills versions at startup, so this only
+     * matters for carts read before the backfill reached them.
+     */
+    private void initializeVersion(final Cart cart) {
+        if (cart.getId() != null && cartRepository.initializeVersion(cart.getId())) {
+            cart.setVersion(0L);
+        }
+    }
+
+    private Cart insertOrSave(final Cart cart) {
+        try {
+            return cartRepository.save(cart);
+        } catch (DuplicateKeyException e) {
+            if (cart.getVersion() != null) {
+                throw e;
+            }
+            // Another request created this customer's cart, or versioned this
+            // stored cart, after it was read; start over from a fresh read.
+            throw new OptimisticLockingFailureException("Cart " + cart.getId() + " was written concurrently", e);
+        }
+    }
+
+    /**
+     * Runs a read-modify-write cart operation, re-executing it from a fresh
+     * read when the conditional save loses a race. Attempts back off with
+     * full jitter so that colliding requests spread out instead of
+     * colliding again.
+     */
+    <T> T retryOnConflict(final String operation, final Supplier<T> action) {
+        int attempt = 1;
+        while (true) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                cartMetrics.recordVersionConflict(operation);
+                if (attempt >= maxAttempts) {
+                    log.warn(SamplingTurboFilter.SAMPLED, "Giving up {} after {} conflicting attempts",
+                            operation, attempt);
+                    throw new GlobalHandlerException(HttpStatus.CONFLICT,
+                            "Cart was modified concurrently, please retry", e);
+                }
+                log.debug("Version conflict on {} (attempt {}), retrying", operation, attempt);
+                cartMetrics.recordRetry(operation);
+                backOff(attempt);
+                attempt++;
+            }
+        }
+    }
+
+    private void backOff(final int attempt) {
+        long ceiling = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Interrupted while retrying cart update", e);
+        }
+    }
+
+    boolean isAtomicMutationEnabled() {
+        return atomicMutationEnabled && writesCartsDirectly();
+    }
+
+    private boolean writesCartsDirectly() {
+        // Server-side updates would bypass buffered carts and the event stream,
+        // so write-behind and event sourcing win.
+        return !cartStore.isEnabled() && !eventStore.isEnabled();
+    }
+
+    Cart mutateAtomically(final Function<CartRepository, Optional<Cart>> mutation,
+                          final String notFoundMessage) {
+        Cart cart = mutation.apply(cartRepository)
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.NOT_FOUND, notFoundMessage));
+        log.debug("Atomic mutation applied to cartId: {}", cart.getId());
+
+        BigDecimal storedSubTotal = cart.getSubTotal();
+        BigDecimal storedDiscount = cart.getDiscountAmount();
+        String storedPromoCode = cart.getAppliedPromoCode();
+        recalculateCartTotals(cart);
+
+        if (!Objects.equals(storedPromoCode, cart.getAppliedPromoCode())
+                || storedDiscount.compareTo(cart.getDiscountAmount()) != 0) {
+            log.debug("Promo totals changed for cartId: {}, updating stored totals", cart.getId());
+            if (!cartRepository.updateTotals(cart, storedSubTotal)) {
+                log.debug("Cart {} changed concurrently, totals left to the newer write", cart.getId());
+            }
+        }
+        return cart;
     }
 
     private void recalculateCartTotals(final Cart cart) {
-        log.debug("Recalculating totals for cartId: {}", cart.getId());
+        Timer.Sample sample = cartMetrics.startTimer();
+        boolean withPromo = cart.getAppliedPromoCode() != null;
+        try {
+            applyCartTotals(cart);
+        } finally {
+            cartMetrics.recordTotalsRecalculation(sample, withPromo);
+        }
+    }
 
-        BigDecimal subTotal = calculateSubTotal(cart);
-        String formattedSubTotal = String.format("%.2f", subTotal);
-        cart.setSubTotal(new BigDecimal(formattedSubTotal));
+    private void applyCartTotals(final Cart cart) {
+        log.debug("Recalculating totals for cartId: {}", cart.getId());
 
-        BigDecimal discountAmount = BigDecimal.ZERO;
+        PromoCode promo = null;
         if (cart.getAppliedPromoCode() != null) {
             Optional<PromoCode> promoOpt = promoCodeService.getActivePromoCode(cart.getAppliedPromoCode());
 
             if (promoOpt.isPresent()) {
-                PromoCode promo = promoOpt.get();
-                boolean validForCart = true;
-
+                promo = promoOpt.get();
                 if (promo.getExpiryDate() != null && promo.getExpiryDate().isBefore(Instant.now())) {
-                    log.warn("Applied promo code {} is expired. Removing.", cart.getAppliedPromoCode());
+                    log.warn(SamplingTurboFilter.SAMPLED, "Applied promo code {} is expired. Removing.",
+                            cart.getAppliedPromoCode());
+                    cartMetrics.recordPromoRejected("recalculate", "expired");
                     cart.setAppliedPromoCode(null);
-                    validForCart = false;
-                }
-
-                if (validForCart) {
-                    if (promo.getDiscountType() == PromoCode.DiscountType.PERCENTAGE) {
-                        BigDecimal percentageValue = promo.getDiscountValue().divide(new BigDecimal("100"));
-                        String formattedPercentage = String.format("%.2f", percentageValue);
-                        BigDecimal percentage = new BigDecimal(formattedPercentage);
-                        discountAmount = subTotal.multiply(percentage);
-                    } else if (promo.getDiscountType() == PromoCode.DiscountType.FIXED_AMOUNT) {
-                        discountAmount = promo.getDiscountValue();
-                    }
+                    promo = null;
                 }
             } else {
-                log.warn("Applied promo code {} is no longer valid. Removing.", cart.getAppliedPromoCode());
+                log.warn(SamplingTurboFilter.SAMPLED, "Applied promo code {} is no longer valid. Removing.",
+                        cart.getAppliedPromoCode());
+                cartMetrics.recordPromoRejected("recalculate", "invalid");
                 cart.setAppliedPromoCode(null);
             }
         }
 
-        discountAmount = discountAmount.max(BigDecimal.ZERO);
-        discountAmount = discountAmount.min(subTotal);
-        String formattedDiscountAmount = String.format("%.2f", discountAmount);
-        cart.setDiscountAmount(new BigDecimal(formattedDiscountAmount));
-
-        BigDecimal totalPrice = subTotal.subtract(discountAmount);
-        String formattedTotalPrice = String.format("%.2f", totalPrice);
-        cart.setTotalPrice(new BigDecimal(formattedTotalPrice));
+        CartTotals totals = CartTotalsCalculator.calculate(cart.getItems(), promo);
+        cart.setSubTotal(totals.subTotal());
+        cart.setDiscountAmount(totals.discountAmount());
+        cart.setTotalPrice(totals.totalPrice());
 
         log.debug("Recalculated totals for cartId: {}: SubTotal={}, Discount={}, Total={}",
                 cart.getId(), cart.getSubTotal(), cart.getDiscountAmount(), cart.getTotalPrice());
     }
 
-    private BigDecimal calculateSubTotal(final Cart cart) {
-        if (cart.getItems() == null) {
-            return BigDecimal.ZERO;
-        }
-        return cart.getItems().stream()
-                .filter(item -> item.getUnitPrice() != null && item.getQuantity() > 0)
-                .map(CartItem::getItemTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    public Cart checkoutCart(final String customerId, final ConfirmationType confirmationType,
-     final String signature, final Double longitude, final Double latitude, final DeliveryAddress address) {
-        log.debug("Entering checkoutCart for customerId: {} with confirmationType: {}",
-                customerId, confirmationType);
+    /**
+     * Checks that the customer's active cart can be checked out and returns
+     * it with recalculated totals, without changing anything.
+     */
+    public Cart validateCheckout(final String customerId, final ConfirmationType confirmationType,
+                                 final String signature) {
         Cart cart = getActiveCart(customerId);
 
         recalculateCartTotals(cart);
 
         if (cart.getItems().isEmpty()) {
-            log.warn("Attempted checkout for customerId: {} with an empty cart.", customerId);
+            log.warn(SamplingTurboFilter.SAMPLED, "Attempted checkout for customerId: {} with an empty cart.",
+                    customerId);
+            cartMetrics.recordCheckout("empty_cart");
             throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, "Cannot checkout an empty cart.");
         }
 
         if (confirmationType == ConfirmationType.SIGNATURE && (signature == null || signature.trim().isEmpty())) {
+            cartMetrics.recordCheckout("missing_signature");
             throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
                     "Signature is required for SIGNATURE confirmation type");
         }
+        return cart;
+    }
+
+    @CacheEvict(cacheNames = {CacheConfig.CARTS_CACHE, CacheConfig.CART_SUMMARIES_CACHE}, key = "#customerId")
+    public Cart checkoutCart(final String customerId, final ConfirmationType confirmationType,
+     final String signature, final Double longitude, final Double latitude, final DeliveryAddress address) {
+        log.debug("Entering checkoutCart for customerId: {} with confirmationType: {}",
+                customerId, confirmationType);
+        Cart cart = validateCheckout(customerId, confirmationType, signature);
+        cartMetrics.recordCartSize("checkout", cart.getItems().size());
 
+        CartCheckedoutEvent checkoutEvent = buildCheckoutEvent(cart, confirmationType, signature,
+                longitude, latitude, address);
+
+        if (checkoutOutbox.isEnabled()) {
+            return checkoutThroughOutbox(cart, checkoutEvent);
+        }
+
+        try {
+            log.debug("Publishing checkout event for cartId: {} with totals: Sub={},"
+                            + " Discount={}, Total={}, ConfirmationType={}",
+                    cart.getId(), cart.getSubTotal(), cart.getDiscountAmount(),
+                    cart.getTotalPrice(), confirmationType);
+            publishCheckoutEvent(checkoutEvent);
+
+            log.info("Checkout event published successfully for cartId: {}. Clearing cart.", cart.getId());
+            cart.getItems().clear();
+            cart.setAppliedPromoCode(null);
+            cart.recordChange(CartChange.of(CartChange.Type.CHECKED_OUT));
+            Cart updatedCart = saveCart(cart);
+            cartStore.flush(customerId);
+            cartHistory.clear(customerId);
+
+            cartMetrics.recordCheckout("published");
+            log.debug("Cart cleared and saved after checkout: {}", updatedCart);
+            return updatedCart;
+
+        } catch (Exception e) {
+            log.error("Failed to publish checkout event for cartId: {}. Error: {}", cart.getId(), e.getMessage(), e);
+            cartMetrics.recordCheckout("publish_failed");
+            throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Checkout process failed: Could not publish event.", e);
+        }
+    }
+
+    /** The event published for a checkout of the cart as it currently stands. */
+    public static CartCheckedoutEvent buildCheckoutEvent(final Cart cart, final ConfirmationType confirmationType,
+            final String signature, final Double longitude, final Double latitude, final DeliveryAddress address) {
         List<OrderItem> orderItems = cart.getItems().stream()
                 .map(cartItem -> OrderItem.builder()
                         .productId(cartItem.getProductId())
@@ -277,9 +730,9 @@ public class CartService {
                         .build())
                 .collect(Collectors.toList());
 
-        CartCheckedoutEvent checkoutEvent = CartCheckedoutEvent.builder()
+        return CartCheckedoutEvent.builder()
                 .cartId(cart.getId())
-                .customerId(customerId)
+                .customerId(cart.getCustomerId())
                 .items(orderItems)
                 .totalAmount(cart.getTotalPrice())
                 .deliveryAddress(address)
@@ -288,25 +741,39 @@ public class CartService {
                 .signature(signature)
                 .confirmationType(confirmationType)
                 .build();
+    }
 
-        try {
-            log.debug("Publishing checkout event for cartId: {} with totals: Sub={},"
-                            + " Discount={}, Total={}, ConfirmationType={}",
-                    cart.getId(), cart.getSubTotal(), cart.getDiscountAmount(),
-                    cart.getTotalPrice(), confirmationType);
-            eventPublisher.publishEvent(EventsConstants.CART_CHECKEDOUT, checkoutEvent);
-
-            log.info("Checkout event published successfully for cartId: {}. Clearing cart.", cart.getId());
-            cart.getItems().clear();
-            cart.setAppliedPromoCode(null);
-            Cart updatedCart = saveCart(cart);
+    /**
+     * Clears the cart and stores the checkout event in one Mongo transaction;
+     * the outbox relay publishes it later. A concurrent checkout of the same
+     * cart fails the version check and rolls back, so no second event is
+     * recorded.
+     */
+    private Cart checkoutThroughOutbox(final Cart cart, final CartCheckedoutEvent checkoutEvent) {
+        // The transaction writes Mongo directly, so take the cart out of the write-behind store first.
+        // With event sourcing the checkout event is appended in the same transaction.
+        cartStore.detach(cart.getCustomerId());
+        cart.getItems().clear();
+        cart.setAppliedPromoCode(null);
+        cart.recordChange(CartChange.of(CartChange.Type.CHECKED_OUT));
+        recalculateCartTotals(cart);
 
-            log.debug("Cart cleared and saved after checkout: {}", updatedCart);
-            return updatedCart;
+        Cart updatedCart = checkoutOutbox.stage(CheckoutOutbox.CART_CHECKEDOUT, cart.getId(), checkoutEvent,
+                () -> eventStore.isEnabled() ? eventStore.save(cart) : cartRepository.save(cart));
+        cartHistory.clear(cart.getCustomerId());
+        cartMetrics.recordCheckout("staged");
+        log.info("Checkout event staged in outbox for cartId: {}", cart.getId());
+        return updatedCart;
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to publish checkout event for cartId: {}. Error: {}", cart.getId(), e.getMessage(), e);
-            throw new RuntimeException("Checkout process failed: Could not publish event.", e);
+    private void publishCheckoutEvent(final CartCheckedoutEvent checkoutEvent) {
+        Timer.Sample sample = cartMetrics.startTimer();
+        boolean success = false;
+        try {
+            eventPublisher.publishEvent(EventsConstants.CART_CHECKEDOUT, checkoutEvent);
+            success = true;
+        } finally {
+            cartMetrics.recordEventPublish(sample, CheckoutOutbox.CART_CHECKEDOUT, "direct", success);
         }
     }
 }
@@ -0,0 +1,6 @@
+package com.podzilla.cart.service;
+
+import java.math.BigDecimal;
+
+public record CartTotals(BigDecimal subTotal, BigDecimal discountAmount, BigDecimal totalPrice) {
+}
@@ -0,0 +1,99 @@
+package com.podzilla.cart.service;
+
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Cart money arithmetic in long minor units (cents). Totals are rounded
+ * once, to scale 2 with {@link RoundingMode#HALF_EVEN}, independent of the
+ * default locale. Prices with more than two decimals, or sums that would
+ * overflow a long, fall back to exact BigDecimal arithmetic.
+ */
+public final class CartTotalsCalculator {
+
+    public static final int SCALE = 2;
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+
+    private static final BigDecimal ONE_HUNDRED = BigDecimal.valueOf(100);
+
+    private CartTotalsCalculator() {
+    }
+
+    /**
+     * @param promo a promo already checked to be active and unexpired, or null
+     */
+    public static CartTotals calculate(final List<CartItem> items, final PromoCode promo) {
+        long subTotal = subTotalMinor(items);
+        long discount = Math.min(Math.max(discountMinor(subTotal, promo), 0L), subTotal);
+        return new CartTotals(toAmount(subTotal), toAmount(discount), toAmount(subTotal - discount));
+    }
+
+    static long subTotalMinor(final List<CartItem> items) {
+        if (items == null) {
+            return 0L;
+        }
+        long total = 0L;
+        for (int i = 0; i < items.size(); i++) {
+            CartItem item = items.get(i);
+            BigDecimal unitPrice = item.getUnitPrice();
+            if (unitPrice == null || item.getQuantity() <= 0) {
+                continue;
+            }
+            int scale = unitPrice.scale();
+            if (scale < 0 || scale > SCALE || unitPrice.precision() > 18) {
+                return exactSubTotalMinor(items);
+            }
+            try {
+                long unitMinor = Math.multiplyExact(unitPrice.unscaledValue().longValueExact(),
+                        powerOfTen(SCALE - scale));
+                total = Math.addExact(total, Math.multiplyExact(unitMinor, (long) item.getQuantity()));
+            } catch (ArithmeticException e) {
+                return exactSubTotalMinor(items);
+            }
+        }
+        return total;
+    }
+
+    private static long exactSubTotalMinor(final List<CartItem> items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem item : items) {
+            if (item.getUnitPrice() != null && item.getQuantity() > 0) {
+                total = total.add(item.getItemTotal());
+            }
+        }
+        return total.setScale(SCALE, ROUNDING).unscaledValue().longValueExact();
+    }
+
+    private static long discountMinor(final long subTotal, final PromoCode promo) {
+        if (promo == null || promo.getDiscountValue() == null) {
+            return 0L;
+        }
+        BigDecimal discount;
+        if (promo.getDiscountType() == PromoCode.DiscountType.PERCENTAGE) {
+            discount = BigDecimal.valueOf(subTotal)
+                    .multiply(promo.getDiscountValue())
+                    .divide(ONE_HUNDRED, 0, ROUNDING);
+        } else if (promo.getDiscountType() == PromoCode.DiscountType.FIXED_AMOUNT) {
+            discount = promo.getDiscountValue().movePointRight(SCALE).setScale(0, ROUNDING);
+        } else {
+            return 0L;
+        }
+        return discount.min(BigDecimal.valueOf(subTotal)).longValueExact();
+    }
+
+    private static BigDecimal toAmount(final long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    private static long powerOfTen(final int exponent) {
+        long result = 1L;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10L;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package com.podzilla.cart.service;
+
+import com.podzilla.cart.config.CheckoutExecutorConfig;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.logging.SamplingTurboFilter;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CheckoutJob;
+import com.podzilla.cart.outbox.CheckoutOutbox;
+import com.podzilla.cart.repository.CheckoutJobRepository;
+import com.podzilla.mq.events.ConfirmationType;
+import com.podzilla.mq.events.DeliveryAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Runs checkouts accepted with {@code Prefer: respond-async} on the
+ * bounded checkout executor and records their outcome in checkout_jobs.
+ * Validation happens before the job is accepted, so a 202 only fails
+ * later on broker or database errors.
+ *
+ * <p>A job leaves PENDING once, through a conditional update: whichever of
+ * the worker and the status endpoint's timeout gets there first decides
+ * the reported outcome, and a worker that picks up a job no longer PENDING
+ * does not check out.
+ */
+@Service
+@Slf4j
+public class CheckoutJobService {
+
+    private final CartService cartService;
+    private final CheckoutJobRepository checkoutJobRepository;
+    private final TaskExecutor checkoutExecutor;
+    private final CheckoutOutbox checkoutOutbox;
+    private final Duration jobTimeout;
+
+    public CheckoutJobService(final CartService cartService,
+                              final CheckoutJobRepository checkoutJobRepository,
+                              @Qualifier(CheckoutExecutorConfig.CHECKOUT_EXECUTOR) final TaskExecutor checkoutExecutor,
+                              final CheckoutOutbox checkoutOutbox,
+                              @Value("${cart.checkout.async.job-timeout:5m}") final Duration jobTimeout) {
+        this.cartService = cartService;
+        this.checkoutJobRepository = checkoutJobRepository;
+        this.checkoutExecutor = checkoutExecutor;
+        this.checkoutOutbox = checkoutOutbox;
+        this.jobTimeout = jobTimeout;
+    }
+
+    public CheckoutJob submit(final String customerId, final ConfirmationType confirmationType,
+                              final String signature, final Double longitude, final Double latitude,
+                              final DeliveryAddress address) {
+        log.debug("Entering submit checkout job for customerId: {}", customerId);
+        Cart cart = cartService.validateCheckout(customerId, confirmationType, signature);
+
+        CheckoutJob job = checkoutJobRepository.save(new CheckoutJob(UUID.randomUUID().toString(), customerId,
+                cart.getId(), CheckoutJob.Status.PENDING, Instant.now(), null, null));
+        // The worker updates its own copy; the caller's copy is serialized in the 202 response.
+        CheckoutJob running = new CheckoutJob(job.getId(), customerId, job.getCartId(), job.getStatus(),
+                job.getCreatedAt(), null, null);
+        try {
+            checkoutExecutor.execute(() -> run(running, confirmationType, signature, longitude, latitude, address));
+        } catch (TaskRejectedException e) {
+            log.warn(SamplingTurboFilter.SAMPLED, "Checkout queue full, rejecting job {} for customerId: {}",
+                    job.getId(), customerId);
+            complete(job, CheckoutJob.Status.FAILED, "Checkout queue is full");
+            throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many checkouts in progress, please retry", e);
+        }
+        log.debug("Checkout job {} queued for customerId: {}", job.getId(), customerId);
+        return job;
+    }
+
+    public CheckoutJob getJob(final String customerId, final String jobId) {
+        CheckoutJob job = checkoutJobRepository.findByIdAndCustomerId(jobId, customerId)
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.NOT_FOUND, "Checkout not found"));
+        if (isTimedOut(job) && !failTimedOut(job)) {
+            // The worker finished first; report what it recorded.
+            return checkoutJobRepository.findByIdAndCustomerId(jobId, customerId).orElse(job);
+        }
+        return job;
+    }
+
+    private boolean isTimedOut(final CheckoutJob job) {
+        return job.getStatus() == CheckoutJob.Status.PENDING
+                && job.getCreatedAt().plus(jobTimeout).isBefore(Instant.now());
+    }
+
+    private boolean failTimedOut(final CheckoutJob job) {
+        // The instance running it went away; the cart was not cleared unless the event went out.
+        log.warn("Checkout job {} timed out while pending", job.getId());
+        return complete(job, CheckoutJob.Status.FAILED, "Checkout did not complete in time, please check your cart");
+    }
+
+    private void run(final CheckoutJob job, final ConfirmationType confirmationType, final String signature,
+                     final Double longitude, final Double latitude, final DeliveryAddress address) {
+        CheckoutJob current = checkoutJobRepository.findById(job.getId()).orElse(null);
+        if (current == null || current.getStatus() != CheckoutJob.Status.PENDING) {
+            log.warn("Skipping checkout job {}, it is no longer pending", job.getId());
+            return;
+        }
+        if (isTimedOut(current)) {
+            // Waited in the queue past the timeout; the client may already have been told it failed.
+            failTimedOut(job);
+            return;
+        }
+        try {
+            cartService.checkoutCart(job.getCustomerId(), confirmationType, signature, longitude, latitude,
+                    address);
+            CheckoutJob.Status status = checkoutOutbox.isEnabled()
+                    ? CheckoutJob.Status.STAGED
+                    : CheckoutJob.Status.PUBLISHED;
+            if (complete(job, status, null)) {
+                log.info("Checkout job {} completed for customerId: {}", job.getId(), job.getCustomerId());
+            } else {
+                log.warn("Checkout job {} completed after it was reported as timed out", job.getId());
+            }
+        } catch (GlobalHandlerException e) {
+            log.warn("Checkout job {} failed: {}", job.getId(), e.getMessage());
+            complete(job, CheckoutJob.Status.FAILED, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Checkout job {} failed", job.getId(), e);
+            complete(job, CheckoutJob.Status.FAILED, "Checkout failed");
+        }
+    }
+
+    /** Records the outcome on the job and in Mongo if it is still PENDING there; false otherwise. */
+    private boolean complete(final CheckoutJob job, final CheckoutJob.Status status, final String error) {
+        Instant completedAt = Instant.now();
+        if (!checkoutJobRepository.completeIfPending(job.getId(), status, completedAt, error)) {
+            return false;
+        }
+        job.setStatus(status);
+        job.setCompletedAt(completedAt);
+        job.setError(error);
+        return true;
+    }
+}
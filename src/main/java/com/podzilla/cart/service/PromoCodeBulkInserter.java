@@ -0,0 +1,123 @@
+package com.podzilla.cart.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.podzilla.cart.model.PromoCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Inserts promo codes in unordered bulk writes, with up to
+ * {@code parallelism} batches in flight while the caller builds the next.
+ * Memory stays at a few batches however many codes go through. A code
+ * that already exists fails on the unique index and is counted as a
+ * duplicate; the rest of its batch is still inserted.
+ */
+@Slf4j
+final class PromoCodeBulkInserter implements AutoCloseable {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final int batchSize;
+    private final int parallelism;
+    private final Semaphore inFlight;
+    private final Consumer<String> errors;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private List<PromoCode> batch;
+
+    /** {@code errors} receives a message for each write that failed other than as a duplicate. */
+    PromoCodeBulkInserter(final MongoTemplate mongoTemplate, final int batchSize, final int parallelism,
+                          final Consumer<String> errors) {
+        this.mongoTemplate = mongoTemplate;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.inFlight = new Semaphore(parallelism);
+        this.errors = errors;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    /** Queues a code, sending the batch once full; blocks while all batches are in flight. */
+    void add(final PromoCode promoCode) throws InterruptedException {
+        batch.add(promoCode);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /** Sends what is queued and waits until every batch sent so far has been written. */
+    void await() throws InterruptedException {
+        flush();
+        inFlight.acquire(parallelism);
+        inFlight.release(parallelism);
+    }
+
+    long inserted() {
+        return inserted.sum();
+    }
+
+    long duplicates() {
+        return duplicates.sum();
+    }
+
+    long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private void flush() throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PromoCode> codes = batch;
+        batch = new ArrayList<>(batchSize);
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                insert(codes);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void insert(final List<PromoCode> codes) {
+        try {
+            BulkWriteResult result = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PromoCode.class)
+                    .insert(codes)
+                    .execute();
+            inserted.add(result.getInsertedCount());
+        } catch (BulkOperationException e) {
+            inserted.add(e.getResult().getInsertedCount());
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() == DUPLICATE_KEY) {
+                    duplicates.increment();
+                } else {
+                    failed.increment();
+                    errors.accept(codes.get(error.getIndex()).getCode() + ": " + error.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Bulk insert of {} promo codes failed", codes.size(), e);
+            failed.add(codes.size());
+            errors.accept("Batch of " + codes.size() + " codes failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.podzilla.cart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.config.CacheConfig;
+import com.podzilla.cart.config.PromoCodeBulkExecutorConfig;
+import com.podzilla.cart.dto.PromoCodeGenerationRequest;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import com.podzilla.cart.repository.PromoCodeBulkJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Generates and imports promo codes in bulk as background jobs, recording
+ * progress in promo_code_bulk_jobs. Unlike createOrUpdatePromoCode, codes
+ * are only ever inserted: a code that already exists is counted as a
+ * duplicate and left unchanged.
+ */
+@Service
+@Slf4j
+public class PromoCodeBulkService {
+
+    /** Crockford-style alphabet: no 0/O or 1/I, so codes survive being read aloud or retyped. */
+    private static final char[] ALPHABET = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ".toCharArray();
+    private static final Pattern PREFIX = Pattern.compile("[A-Z0-9_-]{0,20}");
+    private static final int MIN_SUFFIX_LENGTH = 6;
+    private static final int MAX_SUFFIX_LENGTH = 32;
+    private static final int MAX_ERRORS = 20;
+    /** Random suffixes rarely collide; each pass replaces the codes the previous one lost. */
+    private static final int MAX_GENERATION_PASSES = 5;
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(1);
+    private static final String STALLED_ERROR = "Job stopped reporting progress";
+
+    private final MongoTemplate mongoTemplate;
+    private final PromoCodeBulkJobRepository jobRepository;
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor bulkExecutor;
+    private final long maxCount;
+    private final int batchSize;
+    private final int parallelism;
+    private final Duration stallTimeout;
+    private final SecureRandom random = new SecureRandom();
+
+    public PromoCodeBulkService(final MongoTemplate mongoTemplate,
+                                final PromoCodeBulkJobRepository jobRepository,
+                                final CacheManager cacheManager,
+                                final ObjectMapper objectMapper,
+                                @Qualifier(PromoCodeBulkExecutorConfig.PROMO_CODE_BULK_EXECUTOR)
+                                final TaskExecutor bulkExecutor,
+                                @Value("${cart.promo-codes.bulk.max-count:5000000}") final long maxCount,
+                                @Value("${cart.promo-codes.bulk.batch-size:1000}") final int batchSize,
+                                @Value("${cart.promo-codes.bulk.parallelism:4}") final int parallelism,
+                                @Value("${cart.promo-codes.bulk.stall-timeout:2m}") final Duration stallTimeout) {
+        this.mongoTemplate = mongoTemplate;
+        this.jobRepository = jobRepository;
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.bulkExecutor = bulkExecutor;
+        this.maxCount = maxCount;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.stallTimeout = stallTimeout;
+    }
+
+    public PromoCodeBulkJob submitGeneration(final PromoCodeGenerationRequest request) {
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix().toUpperCase(Locale.ROOT);
+        if (!PREFIX.matcher(prefix).matches()) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                    "prefix must be at most 20 letters, digits, '-' or '_'");
+        }
+        if (request.getCount() < 1 || request.getCount() > maxCount) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, "count must be between 1 and " + maxCount);
+        }
+        if (request.getSuffixLength() < MIN_SUFFIX_LENGTH || request.getSuffixLength() > MAX_SUFFIX_LENGTH) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST,
+                    "suffixLength must be between " + MIN_SUFFIX_LENGTH + " and " + MAX_SUFFIX_LENGTH);
+        }
+        String invalid = PromoCodeImportReader.validate(template(request, prefix + "X"));
+        if (invalid != null) {
+            throw new GlobalHandlerException(HttpStatus.BAD_REQUEST, invalid);
+        }
+
+        PromoCodeBulkJob job = newJob(PromoCodeBulkJob.Type.GENERATE, request.getCount());
+        submit(job, () -> generate(job, request, prefix));
+        log.info("Promo code generation job {} accepted: {} codes with prefix '{}'",
+                job.getId(), request.getCount(), prefix);
+        return job;
+    }
+
+    /**
+     * Spools the body to a temporary file before answering, since the
+     * request stream is gone once the 202 is sent, then imports from the
+     * file in the background. Memory use does not depend on the body size.
+     */
+    public PromoCodeBulkJob submitImport(final MediaType contentType, final InputStream body) {
+        PromoCodeImportReader.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? PromoCodeImportReader.Format.NDJSON
+                : PromoCodeImportReader.Format.CSV;
+        Path file;
+        try {
+            file = Files.createTempFile("promo-import-", ".tmp");
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new GlobalHandlerException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not read the import", e);
+        }
+
+        PromoCodeBulkJob job = newJob(PromoCodeBulkJob.Type.IMPORT, null);
+        try {
+            submit(job, () -> {
+                try {
+                    importFrom(job, file, format);
+                } finally {
+                    deleteQuietly(file);
+                }
+            });
+        } catch (GlobalHandlerException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        log.info("Promo code import job {} accepted ({})", job.getId(), format);
+        return job;
+    }
+
+    public PromoCodeBulkJob getJob(final String jobId) {
+        PromoCodeBulkJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new GlobalHandlerException(HttpStatus.NOT_FOUND, "Bulk job not found"));
+        Instant now = Instant.now();
+        if (job.getStatus() == PromoCodeBulkJob.Status.RUNNING
+                && job.getUpdatedAt().plus(stallTimeout).isBefore(now)) {
+            // The instance running it went away; whatever was inserted stays. The update only
+            // matches if no progress was reported since, and leaves the counters alone.
+            if (jobRepository.failIfStalled(jobId, now.minus(stallTimeout), now, STALLED_ERROR)) {
+                log.warn("Promo code bulk job {} stopped reporting progress", jobId);
+            }
+            return jobRepository.findById(jobId).orElse(job);
+        }
+        return job;
+    }
+
+    private PromoCodeBulkJob newJob(final PromoCodeBulkJob.Type type, final Long requested) {
+        Instant now = Instant.now();
+        PromoCodeBulkJob job = new PromoCodeBulkJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setStatus(PromoCodeBulkJob.Status.RUNNING);
+        job.setRequested(requested);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        return jobRepository.save(job);
+    }
+
+    private interface JobBody {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private void submit(final PromoCodeBulkJob job, final JobBody body) {
+        // The worker updates its own copy; the caller's copy is serialized in the 202 response.
+        PromoCodeBulkJob running = copyOf(job);
+        try {
+            bulkExecutor.execute(() -> run(running, body));
+        } catch (TaskRejectedException e) {
+            log.warn("Promo code bulk queue full, rejecting job {}", job.getId());
+            finish(job, PromoCodeBulkJob.Status.FAILED, "Too many bulk jobs in progress");
+            throw new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many bulk jobs in progress, please retry later", e);
+        }
+    }
+
+    private void run(final PromoCodeBulkJob job, final JobBody body) {
+        try {
+            body.run();
+            if (job.getStatus() == PromoCodeBulkJob.Status.RUNNING) {
+                finish(job, PromoCodeBulkJob.Status.COMPLETED, null);
+            }
+            log.info("Promo code bulk job {} finished: {}", job.getId(), job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, PromoCodeBulkJob.Status.FAILED, "Interrupted");
+        } catch (IllegalArgumentException e) {
+            log.warn("Promo code bulk job {} failed: {}", job.getId(), e.getMessage());
+            finish(job, PromoCodeBulkJob.Status.FAILED, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.error("Promo code bulk job {} failed", job.getId(), e);
+            finish(job, PromoCodeBulkJob.Status.FAILED, "Bulk job failed: " + e.getMessage());
+        } finally {
+            // Lookups of codes that did not exist yet are cached as misses.
+            Cache promoCodes = cacheManager.getCache(CacheConfig.PROMO_CODES_CACHE);
+            if (promoCodes != null) {
+                promoCodes.clear();
+            }
+        }
+    }
+
+    private void generate(final PromoCodeBulkJob job, final PromoCodeGenerationRequest request,
+                          final String prefix) throws InterruptedException {
+        Progress progress = new Progress(job);
+        try (PromoCodeBulkInserter inserter = new PromoCodeBulkInserter(mongoTemplate, batchSize, parallelism,
+                progress::error)) {
+            long missing = request.getCount();
+            for (int pass = 0; pass < MAX_GENERATION_PASSES && missing > 0; pass++) {
+                for (long i = 0; i < missing; i++) {
+                    inserter.add(template(request, prefix + randomSuffix(request.getSuffixLength())));
+                    job.setProcessed(job.getProcessed() + 1);
+                    progress.report(inserter);
+                }
+                inserter.await();
+                missing = request.getCount() - inserter.inserted();
+            }
+            progress.save(inserter);
+            if (missing > 0) {
+                finish(job, PromoCodeBulkJob.Status.FAILED, "Generated " + inserter.inserted() + " of "
+                        + request.getCount() + " codes; use a longer suffix or another prefix");
+            }
+        }
+    }
+
+    private void importFrom(final PromoCodeBulkJob job, final Path file, final PromoCodeImportReader.Format format)
+            throws IOException, InterruptedException {
+        Progress progress = new Progress(job);
+        try (PromoCodeImportReader reader = new PromoCodeImportReader(
+                     Files.newBufferedReader(file, StandardCharsets.UTF_8), format, objectMapper);
+             PromoCodeBulkInserter inserter = new PromoCodeBulkInserter(mongoTemplate, batchSize, parallelism,
+                     progress::error)) {
+            PromoCodeImportReader.Entry entry;
+            while ((entry = reader.next()) != null) {
+                job.setProcessed(job.getProcessed() + 1);
+                if (entry.error() != null) {
+                    job.setRejected(job.getRejected() + 1);
+                    progress.error("line " + entry.line() + ": " + entry.error());
+                } else {
+                    PromoCode promoCode = entry.promoCode();
+                    promoCode.setId(null);
+                    promoCode.setCode(promoCode.getCode().trim().toUpperCase(Locale.ROOT));
+                    inserter.add(promoCode);
+                }
+                progress.report(inserter);
+            }
+            inserter.await();
+            progress.save(inserter);
+        }
+    }
+
+    /** Saves the job's counts at most once per interval; also its heartbeat for getJob. */
+    private final class Progress {
+        private final PromoCodeBulkJob job;
+        /** Guards the job's counters and errors; a lock rather than synchronized so virtual threads do not pin. */
+        private final ReentrantLock lock = new ReentrantLock();
+        private long lastSaved = System.nanoTime();
+
+        Progress(final PromoCodeBulkJob job) {
+            this.job = job;
+        }
+
+        void report(final PromoCodeBulkInserter inserter) {
+            if (System.nanoTime() - lastSaved >= PROGRESS_INTERVAL.toNanos()) {
+                save(inserter);
+            }
+        }
+
+        /**
+         * Saves a copy taken under the lock, so insert threads reporting
+         * errors wait for the copy but not for the write to Mongo.
+         */
+        void save(final PromoCodeBulkInserter inserter) {
+            PromoCodeBulkJob snapshot;
+            lock.lock();
+            try {
+                job.setInserted(inserter.inserted());
+                job.setDuplicates(inserter.duplicates());
+                job.setFailed(inserter.failed());
+                job.setUpdatedAt(Instant.now());
+                snapshot = copyOf(job);
+            } finally {
+                lock.unlock();
+            }
+            if (!jobRepository.updateProgressIfRunning(snapshot)) {
+                throw new IllegalStateException("Bulk job " + job.getId() + " is no longer running");
+            }
+            lastSaved = System.nanoTime();
+        }
+
+        /** Called from insert threads as well as the job's own. */
+        void error(final String message) {
+            lock.lock();
+            try {
+                if (job.getErrors().size() < MAX_ERRORS) {
+                    job.getErrors().add(message);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Records the outcome unless the job already finished, e.g. failed by getJob's stall check. */
+    private void finish(final PromoCodeBulkJob job, final PromoCodeBulkJob.Status status, final String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setUpdatedAt(Instant.now());
+        job.setCompletedAt(job.getUpdatedAt());
+        if (!jobRepository.finishIfRunning(job)) {
+            log.warn("Promo code bulk job {} had already finished; not recording {}", job.getId(), status);
+        }
+    }
+
+    private static PromoCode template(final PromoCodeGenerationRequest request, final String code) {
+        return new PromoCode(null, code, request.getDescription(), request.getDiscountType(),
+                request.getDiscountValue(), request.isActive(), request.getExpiryDate(),
+                request.getMinimumPurchaseAmount());
+    }
+
+    private String randomSuffix(final int length) {
+        char[] suffix = new char[length];
+        for (int i = 0; i < length; i++) {
+            suffix[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(suffix);
+    }
+
+    private static PromoCodeBulkJob copyOf(final PromoCodeBulkJob job) {
+        return new PromoCodeBulkJob(job.getId(), job.getType(), job.getStatus(), job.getRequested(),
+                job.getProcessed(), job.getInserted(), job.getDuplicates(), job.getRejected(), job.getFailed(),
+                new ArrayList<>(job.getErrors()), job.getCreatedAt(), job.getUpdatedAt(),
+                job.getCompletedAt(), job.getError());
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete import file {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.podzilla.cart.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.PromoCode;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads promo codes one line at a time, either NDJSON (one PromoCode
+ * object per line) or CSV with a header row naming the PromoCode fields.
+ * CSV fields may be quoted, with quotes doubled inside, but may not span
+ * lines. Blank lines are skipped.
+ */
+final class PromoCodeImportReader implements Closeable {
+
+    enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /** A parsed code, or why the line at {@code line} could not be used. */
+    record Entry(long line, PromoCode promoCode, String error) {
+    }
+
+    private static final Set<String> CSV_COLUMNS = Set.of("code", "description", "discountType",
+            "discountValue", "active", "expiryDate", "minimumPurchaseAmount");
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of("code", "discountType", "discountValue");
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> columns;
+    private long line;
+
+    PromoCodeImportReader(final BufferedReader reader, final Format format, final ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The next record, or null at the end of the input.
+     *
+     * @throws IllegalArgumentException if the CSV header is missing or names unknown columns
+     */
+    Entry next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            if (text == null) {
+                return null;
+            }
+            line++;
+        } while (text.isBlank());
+
+        if (format == Format.CSV && columns == null) {
+            columns = header(text);
+            return next();
+        }
+        try {
+            PromoCode promoCode = format == Format.NDJSON
+                    ? objectMapper.readValue(text, PromoCode.class)
+                    : fromCsv(split(text));
+            String invalid = validate(promoCode);
+            return invalid == null ? new Entry(line, promoCode, null) : new Entry(line, null, invalid);
+        } catch (JsonProcessingException e) {
+            return new Entry(line, null, "not a promo code: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return new Entry(line, null, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /** The checks PromoCode declares, applied here since imports bypass request validation. */
+    static String validate(final PromoCode promoCode) {
+        if (promoCode.getCode() == null || promoCode.getCode().isBlank()) {
+            return "code is required";
+        }
+        if (promoCode.getDiscountType() == null) {
+            return "discountType is required";
+        }
+        if (promoCode.getDiscountValue() == null || promoCode.getDiscountValue().signum() <= 0) {
+            return "discountValue must be positive";
+        }
+        return null;
+    }
+
+    private static Map<String, Integer> header(final String text) {
+        Map<String, Integer> header = new HashMap<>();
+        List<String> names = split(text);
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim();
+            if (!CSV_COLUMNS.contains(name)) {
+                throw new IllegalArgumentException("Unknown CSV column '" + name + "', expected " + CSV_COLUMNS);
+            }
+            header.put(name, i);
+        }
+        for (String required : REQUIRED_CSV_COLUMNS) {
+            if (!header.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column '" + required + "'");
+            }
+        }
+        return header;
+    }
+
+    private PromoCode fromCsv(final List<String> fields) {
+        PromoCode promoCode = new PromoCode();
+        promoCode.setCode(field(fields, "code"));
+        promoCode.setDescription(field(fields, "description"));
+        String discountType = field(fields, "discountType");
+        if (discountType != null) {
+            promoCode.setDiscountType(PromoCode.DiscountType.valueOf(discountType.toUpperCase(Locale.ROOT)));
+        }
+        String discountValue = field(fields, "discountValue");
+        promoCode.setDiscountValue(discountValue == null ? null : new BigDecimal(discountValue));
+        String active = field(fields, "active");
+        promoCode.setActive(active == null || Boolean.parseBoolean(active));
+        String expiryDate = field(fields, "expiryDate");
+        promoCode.setExpiryDate(expiryDate == null ? null : Instant.parse(expiryDate));
+        String minimumPurchase = field(fields, "minimumPurchaseAmount");
+        promoCode.setMinimumPurchaseAmount(minimumPurchase == null ? null : new BigDecimal(minimumPurchase));
+        return promoCode;
+    }
+
+    /** The trimmed value of a column, null if the column is absent or the value blank. */
+    private String field(final List<String> fields, final String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index).trim();
+    }
+
+    static List<String> split(final String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < text.length() && text.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
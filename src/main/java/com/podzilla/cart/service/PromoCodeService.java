@@ -1,15 +1,21 @@
 package com.podzilla.cart.service;
 
+import com.podzilla.cart.config.CacheConfig;
+import com.podzilla.cart.dto.PromoCodeFilter;
+import com.podzilla.cart.dto.PromoCodePage;
 import com.podzilla.cart.exception.GlobalHandlerException;
 import com.podzilla.cart.model.PromoCode;
 import com.podzilla.cart.repository.PromoCodeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -18,6 +24,7 @@ public class PromoCodeService {
 
     private final PromoCodeRepository promoCodeRepository;
 
+    @CacheEvict(cacheNames = CacheConfig.PROMO_CODES_CACHE, key = "#promoCode.code.toUpperCase()")
     public PromoCode createOrUpdatePromoCode(final PromoCode promoCode) {
         log.info("Creating/Updating promo code: {}", promoCode.getCode());
         promoCode.setCode(promoCode.getCode().toUpperCase());
@@ -35,6 +42,22 @@ public class PromoCodeService {
         return promoCodeRepository.findAll();
     }
 
+    /** One page in code order; reads one extra code to tell whether another page follows. */
+    public PromoCodePage findPage(final PromoCodeFilter filter, final String after, final int limit) {
+        List<PromoCode> promoCodes = promoCodeRepository.findPage(filter, after, limit + 1);
+        if (promoCodes.size() <= limit) {
+            return new PromoCodePage(promoCodes, null);
+        }
+        List<PromoCode> page = promoCodes.subList(0, limit);
+        return new PromoCodePage(page, page.get(limit - 1).getCode());
+    }
+
+    /** Every matching code in code order, from an open cursor; the caller closes the stream. */
+    public Stream<PromoCode> stream(final PromoCodeFilter filter, final String after) {
+        return promoCodeRepository.stream(filter, after);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.PROMO_CODES_CACHE, key = "#code.toUpperCase()")
     public void deletePromoCode(final String code) {
         PromoCode promo = promoCodeRepository.findByCode(
                 code.toUpperCase())
@@ -45,6 +68,11 @@ public class PromoCodeService {
         log.info("Deleted promo code: {}", code);
     }
 
+    /**
+     * Served from the promo code cache; unknown and inactive codes are
+     * cached as misses as well.
+     */
+    @Cacheable(cacheNames = CacheConfig.PROMO_CODES_CACHE, key = "#code.toUpperCase()")
     public Optional<PromoCode> getActivePromoCode(final String code) {
         return promoCodeRepository.findByCode(code.toUpperCase())
                 .filter(PromoCode::isActive);
@@ -1,10 +1,13 @@
 package com.podzilla.cart.service;
 
+import com.podzilla.cart.logging.SamplingTurboFilter;
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
 import com.podzilla.cart.model.CartItem;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
 import java.util.Optional;
 
 @RequiredArgsConstructor
@@ -15,25 +18,20 @@ public class RemoveItemCommand implements CartCommand {
     private final String customerId;
     private final String productId;
     private CartItem removedItem;
+    private boolean applied;
 
     @Override
     public Cart execute() {
         log.debug("Executing RemoveItemCommand for customerId: "
                 + "{}, productId: {}", customerId, productId);
-        Cart cart = cartService.getCartByCustomerId(customerId);
-
-        Optional<CartItem> itemToRemove = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(productId))
-                .findFirst();
-
-        if (itemToRemove.isPresent()) {
-            removedItem = new CartItem(itemToRemove.get().getProductId(),
-                    itemToRemove.get().getQuantity(), itemToRemove.get().getUnitPrice());
-            cart.getItems().removeIf(i -> i.getProductId().equals(productId));
-            log.debug("Item removed for productId: {}", productId);
-        } else {
-            log.warn("Item not found for removal, productId: {}", productId);
+        if (cartService.isAtomicMutationEnabled()) {
+            Cart updatedCart = cartService.mutateAtomically(
+                    repository -> repository.removeItem(customerId, productId), "Cart not found");
+            log.debug("RemoveItemCommand executed atomically, updated cart: {}", updatedCart);
+            return updatedCart;
         }
+        Cart cart = cartService.getCartByCustomerId(customerId);
+        apply(cart);
 
         Cart updatedCart = cartService.saveCart(cart);
         log.debug("RemoveItemCommand executed, updated cart: {}", updatedCart);
@@ -44,16 +42,55 @@ public class RemoveItemCommand implements CartCommand {
     public Cart undo() {
         log.debug("Undoing RemoveItemCommand for customerId: {}, productId: {}", customerId, productId);
         Cart cart = cartService.getCartByCustomerId(customerId);
+        revert(cart);
+
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("RemoveItemCommand undone, updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart apply(final Cart cart) {
+        Optional<CartItem> itemToRemove = cart.removeItem(productId);
+        applied = true;
+        removedItem = null;
+
+        if (itemToRemove.isPresent()) {
+            removedItem = new CartItem(itemToRemove.get().getProductId(),
+                    itemToRemove.get().getQuantity(), itemToRemove.get().getUnitPrice());
+            cart.recordChange(CartChange.itemRemoved(productId));
+            log.debug("Item removed for productId: {}", productId);
+        } else {
+            log.warn(SamplingTurboFilter.SAMPLED, "Item not found for removal, productId: {}", productId);
+        }
+        return cart;
+    }
 
+    @Override
+    public Cart revert(final Cart cart) {
         if (removedItem != null) {
             log.debug("Restoring item during undo for productId: {}", productId);
-            cart.getItems().add(removedItem);
+            CartChange change = CartChange.itemAdded(removedItem.getProductId(),
+                    removedItem.getQuantity(), removedItem.getUnitPrice());
+            change.applyTo(cart);
+            cart.recordChange(change);
         } else {
             log.warn("No item to restore during undo for productId: {}", productId);
         }
+        return cart;
+    }
 
-        Cart updatedCart = cartService.saveCart(cart);
-        log.debug("RemoveItemCommand undone, updated cart: {}", updatedCart);
-        return updatedCart;
+    @Override
+    public List<CartChange> changes() {
+        return List.of(CartChange.itemRemoved(productId));
+    }
+
+    @Override
+    public Optional<List<CartChange>> inverseChanges() {
+        if (!applied) {
+            return Optional.empty();
+        }
+        return Optional.of(removedItem == null ? List.of() : List.of(CartChange.itemAdded(
+                removedItem.getProductId(), removedItem.getQuantity(), removedItem.getUnitPrice())));
     }
 }
@@ -1,12 +1,16 @@
 package com.podzilla.cart.service;
 
 import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.logging.SamplingTurboFilter;
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
 import com.podzilla.cart.model.CartItem;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @RequiredArgsConstructor
@@ -18,20 +22,52 @@ public class UpdateQuantityCommand implements CartCommand {
     private final String productId;
     private final int newQuantity;
     private Integer previousQuantity;
+    private BigDecimal previousUnitPrice;
 
     @Override
     public Cart execute() {
         log.debug("Executing UpdateQuantityCommand "
                 + "for customerId: {}, productId: {}, quantity: "
                 + "{}", customerId, productId, newQuantity);
+        if (cartService.isAtomicMutationEnabled()) {
+            Cart updatedCart = cartService.mutateAtomically(
+                    repository -> repository.setItemQuantity(customerId, productId, newQuantity),
+                    "Product not found in cart");
+            log.debug("UpdateQuantityCommand executed atomically, updated cart: {}", updatedCart);
+            return updatedCart;
+        }
+        Cart cart = cartService.getCartByCustomerId(customerId);
+        apply(cart);
+
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("UpdateQuantityCommand executed, updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart undo() {
+        log.debug("Undoing UpdateQuantityCommand for"
+                + " customerId: {}, productId: {}", customerId, productId);
         Cart cart = cartService.getCartByCustomerId(customerId);
 
-        Optional<CartItem> existingItemOpt = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(productId))
-                .findFirst();
+        if (previousQuantity == null) {
+            log.warn("No previous quantity to restore for productId: {}", productId);
+            return cart;
+        }
+        revert(cart);
+
+        Cart updatedCart = cartService.saveCart(cart);
+        log.debug("UpdateQuantityCommand undone,"
+                + " updated cart: {}", updatedCart);
+        return updatedCart;
+    }
+
+    @Override
+    public Cart apply(final Cart cart) {
+        Optional<CartItem> existingItemOpt = cart.findItem(productId);
 
         if (existingItemOpt.isEmpty()) {
-            log.error("Product not found in cart for "
+            log.error(SamplingTurboFilter.SAMPLED, "Product not found in cart for "
                     + "productId: {}", productId);
             throw new GlobalHandlerException(
                     HttpStatus.NOT_FOUND, "Product not found in cart");
@@ -39,54 +75,50 @@ public class UpdateQuantityCommand implements CartCommand {
 
         CartItem item = existingItemOpt.get();
         previousQuantity = item.getQuantity();
+        previousUnitPrice = item.getUnitPrice();
 
         if (newQuantity <= 0) {
             log.debug("Removing item as quantity <= 0 for"
                     + " productId: {}", productId);
-            cart.getItems().remove(item);
+            cart.removeItem(productId);
         } else {
             log.debug("Updating quantity to: {} for "
                     + "productId: {}", newQuantity, productId);
             item.setQuantity(newQuantity);
         }
-
-        Cart updatedCart = cartService.saveCart(cart);
-        log.debug("UpdateQuantityCommand executed, updated cart: {}", updatedCart);
-        return updatedCart;
+        cart.recordChange(CartChange.quantityChanged(productId, newQuantity));
+        return cart;
     }
 
     @Override
-    public Cart undo() {
-        log.debug("Undoing UpdateQuantityCommand for"
-                + " customerId: {}, productId: {}", customerId, productId);
-        Cart cart = cartService.getCartByCustomerId(customerId);
-
+    public Cart revert(final Cart cart) {
         if (previousQuantity == null) {
             log.warn("No previous quantity to restore for productId: {}", productId);
             return cart;
         }
 
-        Optional<CartItem> existingItemOpt = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(productId))
-                .findFirst();
-
-        if (previousQuantity <= 0) {
-            log.debug("Restoring removed item during "
-                    + "undo for productId: {}", productId);
-            cart.getItems().add(new CartItem(productId, previousQuantity, existingItemOpt.get().getUnitPrice()));
-        } else if (existingItemOpt.isPresent()) {
-            log.debug("Restoring previous quantity "
-                    + "during undo for productId: {}", productId);
-            existingItemOpt.get().setQuantity(previousQuantity);
-        } else {
-            log.debug("Adding item back during"
-                    + " undo for productId: {}", productId);
-            cart.getItems().add(new CartItem(productId, previousQuantity, existingItemOpt.get().getUnitPrice()));
-        }
+        // The item is gone if the update removed it; put it back at its old price.
+        CartChange change = cart.findItem(productId).isPresent()
+                ? CartChange.quantityChanged(productId, previousQuantity)
+                : CartChange.itemAdded(productId, previousQuantity, previousUnitPrice);
+        log.debug("Restoring previous quantity {} during undo for productId: {}", previousQuantity, productId);
+        change.applyTo(cart);
+        cart.recordChange(change);
+        return cart;
+    }
 
-        Cart updatedCart = cartService.saveCart(cart);
-        log.debug("UpdateQuantityCommand undone,"
-                + " updated cart: {}", updatedCart);
-        return updatedCart;
+    @Override
+    public List<CartChange> changes() {
+        return List.of(CartChange.quantityChanged(productId, newQuantity));
+    }
+
+    @Override
+    public Optional<List<CartChange>> inverseChanges() {
+        if (previousQuantity == null) {
+            return Optional.empty();
+        }
+        return Optional.of(List.of(newQuantity <= 0
+                ? CartChange.itemAdded(productId, previousQuantity, previousUnitPrice)
+                : CartChange.quantityChanged(productId, previousQuantity)));
     }
 }
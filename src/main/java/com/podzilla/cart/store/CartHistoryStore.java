@@ -0,0 +1,235 @@
+package com.podzilla.cart.store;
+
+import com.podzilla.cart.model.CartHistory;
+import com.podzilla.cart.model.CartHistoryEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-customer undo/redo stacks of at most {@code depth} entries each.
+ * Recent histories are held in memory; every change is written through to
+ * {@code cart_history} in a single update, so a customer whose requests
+ * move to another replica, or whose history was evicted here, still has it.
+ *
+ * <p>Moving an entry between the stacks is conditional on the revision of
+ * the cached copy, so two replicas (or two requests) can never both take
+ * the same entry; the loser reloads and gets an
+ * {@link OptimisticLockingFailureException} to retry on.
+ */
+@Component
+@Slf4j
+public class CartHistoryStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int depth;
+    private final int maxCustomers;
+
+    /** Least recently used first. Guarded by {@code cacheLock}. */
+    private final Map<String, CartHistory> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    public CartHistoryStore(final MongoTemplate mongoTemplate,
+                            @Value("${cart.history.enabled:true}") final boolean enabled,
+                            @Value("${cart.history.depth:20}") final int depth,
+                            @Value("${cart.history.max-customers:10000}") final int maxCustomers) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.depth = depth;
+        this.maxCustomers = maxCustomers;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Pushes an entry onto the undo stack, dropping the oldest beyond the
+     * depth, and clears the redo stack. Failures are logged rather than
+     * thrown: the cart change has already been saved.
+     */
+    public void record(final String customerId, final CartHistoryEntry entry) {
+        if (!enabled) {
+            return;
+        }
+        Update update = new Update()
+                .set("redo", List.of())
+                .inc("revision", 1)
+                .currentDate("updatedAt");
+        update.push("undo").slice(-depth).each(entry);
+        try {
+            cache(customerId, mongoTemplate.findAndModify(byCustomer(customerId), update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), CartHistory.class));
+        } catch (DataAccessException e) {
+            log.warn("Failed to record cart history for customerId: {}", customerId, e);
+            evict(customerId);
+        }
+    }
+
+    /** Moves the latest undo entry onto the redo stack and returns it. */
+    public Optional<CartHistoryEntry> popUndo(final String customerId) {
+        return move(customerId, "undo", "redo");
+    }
+
+    /** Moves the latest redo entry back onto the undo stack and returns it. */
+    public Optional<CartHistoryEntry> popRedo(final String customerId) {
+        return move(customerId, "redo", "undo");
+    }
+
+    /**
+     * Puts an entry taken by {@link #popUndo} back onto the undo stack when
+     * its inverse could not be applied. Logged rather than thrown, like
+     * {@link #record}: the caller is already failing with the apply error.
+     */
+    public void restoreUndo(final String customerId, final CartHistoryEntry entry) {
+        restore(customerId, entry, "redo", "undo");
+    }
+
+    /** Puts an entry taken by {@link #popRedo} back onto the redo stack when it could not be applied. */
+    public void restoreRedo(final String customerId, final CartHistoryEntry entry) {
+        restore(customerId, entry, "undo", "redo");
+    }
+
+    /** Forgets the customer's history, e.g. once the cart is checked out or deleted. */
+    public void clear(final String customerId) {
+        if (!enabled) {
+            return;
+        }
+        evict(customerId);
+        try {
+            mongoTemplate.remove(byCustomer(customerId), CartHistory.class);
+        } catch (DataAccessException e) {
+            log.warn("Failed to clear cart history for customerId: {}", customerId, e);
+        }
+    }
+
+    private Optional<CartHistoryEntry> move(final String customerId, final String from, final String to) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CartHistory history = load(customerId);
+        if (stack(history, from).isEmpty()) {
+            // The cached copy may predate entries recorded through another replica.
+            evict(customerId);
+            history = load(customerId);
+        }
+        List<CartHistoryEntry> source = stack(history, from);
+        if (source.isEmpty()) {
+            return Optional.empty();
+        }
+        CartHistoryEntry entry = source.get(source.size() - 1);
+        if (!moveLast(customerId, history, from, to, entry)) {
+            throw new OptimisticLockingFailureException("Cart history for customer " + customerId
+                    + " changed since revision " + history.getRevision());
+        }
+        return Optional.of(entry);
+    }
+
+    /**
+     * Moves the entry back only if it is still on top of the stack it was
+     * moved to; anything recorded since then means the customer has moved on.
+     */
+    private void restore(final String customerId, final CartHistoryEntry entry, final String from,
+                         final String to) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            CartHistory history = load(customerId);
+            List<CartHistoryEntry> source = stack(history, from);
+            boolean onTop = !source.isEmpty() && source.get(source.size() - 1).equals(entry);
+            if (!onTop || !moveLast(customerId, history, from, to, entry)) {
+                log.warn("Cannot restore {} entry for customerId: {}, its history changed meanwhile", to,
+                        customerId);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Failed to restore {} entry for customerId: {}", to, customerId, e);
+            evict(customerId);
+        }
+    }
+
+    /**
+     * Moves the top entry of one stack onto the other, conditional on the
+     * history still being at the given copy's revision.
+     */
+    private boolean moveLast(final String customerId, final CartHistory history, final String from,
+                             final String to, final CartHistoryEntry entry) {
+        Query sameRevision = Query.query(Criteria.where("_id").is(customerId)
+                .and("revision").is(history.getRevision()));
+        Update update = new Update()
+                .pop(from, Update.Position.LAST)
+                .inc("revision", 1)
+                .currentDate("updatedAt");
+        update.push(to).slice(-depth).each(entry);
+        CartHistory updated = mongoTemplate.findAndModify(sameRevision, update,
+                FindAndModifyOptions.options().returnNew(true), CartHistory.class);
+        if (updated == null) {
+            evict(customerId);
+            return false;
+        }
+        cache(customerId, updated);
+        return true;
+    }
+
+    private CartHistory load(final String customerId) {
+        cacheLock.lock();
+        try {
+            CartHistory cached = cache.get(customerId);
+            if (cached != null) {
+                return cached;
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+        CartHistory stored = mongoTemplate.findById(customerId, CartHistory.class);
+        if (stored == null) {
+            // Not cached: nothing to undo yet, and a later record() creates the document.
+            return new CartHistory(customerId, 0, List.of(), List.of(), null);
+        }
+        cache(customerId, stored);
+        return stored;
+    }
+
+    private void cache(final String customerId, final CartHistory history) {
+        cacheLock.lock();
+        try {
+            cache.put(customerId, history);
+            while (cache.size() > maxCustomers) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void evict(final String customerId) {
+        cacheLock.lock();
+        try {
+            cache.remove(customerId);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private static List<CartHistoryEntry> stack(final CartHistory history, final String name) {
+        return "undo".equals(name) ? history.getUndo() : history.getRedo();
+    }
+
+    private static Query byCustomer(final String customerId) {
+        return Query.query(Criteria.where("_id").is(customerId));
+    }
+}
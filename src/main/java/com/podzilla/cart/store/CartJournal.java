@@ -0,0 +1,237 @@
+package com.podzilla.cart.store;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.model.Cart;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Local append-only journal backing the write-behind store. Every buffered
+ * cart write is appended as one JSON line to the active segment before it is
+ * acknowledged. A flush seals the active segment; once the flush has reached
+ * Mongo the sealed segments are deleted. Whatever is left on disk at startup
+ * was never flushed and is replayed.
+ */
+@Slf4j
+public class CartJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+
+    /**
+     * One journal line: the latest state of a customer's cart, or a
+     * tombstone (null cart) when the cart left the store. The cart id and
+     * version order lines for the same cart, which the write-behind store
+     * appends outside its own lock and so not necessarily in version order.
+     */
+    public record Entry(String customerId, Cart cart, String cartId, Long version) {
+
+        public Entry(final String customerId, final Cart cart) {
+            this(customerId, cart, cart.getId(), cart.getVersion());
+        }
+
+        public static Entry tombstone(final Cart removed) {
+            return new Entry(removed.getCustomerId(), null, removed.getId(), removed.getVersion());
+        }
+
+        /**
+         * Whether this line replaces an earlier one for the same customer.
+         * Lines for a different cart, or written before lines carried a
+         * version, replace in journal order; a tombstone wins over the save
+         * of the version it removed.
+         */
+        boolean supersedes(final Entry previous) {
+            if (version == null || previous.version() == null || !Objects.equals(cartId, previous.cartId())) {
+                return true;
+            }
+            return version > previous.version() || version.equals(previous.version()) && cart == null;
+        }
+    }
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    /** A lock rather than a monitor so virtual threads blocked on file I/O do not pin their carrier. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long sequence;
+    private FileChannel active;
+    private long activeBytes;
+
+    public CartJournal(final Path directory, final ObjectMapper objectMapper, final boolean fsync) {
+        this.directory = directory;
+        // Derived properties such as CartItem.itemTotal are written but have no setter.
+        this.objectMapper = objectMapper.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            this.sequence = segments().stream().mapToLong(CartJournal::sequenceOf).max().orElse(0L);
+            openNextSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cart journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Reads every segment older than the active one and returns the latest
+     * entry per customer, in journal order.
+     */
+    public Map<String, Entry> replay() {
+        lock.lock();
+        try {
+            Map<String, Entry> latest = new LinkedHashMap<>();
+            for (Path segment : segments()) {
+                if (sequenceOf(segment) >= sequence) {
+                    continue;
+                }
+                try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            Entry entry = objectMapper.readValue(line, Entry.class);
+                            Entry previous = latest.get(entry.customerId());
+                            if (previous == null || entry.supersedes(previous)) {
+                                latest.remove(entry.customerId());
+                                latest.put(entry.customerId(), entry);
+                            }
+                        } catch (IOException e) {
+                            // A torn last line from a crash mid-append; everything before it is intact.
+                            log.warn("Skipping unreadable journal line in {}", segment.getFileName());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot replay cart journal segment " + segment, e);
+                }
+            }
+            return latest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void append(final Entry entry) {
+        lock.lock();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(entry);
+            ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+            while (buffer.hasRemaining()) {
+                activeBytes += active.write(buffer);
+            }
+            if (fsync) {
+                active.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to cart journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals the active segment if anything was written to it and returns the
+     * sequence number of the newest sealed segment.
+     */
+    public long rotate() {
+        lock.lock();
+        try {
+            if (activeBytes == 0) {
+                return sequence - 1;
+            }
+            try {
+                active.close();
+                openNextSegment();
+                return sequence - 1;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot rotate cart journal", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes sealed segments up to and including the given sequence, once
+     * their contents are known to be in Mongo.
+     */
+    public void deleteSegmentsUpTo(final long sealedSequence) {
+        lock.lock();
+        try {
+            for (Path segment : segments()) {
+                long segmentSequence = sequenceOf(segment);
+                if (segmentSequence <= sealedSequence && segmentSequence < sequence) {
+                    try {
+                        Files.deleteIfExists(segment);
+                    } catch (IOException e) {
+                        log.warn("Cannot delete flushed journal segment {}", segment.getFileName(), e);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            try {
+                active.close();
+            } catch (IOException e) {
+                log.warn("Cannot close cart journal", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        sequence++;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%012d", sequence) + SEGMENT_SUFFIX);
+        active = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeBytes = active.size();
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .toList());
+            segments.sort(Comparator.comparingLong(CartJournal::sequenceOf));
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list cart journal segments in " + directory, e);
+        }
+    }
+
+    private static long sequenceOf(final Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
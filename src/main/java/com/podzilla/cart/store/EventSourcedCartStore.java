@@ -0,0 +1,181 @@
+package com.podzilla.cart.store;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartEvent;
+import com.podzilla.cart.model.CartSnapshot;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Optional event-sourced storage for carts. Each save appends one
+ * {@link CartEvent} with the changes recorded on the cart since it was read,
+ * instead of rewriting the whole cart document; a {@link CartSnapshot} is
+ * taken every {@code snapshot-every} events, and reads replay the events
+ * after the latest snapshot onto it.
+ *
+ * <p>The event sequence is the cart version, so CartService's
+ * optimistic-locking retries work unchanged. The full history stays in
+ * {@code cart_events}.
+ *
+ * <p>Carts written before the store was enabled live only in the
+ * {@code carts} collection. The first read of such a cart seeds a snapshot
+ * from its document at the document's version, and the stream continues
+ * from there, so no migration is needed when switching it on.
+ */
+@Component
+@Slf4j
+public class EventSourcedCartStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int snapshotEvery;
+    private final boolean writeBehindEnabled;
+
+    public EventSourcedCartStore(final MongoTemplate mongoTemplate,
+                                 @Value("${cart.event-sourcing.enabled:false}") final boolean enabled,
+                                 @Value("${cart.event-sourcing.snapshot-every:50}") final int snapshotEvery,
+                                 @Value("${cart.write-behind.enabled:false}") final boolean writeBehindEnabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.snapshotEvery = snapshotEvery;
+        this.writeBehindEnabled = writeBehindEnabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (writeBehindEnabled) {
+            throw new IllegalStateException(
+                    "cart.event-sourcing.enabled and cart.write-behind.enabled cannot be used together");
+        }
+        if (snapshotEvery <= 0) {
+            throw new IllegalStateException("cart.event-sourcing.snapshot-every must be positive");
+        }
+        log.info("Event-sourced cart store enabled (snapshot every {} events)", snapshotEvery);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rebuilds the customer's cart from its latest snapshot and the events
+     * after it. Without a snapshot, a stream that does not start at event 1
+     * continues a cart document, which is then seeded as the snapshot.
+     */
+    public Optional<Cart> find(final String customerId) {
+        CartSnapshot snapshot = mongoTemplate.findById(customerId, CartSnapshot.class);
+        long after = snapshot == null ? 0 : snapshot.getSequence();
+        List<CartEvent> tail = mongoTemplate.find(Query.query(Criteria.where("customerId").is(customerId)
+                        .and("sequence").gt(after))
+                .with(Sort.by("sequence")), CartEvent.class);
+        if (snapshot == null && (tail.isEmpty() || tail.getFirst().getSequence() > 1)) {
+            snapshot = seedFromCartDocument(customerId);
+            if (snapshot != null) {
+                long seeded = snapshot.getSequence();
+                after = seeded;
+                tail = tail.stream().filter(event -> event.getSequence() > seeded).toList();
+            }
+        }
+        if (snapshot == null && tail.isEmpty()) {
+            return Optional.empty();
+        }
+        Cart cart = snapshot == null ? null : snapshot.getCart();
+        for (CartEvent event : tail) {
+            cart = event.applyTo(cart);
+        }
+        log.debug("Rebuilt cart for customerId: {} from snapshot {} and {} events", customerId, after, tail.size());
+        return Optional.of(cart);
+    }
+
+    /**
+     * Appends the cart's pending changes as the event after the version it
+     * was read at, and updates the cart's version to match. Throws
+     * {@link OptimisticLockingFailureException} if another save appended
+     * that event first.
+     */
+    public Cart save(final Cart cart) {
+        long sequence = (cart.getVersion() == null ? 0 : cart.getVersion()) + 1;
+        CartEvent event = new CartEvent(null, cart.getCustomerId(), cart.getId(), sequence,
+                new ArrayList<>(cart.pendingChanges()), cart.getAppliedPromoCode(), cart.getSubTotal(),
+                cart.getDiscountAmount(), cart.getTotalPrice(), Instant.now());
+        try {
+            mongoTemplate.insert(event);
+        } catch (DuplicateKeyException e) {
+            throw new OptimisticLockingFailureException("Cart " + cart.getId()
+                    + " was modified concurrently (event " + sequence + " already exists)", e);
+        }
+        cart.setVersion(sequence);
+        cart.setLastModified(event.getOccurredAt());
+        cart.clearPendingChanges();
+        if (sequence % snapshotEvery == 0) {
+            snapshot(cart);
+        }
+        return cart;
+    }
+
+    /** Removes the customer's snapshot and events. */
+    public void delete(final String customerId) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(customerId)), CartSnapshot.class);
+        mongoTemplate.remove(Query.query(Criteria.where("customerId").is(customerId)), CartEvent.class);
+    }
+
+    /**
+     * Takes the customer's cart document, stored before event sourcing was
+     * enabled, as the snapshot at its version; a document saved before carts
+     * were versioned counts as version 0.
+     */
+    private CartSnapshot seedFromCartDocument(final String customerId) {
+        Cart cart = mongoTemplate.findOne(Query.query(Criteria.where("customerId").is(customerId)), Cart.class);
+        if (cart == null) {
+            return null;
+        }
+        if (cart.getVersion() == null) {
+            cart.setVersion(0L);
+        }
+        snapshot(cart);
+        log.info("Seeded event stream for customerId: {} from its cart document at version {}",
+                customerId, cart.getVersion());
+        return new CartSnapshot(customerId, cart.getVersion(), cart, Instant.now());
+    }
+
+    /**
+     * Replaces the customer's snapshot unless a newer one is already there.
+     * A failed snapshot only makes reads replay more events, so it is logged
+     * and otherwise ignored.
+     */
+    private void snapshot(final Cart cart) {
+        Query olderSnapshot = Query.query(Criteria.where("_id").is(cart.getCustomerId())
+                .and("sequence").lt(cart.getVersion()));
+        Update update = new Update()
+                .set("sequence", cart.getVersion())
+                .set("cart", cart.copy())
+                .set("createdAt", Instant.now());
+        try {
+            mongoTemplate.upsert(olderSnapshot, update, CartSnapshot.class);
+            log.debug("Snapshot taken for customerId: {} at event {}", cart.getCustomerId(), cart.getVersion());
+        } catch (DuplicateKeyException e) {
+            log.debug("Newer snapshot already stored for customerId: {}", cart.getCustomerId());
+        } catch (DataAccessException e) {
+            log.warn("Failed to snapshot cart for customerId: {} at event {}",
+                    cart.getCustomerId(), cart.getVersion(), e);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.podzilla.cart.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind layer for active carts. Saves update a bounded
+ * in-memory copy and the local {@link CartJournal}; dirty carts are written
+ * to Mongo in one unordered bulk write per flush interval, so a cart mutated
+ * many times per second costs one write per interval.
+ *
+ * <p>The in-memory copy is authoritative, so the store assumes requests for
+ * a customer are routed to the same replica. Versions are still checked and
+ * bumped in memory, which keeps the optimistic-locking retry in CartService
+ * working unchanged.
+ */
+@Component
+@Slf4j
+public class WriteBehindCartStore {
+
+    private static final class Entry {
+        private Cart cart;
+        private boolean dirty;
+
+        Entry(final Cart cart, final boolean dirty) {
+            this.cart = cart;
+            this.dirty = dirty;
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final CartMetrics cartMetrics;
+    private final boolean enabled;
+    private final int maxCarts;
+    private final Path journalDirectory;
+    private final boolean journalFsync;
+
+    /** Active carts by customerId, least recently used first. Guarded by {@code entriesLock}. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Serialises flushes with each other and with carts leaving the store. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /** Never held across I/O: Mongo writes and journal appends happen after it is released. */
+    private final ReentrantLock entriesLock = new ReentrantLock();
+    private CartJournal journal;
+
+    public WriteBehindCartStore(final MongoTemplate mongoTemplate,
+                                final ObjectMapper objectMapper,
+                                final CartMetrics cartMetrics,
+                                @Value("${cart.write-behind.enabled:false}") final boolean enabled,
+                                @Value("${cart.write-behind.max-carts:10000}") final int maxCarts,
+                                @Value("${cart.write-behind.journal-dir:./data/write-behind}")
+                                final Path journalDirectory,
+                                @Value("${cart.write-behind.journal-fsync:false}") final boolean journalFsync) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.cartMetrics = cartMetrics;
+        this.enabled = enabled;
+        this.maxCarts = maxCarts;
+        this.journalDirectory = journalDirectory;
+        this.journalFsync = journalFsync;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        journal = new CartJournal(journalDirectory, objectMapper, journalFsync);
+        int replayed = 0;
+        entriesLock.lock();
+        try {
+            for (CartJournal.Entry entry : journal.replay().values()) {
+                if (entry.cart() != null) {
+                    entries.put(entry.customerId(), new Entry(entry.cart(), true));
+                    replayed++;
+                }
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+        cartMetrics.registerWriteBehindBacklog(this::dirtyCount);
+        log.info("Write-behind cart store enabled (max carts: {}, journal: {}), replayed {} unflushed carts",
+                maxCarts, journalDirectory, replayed);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        flushDirty();
+        journal.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a private copy of the customer's cart, loading it with the given
+     * loader on a miss. Only active carts are kept.
+     */
+    public Optional<Cart> find(final String customerId, final Supplier<Optional<Cart>> loader) {
+        entriesLock.lock();
+        try {
+            Entry entry = entries.get(customerId);
+            if (entry != null) {
+                return Optional.of(entry.cart.copy());
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+        Optional<Cart> loaded = loader.get();
+        if (loaded.isEmpty() || loaded.get().isArchived() || loaded.get().getVersion() == null) {
+            return loaded;
+        }
+        entriesLock.lock();
+        try {
+            Entry entry = entries.computeIfAbsent(customerId, id -> new Entry(loaded.get().copy(), false));
+            evictCleanOverflow();
+            return Optional.of(entry.cart.copy());
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Buffers the cart and journals it. Throws
+     * {@link OptimisticLockingFailureException} if the buffered cart moved on
+     * since the caller read it. Carts that are not buffered are written
+     * through to Mongo.
+     */
+    public Cart save(final Cart cart) {
+        Cart saved;
+        boolean overCapacity;
+        entriesLock.lock();
+        try {
+            Entry entry = entries.get(cart.getCustomerId());
+            if (entry == null) {
+                saved = null;
+                overCapacity = false;
+            } else {
+                if (!Objects.equals(entry.cart.getVersion(), cart.getVersion())) {
+                    throw new OptimisticLockingFailureException("Cart " + cart.getId()
+                            + " was modified concurrently (expected version " + cart.getVersion()
+                            + ", found " + entry.cart.getVersion() + ")");
+                }
+                saved = cart.copy();
+                saved.setVersion(cart.getVersion() + 1);
+                saved.setLastModified(Instant.now());
+                entry.cart = saved;
+                entry.dirty = true;
+                overCapacity = !evictCleanOverflow();
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+        if (saved == null) {
+            return mongoTemplate.save(cart);
+        }
+        // Journaled outside entriesLock so that reads and saves of other carts do not wait on the disk.
+        boolean journaled = true;
+        try {
+            journal.append(new CartJournal.Entry(saved.getCustomerId(), saved));
+        } catch (UncheckedIOException e) {
+            log.error("Cannot journal cartId: {}, flushing it directly", cart.getId(), e);
+            journaled = false;
+        }
+        cartMetrics.recordWriteBehindSave();
+        if (!journaled) {
+            flush(cart.getCustomerId());
+        } else if (overCapacity) {
+            log.debug("Write-behind store full of dirty carts, flushing on the caller thread");
+            flushDirty();
+        }
+        return saved.copy();
+    }
+
+    /** Writes the customer's cart to Mongo now if it has unflushed changes. */
+    public void flush(final String customerId) {
+        if (!enabled) {
+            return;
+        }
+        flushEntry(customerId);
+    }
+
+    /**
+     * Flushes and drops the customer's cart so the caller can write it
+     * directly, e.g. when it is archived or deleted. The cart stays buffered
+     * if it cannot be flushed: a {@link DataAccessResourceFailureException}
+     * is thrown when Mongo is unreachable and an
+     * {@link OptimisticLockingFailureException} when the cart was saved again
+     * meanwhile.
+     */
+    public void detach(final String customerId) {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (!flushEntry(customerId)) {
+                throw new DataAccessResourceFailureException(
+                        "Cannot flush the buffered cart of customerId " + customerId + " before detaching it");
+            }
+            Cart removed;
+            entriesLock.lock();
+            try {
+                Entry entry = entries.get(customerId);
+                if (entry == null) {
+                    return;
+                }
+                if (entry.dirty) {
+                    throw new OptimisticLockingFailureException("Cart " + entry.cart.getId()
+                            + " was modified while being detached");
+                }
+                entries.remove(customerId);
+                removed = entry.cart;
+            } finally {
+                entriesLock.unlock();
+            }
+            try {
+                journal.append(CartJournal.Entry.tombstone(removed));
+            } catch (UncheckedIOException e) {
+                // Harmless: the cart is in Mongo, and a replayed older copy loses to it on the version guard.
+                log.warn("Cannot journal detach of cartId: {}", removed.getId(), e);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-interval-ms:500}")
+    public void flushDirty() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            long sealed = journal.rotate();
+            List<Cart> snapshot = new ArrayList<>();
+            entriesLock.lock();
+            try {
+                for (Entry entry : entries.values()) {
+                    if (entry.dirty) {
+                        snapshot.add(entry.cart.copy());
+                    }
+                }
+            } finally {
+                entriesLock.unlock();
+            }
+            if (!snapshot.isEmpty()) {
+                if (!write(snapshot)) {
+                    return;
+                }
+                markClean(snapshot);
+            }
+            journal.deleteSegmentsUpTo(sealed);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    int dirtyCount() {
+        entriesLock.lock();
+        try {
+            int dirty = 0;
+            for (Entry entry : entries.values()) {
+                if (entry.dirty) {
+                    dirty++;
+                }
+            }
+            return dirty;
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the customer's cart to Mongo if it is dirty. Returns false if
+     * the write failed and the cart is still dirty.
+     */
+    private boolean flushEntry(final String customerId) {
+        flushLock.lock();
+        try {
+            Cart snapshot;
+            entriesLock.lock();
+            try {
+                Entry entry = entries.get(customerId);
+                if (entry == null || !entry.dirty) {
+                    return true;
+                }
+                snapshot = entry.cart.copy();
+            } finally {
+                entriesLock.unlock();
+            }
+            if (!write(List.of(snapshot))) {
+                return false;
+            }
+            markClean(List.of(snapshot));
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces each cart only where Mongo holds an older version, so a
+     * replayed or otherwise stale copy never overwrites a newer write.
+     */
+    private boolean write(final List<Cart> carts) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+        for (Cart cart : carts) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(cart.getId()).and("version").lt(cart.getVersion())),
+                    cart, FindAndReplaceOptions.none());
+        }
+        BulkWriteResult result;
+        try {
+            result = bulk.execute();
+        } catch (DataAccessException e) {
+            cartMetrics.recordWriteBehindFlush(carts.size(), false);
+            log.error("Failed to flush {} dirty carts, will retry on the next flush", carts.size(), e);
+            return false;
+        }
+        cartMetrics.recordWriteBehindFlush(carts.size(), true);
+        log.debug("Flushed {} dirty carts", carts.size());
+        if (result.getMatchedCount() < carts.size()) {
+            dropStale(carts);
+        }
+        return true;
+    }
+
+    /**
+     * Drops buffered carts whose write matched nothing because Mongo has
+     * moved past them, e.g. a write from another replica, so the next read
+     * loads the stored cart instead of saving over it again.
+     */
+    private void dropStale(final List<Cart> written) {
+        Query query = Query.query(Criteria.where("_id").in(written.stream().map(Cart::getId).toList()));
+        query.fields().include("version");
+        Map<String, Long> storedVersions = new HashMap<>();
+        for (Cart stored : mongoTemplate.find(query, Cart.class)) {
+            storedVersions.put(stored.getId(), stored.getVersion());
+        }
+        entriesLock.lock();
+        try {
+            for (Cart cart : written) {
+                if (Objects.equals(storedVersions.get(cart.getId()), cart.getVersion())) {
+                    continue;
+                }
+                Entry entry = entries.get(cart.getCustomerId());
+                if (entry != null && Objects.equals(entry.cart.getVersion(), cart.getVersion())) {
+                    entries.remove(cart.getCustomerId());
+                    log.warn("Dropped buffered cartId: {} at version {}, the stored cart is at version {}",
+                            cart.getId(), cart.getVersion(), storedVersions.get(cart.getId()));
+                }
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    private void markClean(final List<Cart> flushed) {
+        entriesLock.lock();
+        try {
+            for (Cart cart : flushed) {
+                Entry entry = entries.get(cart.getCustomerId());
+                if (entry != null && Objects.equals(entry.cart.getVersion(), cart.getVersion())) {
+                    entry.dirty = false;
+                }
+            }
+        } finally {
+            entriesLock.unlock();
+        }
+    }
+
+    /**
+     * Drops least recently used clean carts until the store is within
+     * bounds. Returns false if it is still over capacity because every
+     * remaining cart is dirty.
+     */
+    private boolean evictCleanOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxCarts && iterator.hasNext()) {
+            if (!iterator.next().dirty) {
+                iterator.remove();
+            }
+        }
+        return entries.size() <= maxCarts;
+    }
+}
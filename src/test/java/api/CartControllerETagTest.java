@@ -0,0 +1,90 @@
+package api;
+
+import com.podzilla.cart.controller.CartController;
+import com.podzilla.cart.dto.CartSummary;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CheckoutJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class CartControllerETagTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CheckoutJobService checkoutJobService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new CartController(cartService, checkoutJobService)).build();
+    }
+
+    private Cart cart(final Long version) {
+        return new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2),
+                version, null);
+    }
+
+    @Test
+    void getCart_returnsETagFromVersion() throws Exception {
+        when(cartService.getCartByCustomerId(CUSTOMER_ID)).thenReturn(cart(7L));
+
+        mockMvc.perform(get("/carts/customer").header("X-User-Id", CUSTOMER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"cart-1-7\""));
+    }
+
+    @Test
+    void getCart_matchingIfNoneMatch_returnsNotModifiedWithoutBody() throws Exception {
+        when(cartService.getCartByCustomerId(CUSTOMER_ID)).thenReturn(cart(7L));
+
+        mockMvc.perform(get("/carts/customer").header("X-User-Id", CUSTOMER_ID)
+                        .header("If-None-Match", "\"cart-1-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getCart_staleIfNoneMatch_returnsCart() throws Exception {
+        when(cartService.getCartByCustomerId(CUSTOMER_ID)).thenReturn(cart(8L));
+
+        mockMvc.perform(get("/carts/customer").header("X-User-Id", CUSTOMER_ID)
+                        .header("If-None-Match", "\"cart-1-7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"cart-1-8\""));
+    }
+
+    @Test
+    void getSummary_returnsTotalsWithCartETag() throws Exception {
+        when(cartService.getCartSummary(CUSTOMER_ID)).thenReturn(new CartSummary("cart-1", 2,
+                new BigDecimal("12.50"), BigDecimal.ZERO.setScale(2), new BigDecimal("12.50"), null, 7L));
+
+        mockMvc.perform(get("/carts/customer/summary").header("X-User-Id", CUSTOMER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"cart-1-7\""))
+                .andExpect(jsonPath("$.itemCount").value(2))
+                .andExpect(jsonPath("$.items").doesNotExist());
+    }
+}
@@ -0,0 +1,90 @@
+package api;
+
+import com.podzilla.cart.controller.CartController;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CheckoutJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class CartControllerMinimalResponseTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CheckoutJobService checkoutJobService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new CartController(cartService, checkoutJobService)).build();
+    }
+
+    private Cart cart(final CartItem... items) {
+        return new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(List.of(items)), false, null,
+                new BigDecimal("30.00"), BigDecimal.ZERO.setScale(2), new BigDecimal("30.00"), 5L, null);
+    }
+
+    @Test
+    void updateQuantity_preferMinimal_returnsItemTotalsAndVersion() throws Exception {
+        when(cartService.updateItemQuantity(CUSTOMER_ID, "p1", 3))
+                .thenReturn(cart(new CartItem("p1", 3, new BigDecimal("10.00")),
+                        new CartItem("p2", 1, BigDecimal.ONE)));
+
+        mockMvc.perform(patch("/carts/items/p1").param("quantity", "3")
+                        .header("X-User-Id", CUSTOMER_ID)
+                        .header("Prefer", "return=minimal"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Preference-Applied", "return=minimal"))
+                .andExpect(jsonPath("$.item.productId").value("p1"))
+                .andExpect(jsonPath("$.item.quantity").value(3))
+                .andExpect(jsonPath("$.totalPrice").value(30.00))
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.items").doesNotExist());
+    }
+
+    @Test
+    void removeItem_preferMinimal_returnsNoItem() throws Exception {
+        when(cartService.removeItemFromCart(CUSTOMER_ID, "p1")).thenReturn(cart());
+
+        mockMvc.perform(delete("/carts/items/p1")
+                        .header("X-User-Id", CUSTOMER_ID)
+                        .header("Prefer", "return=minimal"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cartId").value("cart-1"))
+                .andExpect(jsonPath("$.item").doesNotExist());
+    }
+
+    @Test
+    void removeItem_withoutPrefer_returnsFullCart() throws Exception {
+        when(cartService.removeItemFromCart(CUSTOMER_ID, "p1"))
+                .thenReturn(cart(new CartItem("p2", 1, BigDecimal.ONE)));
+
+        mockMvc.perform(delete("/carts/items/p1").header("X-User-Id", CUSTOMER_ID))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Preference-Applied"))
+                .andExpect(jsonPath("$.items[0].productId").value("p2"));
+    }
+}
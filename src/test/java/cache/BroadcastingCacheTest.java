@@ -0,0 +1,130 @@
+package cache;
+
+import com.podzilla.cart.cache.BroadcastingCache;
+import com.podzilla.cart.cache.CacheInvalidationBroadcaster;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BroadcastingCacheTest {
+
+    @Mock
+    private CacheInvalidationBroadcaster broadcaster;
+
+    private BroadcastingCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BroadcastingCache(new ConcurrentMapCache("promoCodes"), broadcaster);
+    }
+
+    @Test
+    void put_staysLocal() {
+        cache.put("SAVE10", "promo");
+
+        assertEquals("promo", cache.get("SAVE10").get());
+        verify(broadcaster, never()).broadcastEvict(anyString(), any());
+    }
+
+    @Test
+    void put_nullValue_isCachedAsMiss() {
+        cache.put("UNKNOWN", null);
+
+        assertNotNull(cache.get("UNKNOWN"));
+        assertNull(cache.get("UNKNOWN").get());
+    }
+
+    @Test
+    void evict_removesLocallyAndBroadcasts() {
+        cache.put("SAVE10", "promo");
+
+        cache.evict("SAVE10");
+
+        assertNull(cache.get("SAVE10"));
+        verify(broadcaster).broadcastEvict("promoCodes", "SAVE10");
+    }
+
+    @Test
+    void evictLocally_doesNotBroadcast() {
+        cache.put("SAVE10", "promo");
+
+        cache.evictLocally("SAVE10");
+
+        assertNull(cache.get("SAVE10"));
+        verifyNoInteractions(broadcaster);
+    }
+
+    @Test
+    void clear_broadcastsClear() {
+        cache.put("SAVE10", "promo");
+
+        cache.clear();
+
+        assertNull(cache.get("SAVE10"));
+        verify(broadcaster).broadcastClear("promoCodes");
+    }
+
+    @Test
+    void put_afterMissAndConcurrentEvict_isDropped() throws Exception {
+        CountDownLatch missed = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        Thread reader = Thread.ofVirtual().start(() -> {
+            // A read-through load: miss, read the old value, then fill the cache.
+            assertNull(cache.get("cust-1"));
+            missed.countDown();
+            awaitQuietly(evicted);
+            cache.put("cust-1", "cart-v5");
+        });
+        assertTrue(missed.await(5, TimeUnit.SECONDS));
+
+        // The write that produced v6 commits and evicts while the load is in flight.
+        cache.evict("cust-1");
+        evicted.countDown();
+        reader.join(5000);
+
+        assertNull(cache.get("cust-1"));
+        cache.put("cust-1", "cart-v6");
+        assertEquals("cart-v6", cache.get("cust-1").get());
+    }
+
+    @Test
+    void put_afterMissAndBroadcastClear_isDropped() {
+        assertNull(cache.get("SAVE10"));
+
+        cache.clearLocally();
+        cache.put("SAVE10", "promo");
+
+        assertNull(cache.get("SAVE10"));
+    }
+
+    @Test
+    void put_afterMissWithoutEviction_isCached() {
+        assertNull(cache.get("SAVE10"));
+        cache.evict("OTHER");
+
+        cache.put("SAVE10", "promo");
+
+        assertEquals("promo", cache.get("SAVE10").get());
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
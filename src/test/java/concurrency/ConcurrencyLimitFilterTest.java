@@ -0,0 +1,113 @@
+package concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.concurrency.ConcurrencyLimitFilter;
+import com.podzilla.cart.metrics.CartMetrics;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitFilterTest {
+
+    @Mock
+    private CartMetrics cartMetrics;
+
+    private ConcurrencyLimitFilter filter;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final FilterChain chain = (request, response) -> executions.incrementAndGet();
+
+    @BeforeEach
+    void setUp() {
+        filter = new ConcurrencyLimitFilter(new ObjectMapper(), cartMetrics,
+                List.of("POST /carts/checkout=1", "* /admin/promocodes/**=2"));
+    }
+
+    private MockHttpServletRequest request(final String method, final String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    @Test
+    void requestOverLimit_isRejectedWithTooManyRequests() throws Exception {
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+        FilterChain holdingPermit = (request, response) -> {
+            MockHttpServletResponse second = new MockHttpServletResponse();
+            filter.doFilter(request("POST", "/carts/checkout"), second, chain);
+            nested.set(second);
+        };
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request("POST", "/carts/checkout"), first, holdingPermit);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(429, nested.get().getStatus());
+        assertEquals("1", nested.get().getHeader("Retry-After"));
+        assertEquals(0, executions.get());
+        verify(cartMetrics).recordConcurrencyLimited("POST /carts/checkout");
+    }
+
+    @Test
+    void permitIsReleasedAfterTheRequest() throws Exception {
+        filter.doFilter(request("POST", "/carts/checkout"), new MockHttpServletResponse(), chain);
+        filter.doFilter(request("POST", "/carts/checkout"), new MockHttpServletResponse(), chain);
+
+        assertEquals(2, executions.get());
+        verifyNoInteractions(cartMetrics);
+    }
+
+    @Test
+    void asyncRequest_holdsPermitUntilAsyncProcessingCompletes() throws Exception {
+        MockHttpServletRequest first = asyncExport();
+        asyncExport();
+
+        MockHttpServletResponse overLimit = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/admin/promocodes/export"), overLimit, chain);
+        assertEquals(429, overLimit.getStatus());
+
+        ((MockAsyncContext) first.getAsyncContext()).complete();
+        MockHttpServletResponse afterCompletion = new MockHttpServletResponse();
+        filter.doFilter(request("GET", "/admin/promocodes/export"), afterCompletion, chain);
+
+        assertEquals(200, afterCompletion.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    /** An export whose response body is still being written after the filter returns. */
+    private MockHttpServletRequest asyncExport() throws Exception {
+        MockHttpServletRequest export = request("GET", "/admin/promocodes/export");
+        export.setAsyncSupported(true);
+        filter.doFilter(export, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertTrue(export.isAsyncStarted());
+        return export;
+    }
+
+    @Test
+    void unmatchedEndpoint_isNotLimited() throws Exception {
+        FilterChain reentering = (request, response) -> {
+            executions.incrementAndGet();
+            filter.doFilter(request("GET", "/carts/customer"), new MockHttpServletResponse(), chain);
+        };
+
+        filter.doFilter(request("GET", "/carts/customer"), new MockHttpServletResponse(), reentering);
+
+        assertEquals(2, executions.get());
+        verifyNoInteractions(cartMetrics);
+    }
+}
@@ -0,0 +1,118 @@
+package concurrency;
+
+import com.podzilla.cart.concurrency.MongoConcurrencyLimiter;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.PromoCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MongoConcurrencyLimiterTest {
+
+    private final MongoConcurrencyLimiter limiter = new MongoConcurrencyLimiter(1, Duration.ofMillis(50));
+
+    private final BulkOperations bulk = mock(BulkOperations.class);
+
+    private MongoTemplate template;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate target = mock(MongoTemplate.class);
+        lenient().when(target.stream(any(Query.class), eq(PromoCode.class)))
+                .thenAnswer(invocation -> Stream.of(new PromoCode()));
+        lenient().when(target.execute(eq(Cart.class), any()))
+                .thenAnswer(invocation -> invocation.<CollectionCallback<?>>getArgument(1).doInCollection(null));
+        lenient().when(target.bulkOps(BulkOperations.BulkMode.UNORDERED, PromoCode.class)).thenReturn(bulk);
+        lenient().when(bulk.insert(anyList())).thenReturn(bulk);
+        template = (MongoTemplate) limiter.postProcessAfterInitialization(target, "mongoTemplate");
+    }
+
+    private static void assertBusy(final Executable operation) {
+        GlobalHandlerException busy = assertThrows(GlobalHandlerException.class, operation);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, busy.getStatus());
+    }
+
+    @Test
+    void operation_releasesPermitWhenItReturns() {
+        template.count(new Query(), PromoCode.class);
+        template.count(new Query(), PromoCode.class);
+
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void stream_holdsPermitUntilClosed() {
+        try (Stream<PromoCode> promoCodes = template.stream(new Query(), PromoCode.class)) {
+            assertEquals(0, limiter.availablePermits());
+            assertBusy(() -> template.count(new Query(), PromoCode.class));
+            assertEquals(1, promoCodes.count());
+        }
+
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void getCollection_isLimitedLikeAnyOtherOperation() {
+        try (Stream<PromoCode> promoCodes = template.stream(new Query(), PromoCode.class)) {
+            assertBusy(() -> template.getCollection("carts"));
+            assertDoesNotThrow(() -> template.getCollectionName(Cart.class));
+        }
+    }
+
+    @Test
+    void collectionCallback_holdsPermitWhileTheDriverRuns() {
+        AtomicInteger permitsInCallback = new AtomicInteger(-1);
+
+        template.execute(Cart.class, collection -> {
+            permitsInCallback.set(limiter.availablePermits());
+            return null;
+        });
+
+        assertEquals(0, permitsInCallback.get());
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void bulkExecute_takesPermitForTheWrite() {
+        AtomicInteger permitsInExecute = new AtomicInteger(-1);
+        when(bulk.execute()).thenAnswer(invocation -> {
+            permitsInExecute.set(limiter.availablePermits());
+            return null;
+        });
+
+        BulkOperations operations = template.bulkOps(BulkOperations.BulkMode.UNORDERED, PromoCode.class);
+        assertEquals(1, limiter.availablePermits());
+        operations.insert(List.of(new PromoCode())).execute();
+
+        assertEquals(0, permitsInExecute.get());
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void bulkExecute_overTheCap_failsWithoutWriting() {
+        BulkOperations operations = template.bulkOps(BulkOperations.BulkMode.UNORDERED, PromoCode.class)
+                .insert(List.of(new PromoCode()));
+
+        try (Stream<PromoCode> promoCodes = template.stream(new Query(), PromoCode.class)) {
+            assertBusy(operations::execute);
+        }
+        verify(bulk, never()).execute();
+    }
+}
@@ -0,0 +1,191 @@
+package idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.idempotency.IdempotencyFilter;
+import com.podzilla.cart.idempotency.IdempotencyStore;
+import com.podzilla.cart.model.IdempotencyRecord;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyFilterTest {
+
+    private static final String BODY = "{\"productId\":\"prod1\",\"quantity\":1,\"unitPrice\":10.50}";
+
+    @Mock
+    private IdempotencyStore store;
+
+    private IdempotencyFilter filter;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final FilterChain chain = (request, response) -> {
+        executions.incrementAndGet();
+        assertEquals(BODY, new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        response.setContentType("application/json");
+        response.getOutputStream().write("{\"id\":\"cart-1\"}".getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter(store, new ObjectMapper(), true,
+                List.of("/carts/items", "/carts/checkout"));
+    }
+
+    private MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/carts/items");
+        request.setServletPath("/carts/items");
+        request.addHeader("X-User-Id", "customer-1");
+        request.addHeader("Idempotency-Key", "key-1");
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private IdempotencyRecord inProgress() {
+        return new IdempotencyRecord("customer-1:key-1", "fp", IdempotencyRecord.Status.IN_PROGRESS,
+                "token-1", Instant.now(), 0, null, null, null);
+    }
+
+    @Test
+    void firstRequest_executesAndStoresResponse() throws Exception {
+        IdempotencyRecord record = inProgress();
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.ACQUIRED, record));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(), response, chain);
+
+        assertEquals(1, executions.get());
+        assertEquals("{\"id\":\"cart-1\"}", response.getContentAsString());
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(store).complete(eq(record), eq(200), eq("application/json"), any(), body.capture());
+        assertEquals("{\"id\":\"cart-1\"}", new String(body.getValue(), StandardCharsets.UTF_8));
+        verify(store, never()).release(any());
+    }
+
+    @Test
+    void retry_replaysStoredResponseWithoutExecuting() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord("customer-1:key-1", "fp",
+                IdempotencyRecord.Status.COMPLETED, null, Instant.now(), 200, "application/json", null,
+                "{\"id\":\"cart-1\"}".getBytes(StandardCharsets.UTF_8));
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.REPLAY, record));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(), response, chain);
+
+        assertEquals(0, executions.get());
+        assertEquals(200, response.getStatus());
+        assertEquals("true", response.getHeader("Idempotent-Replayed"));
+        assertEquals("{\"id\":\"cart-1\"}", response.getContentAsString());
+    }
+
+    @Test
+    void reusedKeyForDifferentRequest_returnsUnprocessableEntity() throws Exception {
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.MISMATCH, inProgress()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(), response, chain);
+
+        assertEquals(0, executions.get());
+        assertEquals(422, response.getStatus());
+    }
+
+    @Test
+    void concurrentRetry_returnsConflict() throws Exception {
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.IN_PROGRESS, inProgress()));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request(), response, chain);
+
+        assertEquals(0, executions.get());
+        assertEquals(409, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+    }
+
+    @Test
+    void serverError_releasesKeyForRetry() throws Exception {
+        IdempotencyRecord record = inProgress();
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.ACQUIRED, record));
+        FilterChain failing = (request, response) ->
+                ((HttpServletResponse) response).setStatus(503);
+
+        filter.doFilter(request(), new MockHttpServletResponse(), failing);
+
+        verify(store).release(record);
+        verify(store, never()).complete(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void asyncRead_deliversBufferedBodyToReadListener() throws Exception {
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(IdempotencyStore.ClaimResult.ACQUIRED, inProgress()));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicInteger allDataRead = new AtomicInteger();
+        FilterChain asyncChain = (request, response) -> {
+            ServletInputStream input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[16];
+                    while (input.isReady() && !input.isFinished()) {
+                        read.write(buffer, 0, input.read(buffer));
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.incrementAndGet();
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    fail(t);
+                }
+            });
+        };
+
+        filter.doFilter(request(), new MockHttpServletResponse(), asyncChain);
+
+        assertEquals(BODY, read.toString(StandardCharsets.UTF_8));
+        assertEquals(1, allDataRead.get());
+    }
+
+    @Test
+    void requestWithoutKey_passesThrough() throws Exception {
+        MockHttpServletRequest request = request();
+        request.removeHeader("Idempotency-Key");
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertEquals(1, executions.get());
+        verifyNoInteractions(store);
+    }
+}
@@ -0,0 +1,119 @@
+package idempotency;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.podzilla.cart.idempotency.IdempotencyStore;
+import com.podzilla.cart.model.IdempotencyRecord;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IdempotencyStore against an embedded mongod: a request whose claim was
+ * taken over after its lease ran out must not complete or release the key.
+ */
+class IdempotencyStoreTest {
+
+    private static final Duration LEASE = Duration.ofMillis(50);
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+
+    private IdempotencyStore store;
+
+    @BeforeAll
+    static void startMongo() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        mongoClient = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        mongoTemplate = new MongoTemplate(mongoClient, "idempotency_store_test");
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.remove(new Query(), IdempotencyRecord.class);
+        store = new IdempotencyStore(mongoTemplate, LEASE, 100, Duration.ofMinutes(1));
+    }
+
+    private IdempotencyStore.Claim takeOverAfterLease(final IdempotencyStore.Claim stale) throws InterruptedException {
+        Thread.sleep(LEASE.toMillis() * 2);
+        IdempotencyStore.Claim takeover = store.claim("customer-1", "key-1", "fp");
+        assertEquals(IdempotencyStore.ClaimResult.ACQUIRED, takeover.result());
+        assertNotEquals(stale.record().getClaimToken(), takeover.record().getClaimToken());
+        return takeover;
+    }
+
+    @Test
+    void complete_afterTakeover_isRejectedAndNewOwnerCompletes() throws Exception {
+        IdempotencyStore.Claim stale = store.claim("customer-1", "key-1", "fp");
+        IdempotencyStore.Claim takeover = takeOverAfterLease(stale);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> store.complete(stale.record(), 200,
+                "application/json", null, "stale".getBytes(StandardCharsets.UTF_8)));
+        store.complete(takeover.record(), 201, "application/json", null,
+                "fresh".getBytes(StandardCharsets.UTF_8));
+
+        IdempotencyRecord stored = mongoTemplate.findById("customer-1:key-1", IdempotencyRecord.class);
+        assertEquals(IdempotencyRecord.Status.COMPLETED, stored.getStatus());
+        assertEquals(201, stored.getResponseStatus());
+        assertEquals("fresh", new String(stored.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void release_afterTakeover_leavesNewOwnersClaim() throws Exception {
+        IdempotencyStore.Claim stale = store.claim("customer-1", "key-1", "fp");
+        IdempotencyStore.Claim takeover = takeOverAfterLease(stale);
+
+        store.release(stale.record());
+
+        IdempotencyRecord stored = mongoTemplate.findById("customer-1:key-1", IdempotencyRecord.class);
+        assertNotNull(stored);
+        assertEquals(takeover.record().getClaimToken(), stored.getClaimToken());
+    }
+
+    @Test
+    void release_byOwner_freesKey() {
+        IdempotencyStore.Claim claim = store.claim("customer-1", "key-1", "fp");
+
+        store.release(claim.record());
+
+        assertEquals(IdempotencyStore.ClaimResult.ACQUIRED, store.claim("customer-1", "key-1", "fp").result());
+    }
+
+    @Test
+    void claim_afterComplete_replaysResponse() {
+        IdempotencyStore.Claim claim = store.claim("customer-1", "key-1", "fp");
+        store.complete(claim.record(), 200, "application/json", null, "ok".getBytes(StandardCharsets.UTF_8));
+
+        IdempotencyStore fresh = new IdempotencyStore(mongoTemplate, LEASE, 100, Duration.ofMinutes(1));
+        IdempotencyStore.Claim retry = fresh.claim("customer-1", "key-1", "fp");
+
+        assertEquals(IdempotencyStore.ClaimResult.REPLAY, retry.result());
+        assertEquals("ok", new String(retry.record().getResponseBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,180 @@
+package idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.podzilla.cart.idempotency.IdempotencyFilter;
+import com.podzilla.cart.idempotency.IdempotencyStore;
+import com.podzilla.cart.idempotency.ReactiveIdempotencyFilter;
+import com.podzilla.cart.model.IdempotencyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/** The reactive counterpart of IdempotencyFilterTest. */
+@ExtendWith(MockitoExtension.class)
+class ReactiveIdempotencyFilterTest {
+
+    private static final String BODY = "{\"productId\":\"prod1\",\"quantity\":1,\"unitPrice\":10.50}";
+    private static final String RESPONSE = "{\"id\":\"cart-1\"}";
+
+    @Mock
+    private IdempotencyStore store;
+
+    private ReactiveIdempotencyFilter filter;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final WebFilterChain chain = exchange -> DataBufferUtils.join(exchange.getRequest().getBody())
+            .flatMap(buffer -> {
+                executions.incrementAndGet();
+                assertEquals(BODY, buffer.toString(StandardCharsets.UTF_8));
+                DataBufferUtils.release(buffer);
+                exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory()
+                        .wrap(RESPONSE.getBytes(StandardCharsets.UTF_8))));
+            });
+
+    @BeforeEach
+    void setUp() {
+        filter = new ReactiveIdempotencyFilter(store, new ObjectMapper(), true,
+                List.of("/carts/items", "/carts/checkout"));
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/carts/items")
+                .header("X-User-Id", "customer-1")
+                .header("Idempotency-Key", "key-1")
+                .body(BODY));
+    }
+
+    private IdempotencyRecord inProgress() {
+        return new IdempotencyRecord("customer-1:key-1", "fp", IdempotencyRecord.Status.IN_PROGRESS,
+                "token-1", Instant.now(), 0, null, null, null);
+    }
+
+    private void claimReturns(final IdempotencyStore.ClaimResult result, final IdempotencyRecord record) {
+        when(store.claim(eq("customer-1"), eq("key-1"), anyString()))
+                .thenReturn(new IdempotencyStore.Claim(result, record));
+    }
+
+    @Test
+    void firstRequest_executesAndStoresResponse() {
+        IdempotencyRecord record = inProgress();
+        claimReturns(IdempotencyStore.ClaimResult.ACQUIRED, record);
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(1, executions.get());
+        assertEquals(RESPONSE, exchange.getResponse().getBodyAsString().block());
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(store).complete(eq(record), eq(200), eq("application/json"), any(), body.capture());
+        assertEquals(RESPONSE, new String(body.getValue(), StandardCharsets.UTF_8));
+        verify(store, never()).release(any());
+    }
+
+    @Test
+    void sameRequest_hasTheServletFilterFingerprint() throws Exception {
+        claimReturns(IdempotencyStore.ClaimResult.MISMATCH, inProgress());
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("POST", "/carts/items");
+        servletRequest.setServletPath("/carts/items");
+        servletRequest.addHeader("X-User-Id", "customer-1");
+        servletRequest.addHeader("Idempotency-Key", "key-1");
+        servletRequest.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+
+        filter.filter(exchange(), chain).block();
+        new IdempotencyFilter(store, new ObjectMapper(), true, List.of("/carts/items"))
+                .doFilter(servletRequest, new MockHttpServletResponse(), (request, response) -> { });
+
+        ArgumentCaptor<String> fingerprints = ArgumentCaptor.forClass(String.class);
+        verify(store, times(2)).claim(eq("customer-1"), eq("key-1"), fingerprints.capture());
+        assertEquals(fingerprints.getAllValues().get(0), fingerprints.getAllValues().get(1));
+    }
+
+    @Test
+    void retry_replaysStoredResponseWithoutExecuting() {
+        claimReturns(IdempotencyStore.ClaimResult.REPLAY, new IdempotencyRecord("customer-1:key-1", "fp",
+                IdempotencyRecord.Status.COMPLETED, null, Instant.now(), 200, "application/json", null,
+                RESPONSE.getBytes(StandardCharsets.UTF_8)));
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(0, executions.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("true", exchange.getResponse().getHeaders().getFirst("Idempotent-Replayed"));
+        assertEquals(RESPONSE, exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void concurrentRetry_returnsConflict() {
+        claimReturns(IdempotencyStore.ClaimResult.IN_PROGRESS, inProgress());
+        MockServerWebExchange exchange = exchange();
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(0, executions.get());
+        assertEquals(HttpStatus.CONFLICT, exchange.getResponse().getStatusCode());
+        assertEquals("1", exchange.getResponse().getHeaders().getFirst("Retry-After"));
+    }
+
+    @Test
+    void serverError_releasesKeyForRetry() {
+        IdempotencyRecord record = inProgress();
+        claimReturns(IdempotencyStore.ClaimResult.ACQUIRED, record);
+        WebFilterChain failing = exchange -> {
+            exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return exchange.getResponse().setComplete();
+        };
+
+        filter.filter(exchange(), failing).block();
+
+        verify(store).release(record);
+        verify(store, never()).complete(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void blankKey_isRejectedWithoutClaim() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/carts/checkout")
+                .header("X-User-Id", "customer-1")
+                .header("Idempotency-Key", " "));
+
+        filter.filter(exchange, chain).block();
+
+        assertEquals(HttpStatus.BAD_REQUEST, exchange.getResponse().getStatusCode());
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    void requestWithoutKey_passesThrough() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/carts/items")
+                .header("X-User-Id", "customer-1")
+                .body(BODY)), chain).block();
+
+        assertEquals(1, executions.get());
+        verifyNoInteractions(store);
+    }
+}
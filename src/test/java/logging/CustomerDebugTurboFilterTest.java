@@ -0,0 +1,95 @@
+package logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import com.podzilla.cart.logging.CustomerDebugTurboFilter;
+import com.podzilla.cart.logging.CustomerMdcFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerDebugTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger serviceLogger = context.getLogger("com.podzilla.cart.service.CartService");
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+    private final CustomerDebugTurboFilter filter = new CustomerDebugTurboFilter(clock);
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(final Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        serviceLogger.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    void clearMdc() {
+        MDC.clear();
+    }
+
+    private FilterReply decide(final Logger logger) {
+        return filter.decide(null, logger, Level.DEBUG, "Cart retrieved: {}", null, null);
+    }
+
+    @Test
+    void decide_tracedCustomer_acceptsServiceDebug() {
+        filter.enable("cust-1", Duration.ofMinutes(5));
+        MDC.put(CustomerMdcFilter.CUSTOMER_ID, "cust-1");
+
+        assertEquals(FilterReply.ACCEPT, decide(serviceLogger));
+        assertEquals(FilterReply.NEUTRAL, decide(context.getLogger("org.springframework.web")));
+    }
+
+    @Test
+    void decide_otherCustomerOrNoCustomer_isNeutral() {
+        filter.enable("cust-1", Duration.ofMinutes(5));
+
+        assertEquals(FilterReply.NEUTRAL, decide(serviceLogger));
+        MDC.put(CustomerMdcFilter.CUSTOMER_ID, "cust-2");
+        assertEquals(FilterReply.NEUTRAL, decide(serviceLogger));
+    }
+
+    @Test
+    void decide_afterTraceEnds_isNeutralAndForgetsCustomer() {
+        filter.enable("cust-1", Duration.ofMinutes(5));
+        MDC.put(CustomerMdcFilter.CUSTOMER_ID, "cust-1");
+
+        clock.now = clock.now.plus(Duration.ofMinutes(5));
+
+        assertEquals(FilterReply.NEUTRAL, decide(serviceLogger));
+        assertTrue(filter.traced().isEmpty());
+        assertFalse(filter.disable("cust-1"));
+    }
+}
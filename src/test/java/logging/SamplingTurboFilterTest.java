@@ -0,0 +1,46 @@
+package logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import com.podzilla.cart.logging.SamplingTurboFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplingTurboFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger logger = context.getLogger("com.podzilla.cart.service.CartService");
+    private final SamplingTurboFilter filter = new SamplingTurboFilter(3);
+
+    private List<FilterReply> decide(final String format, final int times) {
+        List<FilterReply> replies = new ArrayList<>();
+        for (int i = 0; i < times; i++) {
+            replies.add(filter.decide(SamplingTurboFilter.SAMPLED, logger, Level.WARN, format, null, null));
+        }
+        return replies;
+    }
+
+    @Test
+    void decide_sampledEvents_keepsFirstOfEveryNPerMessage() {
+        assertEquals(List.of(FilterReply.NEUTRAL, FilterReply.DENY, FilterReply.DENY, FilterReply.NEUTRAL),
+                decide("Cart not found for customerId: {}", 4));
+        assertEquals(List.of(FilterReply.NEUTRAL), decide("Giving up {} after {} conflicting attempts", 1));
+    }
+
+    @Test
+    void decide_unmarkedOrDisabledEvents_areNotSampled() {
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, logger, Level.WARN, "Cart not found", null, null));
+
+        logger.setLevel(Level.ERROR);
+        decide("Cart not found for customerId: {}", 2);
+        logger.setLevel(Level.WARN);
+
+        assertEquals(FilterReply.NEUTRAL, decide("Cart not found for customerId: {}", 1).get(0));
+    }
+}
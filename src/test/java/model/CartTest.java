@@ -0,0 +1,93 @@
+package model;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartTest {
+
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        cart = new Cart();
+        cart.getItems().add(new CartItem("p1", 1, BigDecimal.ONE));
+        cart.getItems().add(new CartItem("p2", 2, BigDecimal.TEN));
+    }
+
+    @Test
+    void findItem_returnsItemByProductId() {
+        assertSame(cart.getItems().get(1), cart.findItem("p2").orElseThrow());
+        assertTrue(cart.findItem("missing").isEmpty());
+    }
+
+    @Test
+    void addItem_keepsIndexAndListInSync() {
+        cart.findItem("p1");
+
+        cart.addItem(new CartItem("p3", 3, BigDecimal.ONE));
+
+        assertEquals(3, cart.getItems().size());
+        assertEquals(3, cart.findItem("p3").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void removeItem_removesFromListAndIndex() {
+        CartItem removed = cart.removeItem("p1").orElseThrow();
+
+        assertEquals("p1", removed.getProductId());
+        assertEquals(1, cart.getItems().size());
+        assertTrue(cart.findItem("p1").isEmpty());
+        assertTrue(cart.removeItem("p1").isEmpty());
+    }
+
+    @Test
+    void directListEdits_areDetected() {
+        cart.findItem("p1");
+
+        cart.getItems().add(new CartItem("p4", 1, BigDecimal.ONE));
+        assertTrue(cart.findItem("p4").isPresent());
+
+        cart.getItems().clear();
+        assertTrue(cart.findItem("p1").isEmpty());
+    }
+
+    @Test
+    void setItems_rebuildsIndex() {
+        cart.findItem("p1");
+
+        cart.setItems(new ArrayList<>(List.of(new CartItem("p9", 1, BigDecimal.ONE))));
+
+        assertTrue(cart.findItem("p1").isEmpty());
+        assertTrue(cart.findItem("p9").isPresent());
+    }
+
+    @Test
+    void equalsAndToString_ignoreIndex() {
+        Cart other = new Cart();
+        other.setItems(new ArrayList<>(cart.getItems()));
+
+        cart.findItem("p1");
+
+        assertEquals(other, cart);
+        assertFalse(cart.toString().contains("itemIndex"));
+    }
+
+    @Test
+    void toString_summarizesItems() {
+        cart.setId("cart-1");
+
+        String summary = cart.toString();
+
+        assertTrue(summary.contains("id=cart-1"));
+        assertTrue(summary.contains("items=2"));
+        assertFalse(summary.contains("p1"));
+    }
+}
@@ -0,0 +1,90 @@
+package reactive;
+
+import com.podzilla.cart.dto.CartSummary;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.reactive.CartHandler;
+import com.podzilla.cart.reactive.ReactiveCartRoutes;
+import com.podzilla.cart.reactive.ReactiveCartService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.mockito.Mockito.when;
+
+/** The reactive counterpart of CartControllerETagTest: same ETags, same 304s. */
+@ExtendWith(MockitoExtension.class)
+class CartHandlerETagTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private ReactiveCartService cartService;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToRouterFunction(new ReactiveCartRoutes().cartRoutes(new CartHandler(cartService)))
+                .build();
+    }
+
+    private static CartSummary summary(final Long version) {
+        return new CartSummary("cart-1", 2, new BigDecimal("12.50"), BigDecimal.ZERO.setScale(2),
+                new BigDecimal("12.50"), null, version);
+    }
+
+    @Test
+    void getCart_matchingIfNoneMatch_returnsNotModifiedWithoutBody() {
+        when(cartService.getCartByCustomerId(CUSTOMER_ID)).thenReturn(Mono.just(new Cart("cart-1", CUSTOMER_ID,
+                new ArrayList<>(), false, null, BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2),
+                BigDecimal.ZERO.setScale(2), 7L, null)));
+
+        client.get().uri("/carts/customer").header("X-User-Id", CUSTOMER_ID)
+                .header("If-None-Match", "\"cart-1-7\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void getSummary_returnsTotalsWithCartETag() {
+        when(cartService.getCartSummary(CUSTOMER_ID)).thenReturn(Mono.just(summary(7L)));
+
+        client.get().uri("/carts/customer/summary").header("X-User-Id", CUSTOMER_ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"cart-1-7\"")
+                .expectBody()
+                .jsonPath("$.itemCount").isEqualTo(2)
+                .jsonPath("$.items").doesNotExist();
+    }
+
+    @Test
+    void getSummary_matchingIfNoneMatch_returnsNotModifiedWithoutBody() {
+        when(cartService.getCartSummary(CUSTOMER_ID)).thenReturn(Mono.just(summary(7L)));
+
+        client.get().uri("/carts/customer/summary").header("X-User-Id", CUSTOMER_ID)
+                .header("If-None-Match", "\"cart-1-7\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void getSummary_unversionedCart_hasNoETag() {
+        when(cartService.getCartSummary(CUSTOMER_ID)).thenReturn(Mono.just(summary(null)));
+
+        client.get().uri("/carts/customer/summary").header("X-User-Id", CUSTOMER_ID)
+                .header("If-None-Match", "\"cart-1-null\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("ETag");
+    }
+}
@@ -0,0 +1,172 @@
+package reactive;
+
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.reactive.ReactiveCartRepository;
+import com.podzilla.cart.reactive.ReactiveCartService;
+import com.podzilla.cart.reactive.ReactivePromoCodeRepository;
+import com.podzilla.cart.service.AddItemCommand;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CheckoutJobService;
+import com.podzilla.cart.store.CartHistoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCartServiceTest {
+
+    private static final String CUSTOMER_ID = "cust123";
+
+    @Mock
+    private ReactiveCartRepository cartRepository;
+
+    @Mock
+    private ReactivePromoCodeRepository promoCodeRepository;
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CheckoutJobService checkoutJobService;
+
+    @Mock
+    private CartMetrics cartMetrics;
+
+    @Mock
+    private CartHistoryStore cartHistory;
+
+    @InjectMocks
+    private ReactiveCartService reactiveCartService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reactiveCartService, "backoffBaseMillis", 1L);
+        // A fresh cart per read, as the driver would return.
+        lenient().when(cartRepository.findByCustomerId(CUSTOMER_ID))
+                .thenAnswer(invocation -> Mono.just(newCart()));
+        lenient().when(cartRepository.findByCustomerIdAndArchived(CUSTOMER_ID, false))
+                .thenAnswer(invocation -> Mono.just(newCart()));
+    }
+
+    private Cart newCart() {
+        return new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), 1L, null);
+    }
+
+    @Test
+    void addItemToCart_appliesCommandAndSavesWithTotals() {
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(reactiveCartService.addItemToCart(CUSTOMER_ID,
+                        new CartItem("prod1", 2, new BigDecimal("10.50"))))
+                .assertNext(cart -> {
+                    assertEquals(1, cart.getItems().size());
+                    assertEquals(new BigDecimal("21.00"), cart.getTotalPrice());
+                })
+                .verifyComplete();
+        verify(cartRepository).save(any(Cart.class));
+    }
+
+    @Test
+    void addItemToCart_recordsHistoryOnceAfterSave() {
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(reactiveCartService.addItemToCart(CUSTOMER_ID,
+                        new CartItem("prod1", 1, new BigDecimal("10.50"))))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(cartService).recordHistory(eq("addItem"), eq(CUSTOMER_ID), any(AddItemCommand.class));
+    }
+
+    @Test
+    void addItemToCart_saveFails_recordsNoHistory() {
+        when(cartRepository.save(any(Cart.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("stale version")));
+
+        StepVerifier.create(reactiveCartService.addItemToCart(CUSTOMER_ID,
+                        new CartItem("prod1", 1, new BigDecimal("10.50"))))
+                .expectError(GlobalHandlerException.class)
+                .verify();
+        verify(cartService, never()).recordHistory(anyString(), anyString(), any());
+    }
+
+    @Test
+    void clearCart_forgetsHistory() {
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(reactiveCartService.clearCart(CUSTOMER_ID)).verifyComplete();
+
+        verify(cartHistory).clear(CUSTOMER_ID);
+    }
+
+    @Test
+    void addItemToCart_versionConflict_retriesFromFreshRead() {
+        when(cartRepository.save(any(Cart.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("stale version")))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(reactiveCartService.addItemToCart(CUSTOMER_ID,
+                        new CartItem("prod1", 1, new BigDecimal("10.50"))))
+                .assertNext(cart -> assertEquals(1, cart.getItems().get(0).getQuantity()))
+                .verifyComplete();
+        verify(cartRepository, times(2)).findByCustomerId(CUSTOMER_ID);
+        verify(cartMetrics).recordRetry("addItem");
+    }
+
+    @Test
+    void addItemToCart_conflictsExhausted_returnsConflict() {
+        when(cartRepository.save(any(Cart.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("stale version")));
+
+        StepVerifier.create(reactiveCartService.addItemToCart(CUSTOMER_ID,
+                        new CartItem("prod1", 1, new BigDecimal("10.50"))))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.CONFLICT,
+                        ((GlobalHandlerException) error).getStatus()))
+                .verify();
+        verify(cartRepository, times(3)).findByCustomerId(CUSTOMER_ID);
+    }
+
+    @Test
+    void updateItemQuantity_missingItem_returnsNotFoundWithoutSaving() {
+        StepVerifier.create(reactiveCartService.updateItemQuantity(CUSTOMER_ID, "missing", 2))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.NOT_FOUND,
+                        ((GlobalHandlerException) error).getStatus()))
+                .verify();
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void applyPromoCode_inactiveCode_returnsBadRequest() {
+        PromoCode promo = new PromoCode();
+        promo.setCode("SAVE10");
+        promo.setActive(false);
+        when(promoCodeRepository.findByCode("SAVE10")).thenReturn(Mono.just(promo));
+
+        StepVerifier.create(reactiveCartService.applyPromoCode(CUSTOMER_ID, "save10"))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.BAD_REQUEST,
+                        ((GlobalHandlerException) error).getStatus()))
+                .verify();
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+}
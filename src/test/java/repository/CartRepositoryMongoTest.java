@@ -0,0 +1,297 @@
+package repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.podzilla.cart.config.MongoIndexBootstrapper;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.outbox.CheckoutOutbox;
+import com.podzilla.cart.repository.CartRepository;
+import com.podzilla.cart.repository.CartRepositoryCustomImpl;
+import com.podzilla.cart.service.AddItemCommand;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CartTotals;
+import com.podzilla.cart.service.CartTotalsCalculator;
+import com.podzilla.cart.service.PromoCodeService;
+import com.podzilla.cart.service.RemoveItemCommand;
+import com.podzilla.cart.service.UpdateQuantityCommand;
+import com.podzilla.cart.store.CartHistoryStore;
+import com.podzilla.cart.store.EventSourcedCartStore;
+import com.podzilla.cart.store.WriteBehindCartStore;
+import com.podzilla.mq.EventPublisher;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * CartRepository and CartService against an embedded mongod, for behaviour
+ * that mocks cannot show: stored document shapes, versioning and the
+ * server-side update pipelines.
+ */
+class CartRepositoryMongoTest {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+    private static CartRepository cartRepository;
+
+    private CartService cartService;
+
+    @BeforeAll
+    static void startMongo() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        mongoClient = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        mongoTemplate = new MongoTemplate(mongoClient, "cart_repository_test");
+        cartRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(CartRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new CartRepositoryCustomImpl(mongoTemplate)));
+        new MongoIndexBootstrapper(mongoTemplate, true, null).ensureIndexes();
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.remove(new Query(), Cart.class);
+        cartService = new CartService(cartRepository, mock(EventPublisher.class), mock(PromoCodeService.class),
+                mock(CartMetrics.class), mock(WriteBehindCartStore.class), mock(CheckoutOutbox.class),
+                mock(EventSourcedCartStore.class), mock(CartHistoryStore.class));
+    }
+
+    /** A cart as stored before carts were versioned: no version field at all. */
+    private static void insertLegacyCart(final String cartId, final String customerId) {
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cart.class)).insertOne(new Document("_id", cartId)
+                .append("customerId", customerId)
+                .append("items", List.of(new Document("productId", "p1").append("quantity", 1)
+                        .append("unitPrice", "10.00")))
+                .append("archived", false)
+                .append("subTotal", "10.00")
+                .append("discountAmount", "0.00")
+                .append("totalPrice", "10.00"));
+    }
+
+    /**
+     * Stores a cart at version 3 with totals from CartTotalsCalculator, as
+     * CartService would have left it.
+     */
+    private static Cart insertCart(final String customerId, final PromoCode promo, final CartItem... items) {
+        List<CartItem> cartItems = new ArrayList<>(List.of(items));
+        CartTotals totals = CartTotalsCalculator.calculate(cartItems, promo);
+        Cart cart = new Cart("cart-" + customerId, customerId, cartItems, false,
+                promo == null ? null : promo.getCode(), totals.subTotal(), totals.discountAmount(),
+                totals.totalPrice(), 3L, null);
+        Document document = new Document();
+        mongoTemplate.getConverter().write(cart, document);
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cart.class)).insertOne(document);
+        return cart;
+    }
+
+    private static PromoCode fixedAmountPromo(final String amount) {
+        PromoCode promo = new PromoCode();
+        promo.setCode("FIXED");
+        promo.setDiscountType(PromoCode.DiscountType.FIXED_AMOUNT);
+        promo.setDiscountValue(new BigDecimal(amount));
+        return promo;
+    }
+
+    /**
+     * The pipeline result must equal the in-Java path: the same mutation on a
+     * copy of the cart, then CartTotalsCalculator. BigDecimals are compared
+     * with equals, so a scale difference ("0" against "0.00") fails too.
+     */
+    private static void assertMatchesInJava(final Cart before, final PromoCode promo,
+                                            final Consumer<Cart> mutation, final Cart updated) {
+        Cart expected = before.copy();
+        mutation.accept(expected);
+        CartTotals totals = CartTotalsCalculator.calculate(expected.getItems(), promo);
+
+        assertEquals(expected.getItems(), updated.getItems());
+        assertEquals(totals.subTotal(), updated.getSubTotal());
+        assertEquals(totals.discountAmount(), updated.getDiscountAmount());
+        assertEquals(totals.totalPrice(), updated.getTotalPrice());
+        assertEquals(before.getVersion() + 1, updated.getVersion());
+
+        Document stored = stored(before.getId());
+        assertEquals(totals.subTotal().toString(), stored.getString("subTotal"));
+        assertEquals(totals.discountAmount().toString(), stored.getString("discountAmount"));
+        assertEquals(totals.totalPrice().toString(), stored.getString("totalPrice"));
+        assertEquals(before.getVersion() + 1, stored.getLong("version"));
+    }
+
+    private static Document stored(final String cartId) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Cart.class))
+                .find(new Document("_id", cartId)).first();
+    }
+
+    @Test
+    void saveOfUnversionedCart_wouldInsertAgain() {
+        insertLegacyCart("legacy-0", "legacy-customer-0");
+        Cart cart = cartRepository.findByCustomerId("legacy-customer-0").orElseThrow();
+
+        assertNull(cart.getVersion());
+        assertThrows(DuplicateKeyException.class, () -> cartRepository.save(cart));
+    }
+
+    @Test
+    void addItem_legacyCartWithoutVersion_isUpdatedInPlace() {
+        insertLegacyCart("legacy-1", "legacy-customer-1");
+
+        Cart cart = cartService.addItemToCart("legacy-customer-1", new CartItem("p2", 2, new BigDecimal("5.00")));
+
+        assertEquals(2, cart.getItems().size());
+        assertEquals(1L, cart.getVersion());
+        Document stored = stored("legacy-1");
+        assertEquals(1L, stored.getLong("version"));
+        assertEquals(2, stored.getList("items", Document.class).size());
+        assertEquals(1, mongoTemplate.count(new Query(), Cart.class));
+    }
+
+    @Test
+    void backfillCartVersions_setsVersionZeroOnlyWhereMissing() {
+        insertLegacyCart("legacy-2", "legacy-customer-2");
+        Cart versioned = cartService.createCart("new-customer");
+
+        new MongoIndexBootstrapper(mongoTemplate, true, null).backfillCartVersions();
+
+        assertEquals(0L, stored("legacy-2").getLong("version"));
+        assertEquals(versioned.getVersion(), stored(versioned.getId()).getLong("version"));
+    }
+
+    @Test
+    void addItem_newProduct_matchesAddItemCommand() {
+        Cart cart = insertCart("pipeline-1", null, new CartItem("p1", 2, new BigDecimal("10.50")));
+        CartItem added = new CartItem("p2", 3, new BigDecimal("3.99"));
+
+        Cart updated = cartRepository.addItem("pipeline-1", added).orElseThrow();
+
+        assertMatchesInJava(cart, null, c -> new AddItemCommand(cartService, "pipeline-1", added).apply(c), updated);
+        assertEquals(new BigDecimal("32.97"), updated.getSubTotal());
+        assertEquals(new BigDecimal("0.00"), updated.getDiscountAmount());
+    }
+
+    @Test
+    void addItem_existingProduct_matchesAddItemCommand() {
+        Cart cart = insertCart("pipeline-2", null, new CartItem("p1", 2, new BigDecimal("10.50")));
+        CartItem added = new CartItem("p1", 1, new BigDecimal("10.50"));
+
+        Cart updated = cartRepository.addItem("pipeline-2", added).orElseThrow();
+
+        assertMatchesInJava(cart, null, c -> new AddItemCommand(cartService, "pipeline-2", added).apply(c), updated);
+        assertEquals(3, updated.getItems().getFirst().getQuantity());
+    }
+
+    @Test
+    void setItemQuantity_matchesUpdateQuantityCommand() {
+        Cart cart = insertCart("pipeline-3", null, new CartItem("p1", 2, new BigDecimal("10.50")),
+                new CartItem("p2", 1, new BigDecimal("4.25")));
+
+        Cart updated = cartRepository.setItemQuantity("pipeline-3", "p1", 5).orElseThrow();
+
+        assertMatchesInJava(cart, null,
+                c -> new UpdateQuantityCommand(cartService, "pipeline-3", "p1", 5).apply(c), updated);
+        assertEquals(new BigDecimal("56.75"), updated.getTotalPrice());
+    }
+
+    @Test
+    void setItemQuantity_zero_removesItemLikeQuantityChanged() {
+        Cart cart = insertCart("pipeline-4", null, new CartItem("p1", 2, new BigDecimal("10.50")),
+                new CartItem("p2", 1, new BigDecimal("4.25")));
+
+        Cart updated = cartRepository.setItemQuantity("pipeline-4", "p1", 0).orElseThrow();
+
+        assertMatchesInJava(cart, null, CartChange.quantityChanged("p1", 0)::applyTo, updated);
+        assertEquals(1, updated.getItems().size());
+    }
+
+    @Test
+    void removeItem_fixedDiscountIsCappedAtNewSubTotal() {
+        PromoCode promo = fixedAmountPromo("50.00");
+        Cart cart = insertCart("pipeline-5", promo, new CartItem("p1", 2, new BigDecimal("10.50")),
+                new CartItem("p2", 1, new BigDecimal("39.00")));
+        assertEquals(new BigDecimal("50.00"), cart.getDiscountAmount());
+
+        Cart updated = cartRepository.removeItem("pipeline-5", "p2").orElseThrow();
+
+        assertMatchesInJava(cart, promo,
+                c -> new RemoveItemCommand(cartService, "pipeline-5", "p2").apply(c), updated);
+        assertEquals(new BigDecimal("21.00"), updated.getDiscountAmount());
+        assertEquals(new BigDecimal("0.00"), updated.getTotalPrice());
+        assertEquals("FIXED", updated.getAppliedPromoCode());
+    }
+
+    @Test
+    void applyChanges_sequence_matchesReplayedChanges() {
+        Cart cart = insertCart("pipeline-6", null, new CartItem("p1", 2, new BigDecimal("10.50")),
+                new CartItem("p2", 1, new BigDecimal("4.25")), new CartItem("p3", 4, new BigDecimal("1.10")));
+        List<CartChange> changes = List.of(
+                CartChange.itemAdded("p4", 2, new BigDecimal("7.77")),
+                CartChange.itemAdded("p1", 1, new BigDecimal("10.50")),
+                CartChange.quantityChanged("p3", 6),
+                CartChange.quantityReduced("p2", 1),
+                CartChange.quantityReduced("p3", 2),
+                CartChange.itemRemoved("p4"));
+
+        Cart updated = cartRepository.applyChanges("pipeline-6", changes).orElseThrow();
+
+        assertMatchesInJava(cart, null, c -> changes.forEach(change -> change.applyTo(c)), updated);
+        assertEquals(2, updated.getItems().size());
+    }
+
+    @Test
+    void totals_roundHalfEvenLikeCartTotalsCalculator() {
+        Cart cart = insertCart("pipeline-7", null, new CartItem("p1", 1, new BigDecimal("1.00")));
+        CartItem added = new CartItem("p2", 3, new BigDecimal("0.335"));
+
+        Cart updated = cartRepository.addItem("pipeline-7", added).orElseThrow();
+
+        assertMatchesInJava(cart, null, c -> new AddItemCommand(cartService, "pipeline-7", added).apply(c), updated);
+        assertEquals(new BigDecimal("2.00"), updated.getSubTotal());
+    }
+
+    @Test
+    void updateTotals_matchesSubTotalWrittenByPipeline() {
+        insertCart("pipeline-8", fixedAmountPromo("5.00"), new CartItem("p1", 2, new BigDecimal("10.00")));
+        Cart updated = cartRepository.addItem("pipeline-8", new CartItem("p2", 1, new BigDecimal("5.00")))
+                .orElseThrow();
+        updated.setDiscountAmount(new BigDecimal("2.50"));
+        updated.setTotalPrice(new BigDecimal("22.50"));
+
+        assertTrue(cartRepository.updateTotals(updated, updated.getSubTotal()));
+
+        Document stored = stored("cart-pipeline-8");
+        assertEquals("25.00", stored.getString("subTotal"));
+        assertEquals("22.50", stored.getString("totalPrice"));
+        assertEquals(5L, stored.getLong("version"));
+    }
+}
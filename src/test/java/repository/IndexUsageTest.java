@@ -0,0 +1,146 @@
+package repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.podzilla.cart.config.MongoIndexBootstrapper;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs explain() for the filters issued by CartRepository and
+ * PromoCodeRepository against an embedded mongod and fails on any
+ * collection scan in the winning plan, and for the promo code listings on
+ * any in-memory sort.
+ */
+class IndexUsageTest {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void startMongo() {
+        mongod = Mongod.instance().start(Version.Main.V6_0);
+        ServerAddress address = mongod.current().getServerAddress();
+        mongoClient = MongoClients.create("mongodb://" + address.getHost() + ":" + address.getPort());
+        mongoTemplate = new MongoTemplate(mongoClient, "index_usage_test");
+
+        new MongoIndexBootstrapper(mongoTemplate, true, null).ensureIndexes();
+        seed();
+    }
+
+    @AfterAll
+    static void stopMongo() {
+        if (mongoClient != null) {
+            mongoClient.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    private static void seed() {
+        for (int i = 0; i < 200; i++) {
+            List<CartItem> items = new ArrayList<>();
+            items.add(new CartItem("prod-" + (i % 20), 1, new BigDecimal("9.99")));
+            mongoTemplate.insert(new Cart(UUID.randomUUID().toString(), "cust-" + i, items, i % 7 == 0,
+                    null, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, null, null));
+
+            PromoCode promoCode = new PromoCode();
+            promoCode.setCode("CODE" + i);
+            promoCode.setDiscountType(PromoCode.DiscountType.PERCENTAGE);
+            promoCode.setDiscountValue(BigDecimal.TEN);
+            mongoTemplate.insert(promoCode);
+        }
+    }
+
+    @Test
+    void findByCustomerId_usesIndex() {
+        assertNoCollectionScan(Cart.class, new Document("customerId", "cust-42"));
+    }
+
+    @Test
+    void findByCustomerIdAndArchived_usesIndex() {
+        assertNoCollectionScan(Cart.class, new Document("customerId", "cust-42").append("archived", false));
+    }
+
+    @Test
+    void atomicItemUpdateFilter_usesIndex() {
+        assertNoCollectionScan(Cart.class, new Document("customerId", "cust-42")
+                .append("items.productId", "prod-2"));
+    }
+
+    @Test
+    void findByCode_usesIndex() {
+        assertNoCollectionScan(PromoCode.class, new Document("code", "CODE42"));
+    }
+
+    @Test
+    void promoCodePage_byActive_usesIndexForFilterAndOrder() {
+        assertIndexedInCodeOrder(new Document("active", true)
+                .append("code", new Document("$gt", "CODE1")));
+    }
+
+    @Test
+    void promoCodePage_byTypeAndExpiry_usesIndexForFilterAndOrder() {
+        assertIndexedInCodeOrder(new Document("discountType", "PERCENTAGE")
+                .append("active", new Document("$in", List.of(true, false)))
+                .append("expiryDate", new Document("$not", new Document("$lt", new Date()))));
+    }
+
+    private static void assertNoCollectionScan(final Class<?> type, final Document filter) {
+        Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(type))
+                .find(filter)
+                .explain();
+        Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+        assertFalse(containsStage(winningPlan, "COLLSCAN"),
+                () -> "Collection scan for " + filter.toJson() + ": " + explain.toJson());
+    }
+
+    /** Promo code listings must neither scan the collection nor sort in memory. */
+    private static void assertIndexedInCodeOrder(final Document filter) {
+        Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(PromoCode.class))
+                .find(filter)
+                .sort(new Document("code", 1))
+                .limit(50)
+                .explain();
+        Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+        assertFalse(containsStage(winningPlan, "COLLSCAN"),
+                () -> "Collection scan for " + filter.toJson() + ": " + explain.toJson());
+        assertFalse(containsStage(winningPlan, "SORT"),
+                () -> "In-memory sort for " + filter.toJson() + ": " + explain.toJson());
+    }
+
+    private static boolean containsStage(final Object node, final String stage) {
+        if (node instanceof Map<?, ?> map) {
+            if (stage.equals(map.get("stage"))) {
+                return true;
+            }
+            return map.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (node instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+}
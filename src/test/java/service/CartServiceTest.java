@@ -1,11 +1,22 @@
 package service;
+import com.podzilla.cart.dto.BatchCartResponse;
+import com.podzilla.cart.dto.CartOperation;
+import com.podzilla.cart.dto.CartSummary;
 import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.metrics.CartMetrics;
 import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartHistoryEntry;
 import com.podzilla.cart.model.CartItem;
 import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.outbox.CheckoutOutbox;
 import com.podzilla.cart.repository.CartRepository;
 import com.podzilla.cart.service.CartService;
 import com.podzilla.cart.service.PromoCodeService;
+import com.podzilla.cart.service.UpdateQuantityCommand;
+import com.podzilla.cart.store.CartHistoryStore;
+import com.podzilla.cart.store.EventSourcedCartStore;
+import com.podzilla.cart.store.WriteBehindCartStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,7 +24,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.podzilla.mq.EventPublisher;
 import com.podzilla.mq.EventsConstants;
@@ -22,11 +37,19 @@ import com.podzilla.mq.events.ConfirmationType;
 import com.podzilla.mq.events.DeliveryAddress;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -44,6 +67,21 @@ class CartServiceTest {
     @Mock
     private PromoCodeService promoCodeService;
 
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @Mock
+    private CheckoutOutbox checkoutOutbox;
+
+    @Mock
+    private CartMetrics cartMetrics;
+
+    @Mock
+    private EventSourcedCartStore eventStore;
+
+    @Mock
+    private CartHistoryStore cartHistory;
+
     @InjectMocks
     private CartService cartService;
 
@@ -66,7 +104,7 @@ class CartServiceTest {
 
     private Cart createNewTestCart(String cId, String crtId) {
         return new Cart(crtId, cId, new ArrayList<>(), false, null,
-                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2));
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), null, null);
     }
 
     private PromoCode createTestPromoCode(String code, PromoCode.DiscountType type, BigDecimal value, BigDecimal minPurchase, Instant expiry, boolean active) {
@@ -154,6 +192,30 @@ class CartServiceTest {
         verify(cartRepository, times(1)).save(any(Cart.class));
     }
 
+    @Test
+    void addItemToCart_legacyCartWithoutVersion_isVersionedBeforeSave() {
+        assertNull(cart.getVersion());
+        when(cartRepository.initializeVersion(cartId)).thenReturn(true);
+
+        cartService.addItemToCart(customerId, item1Input);
+
+        ArgumentCaptor<Cart> cartCaptor = ArgumentCaptor.forClass(Cart.class);
+        verify(cartRepository).save(cartCaptor.capture());
+        assertEquals(0L, cartCaptor.getValue().getVersion());
+    }
+
+    @Test
+    void addItemToCart_unversionedCartInsertedConcurrently_isRetried() {
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Cart result = cartService.addItemToCart(customerId, item1Input);
+
+        assertEquals(1, result.getItems().size());
+        verify(cartRepository, times(2)).save(any(Cart.class));
+    }
+
     @Test
     void addItemToCart_existingItem_updatesQuantityAndRecalculatesTotals() {
         cart.getItems().add(new CartItem(productId1, 1, price1));
@@ -171,6 +233,89 @@ class CartServiceTest {
         verify(cartRepository, times(1)).save(any(Cart.class));
     }
 
+    @Test
+    void addItemToCart_versionConflict_retriesFromFreshRead() {
+        ReflectionTestUtils.setField(cartService, "backoffBaseMillis", 0L);
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new OptimisticLockingFailureException("stale version"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Cart result = cartService.addItemToCart(customerId, item1Input);
+
+        assertEquals(1, result.getItems().size());
+        verify(cartRepository, times(2)).findByCustomerId(customerId);
+        verify(cartRepository, times(2)).save(any(Cart.class));
+        verify(cartMetrics).recordVersionConflict("addItem");
+        verify(cartMetrics).recordRetry("addItem");
+    }
+
+    @Test
+    void addItemToCart_persistentConflict_throwsConflictAfterMaxAttempts() {
+        ReflectionTestUtils.setField(cartService, "backoffBaseMillis", 0L);
+        when(cartRepository.save(any(Cart.class)))
+                .thenThrow(new OptimisticLockingFailureException("stale version"));
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class,
+                () -> cartService.addItemToCart(customerId, item1Input));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatus());
+        verify(cartRepository, times(3)).save(any(Cart.class));
+        verify(cartMetrics, times(3)).recordVersionConflict("addItem");
+        verify(cartMetrics, times(2)).recordRetry("addItem");
+    }
+
+    @Test
+    void addItemToCart_atomicMode_usesSingleServerSideUpdate() {
+        ReflectionTestUtils.setField(cartService, "atomicMutationEnabled", true);
+        Cart updated = createNewTestCart(customerId, cartId);
+        updated.getItems().add(new CartItem(productId1, 1, price1));
+        updated.setSubTotal(new BigDecimal("10.50"));
+        updated.setTotalPrice(new BigDecimal("10.50"));
+        when(cartRepository.addItem(customerId, item1Input)).thenReturn(Optional.of(updated));
+
+        Cart result = cartService.addItemToCart(customerId, item1Input);
+
+        assertEquals(1, result.getItems().size());
+        assertEquals(new BigDecimal("10.50"), result.getTotalPrice());
+        verify(cartRepository, never()).findByCustomerId(anyString());
+        verify(cartRepository, never()).save(any(Cart.class));
+        verify(cartRepository, never()).updateTotals(any(Cart.class), any(BigDecimal.class));
+    }
+
+    @Test
+    void addItemToCart_atomicModeWithPercentagePromo_updatesPromoTotals() {
+        ReflectionTestUtils.setField(cartService, "atomicMutationEnabled", true);
+        Cart updated = createNewTestCart(customerId, cartId);
+        updated.getItems().add(new CartItem(productId1, 2, new BigDecimal("10.00")));
+        updated.setAppliedPromoCode("SAVE10");
+        updated.setSubTotal(new BigDecimal("20.00"));
+        updated.setDiscountAmount(new BigDecimal("1.00"));
+        updated.setTotalPrice(new BigDecimal("19.00"));
+        when(cartRepository.addItem(eq(customerId), any(CartItem.class))).thenReturn(Optional.of(updated));
+        PromoCode promo = createTestPromoCode("SAVE10", PromoCode.DiscountType.PERCENTAGE, new BigDecimal("10"), null, null, true);
+        when(promoCodeService.getActivePromoCode("SAVE10")).thenReturn(Optional.of(promo));
+        when(cartRepository.updateTotals(updated, new BigDecimal("20.00"))).thenReturn(true);
+
+        Cart result = cartService.addItemToCart(customerId, new CartItem(productId1, 1, new BigDecimal("10.00")));
+
+        assertEquals(new BigDecimal("2.00"), result.getDiscountAmount());
+        assertEquals(new BigDecimal("18.00"), result.getTotalPrice());
+        verify(cartRepository).updateTotals(updated, new BigDecimal("20.00"));
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void updateItemQuantity_atomicModeProductMissing_throwsNotFound() {
+        ReflectionTestUtils.setField(cartService, "atomicMutationEnabled", true);
+        when(cartRepository.setItemQuantity(customerId, productId1, 3)).thenReturn(Optional.empty());
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class,
+                () -> cartService.updateItemQuantity(customerId, productId1, 3));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+        assertEquals("Product not found in cart", ex.getMessage());
+    }
+
     @Test
     void updateItemQuantity_existingItem_updatesAndRecalculates() {
         cart.getItems().add(new CartItem(productId1, 2, price1));
@@ -215,6 +360,55 @@ class CartServiceTest {
         verify(cartRepository, times(1)).save(any(Cart.class));
     }
 
+    @Test
+    void applyBatch_mixedOperations_loadsAndSavesOnce() {
+        cart.getItems().add(new CartItem(productId1, 2, price1));
+        cart.getItems().add(new CartItem(productId2, 1, price2));
+
+        BatchCartResponse response = cartService.applyBatch(customerId, List.of(
+                new CartOperation(CartOperation.Type.ADD, "prod3", 2, new BigDecimal("1.25")),
+                new CartOperation(CartOperation.Type.UPDATE_QUANTITY, productId1, 4, null),
+                new CartOperation(CartOperation.Type.REMOVE, productId2, null, null),
+                new CartOperation(CartOperation.Type.ADD, "prod3", 1, new BigDecimal("1.25"))));
+
+        Cart result = response.getCart();
+        assertEquals(2, result.getItems().size());
+        assertEquals(new BigDecimal("45.75"), result.getSubTotal());
+        assertEquals(4, response.getResults().size());
+        assertEquals(4, response.getResults().get(1).getQuantity());
+        assertEquals(0, response.getResults().get(2).getQuantity());
+        assertEquals(3, response.getResults().get(3).getQuantity());
+        verify(cartRepository, times(1)).findByCustomerId(customerId);
+        verify(cartRepository, times(1)).save(any(Cart.class));
+    }
+
+    @Test
+    void applyBatch_failingOperation_savesNothing() {
+        cart.getItems().add(new CartItem(productId1, 2, price1));
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class,
+                () -> cartService.applyBatch(customerId, List.of(
+                        new CartOperation(CartOperation.Type.ADD, productId2, 1, price2),
+                        new CartOperation(CartOperation.Type.UPDATE_QUANTITY, "missing", 1, null))));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+        assertTrue(ex.getMessage().startsWith("Operation 1"));
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void applyBatch_invalidOperation_rejectedBeforeLoading() {
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class,
+                () -> cartService.applyBatch(customerId, List.of(
+                        new CartOperation(CartOperation.Type.ADD, productId1, 1, price1),
+                        new CartOperation(CartOperation.Type.ADD, productId2, 0, price2))));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        assertEquals("Operation 1: quantity must be positive", ex.getMessage());
+        verify(cartRepository, never()).findByCustomerId(anyString());
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
     @Test
     void clearCart_itemsExist_clearsItemsAndResetsTotalsAndPromo() {
         cart.getItems().add(new CartItem(productId1, 1, price1));
@@ -369,6 +563,24 @@ class CartServiceTest {
         verify(cartRepository, times(1)).save(any(Cart.class));
     }
 
+    @Test
+    void checkoutCart_outboxEnabled_stagesEventWithClearedCartInsteadOfPublishing() {
+        cart.getItems().add(new CartItem(productId1, 2, new BigDecimal("100.00")));
+        when(checkoutOutbox.isEnabled()).thenReturn(true);
+        when(checkoutOutbox.stage(eq(CheckoutOutbox.CART_CHECKEDOUT), eq(cartId), any(CartCheckedoutEvent.class),
+                any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(3)).get());
+
+        Cart result = cartService.checkoutCart(customerId, ConfirmationType.OTP, "", latitude, longitude, address);
+
+        ArgumentCaptor<CartCheckedoutEvent> eventCaptor = ArgumentCaptor.forClass(CartCheckedoutEvent.class);
+        verify(checkoutOutbox).stage(eq(CheckoutOutbox.CART_CHECKEDOUT), eq(cartId), eventCaptor.capture(), any());
+        assertEquals(new BigDecimal("200.00"), eventCaptor.getValue().getTotalAmount());
+        assertTrue(result.getItems().isEmpty());
+        assertEquals(BigDecimal.ZERO.setScale(2), result.getTotalPrice());
+        verify(cartRepository, times(1)).save(any(Cart.class));
+        verify(eventPublisher, never()).publishEvent(any(), any());
+    }
+
     @Test
     void checkoutCart_withSignature_publishesEventWithSignature() {
         cart.getItems().add(new CartItem(productId1, 1, new BigDecimal("100.00")));
@@ -433,6 +645,29 @@ verify(eventPublisher, never()).publishEvent(eq(EventsConstants.CART_CHECKEDOUT)
         assertEquals(new BigDecimal(formattedSubTotal), cart.getSubTotal());
     }
 
+    @Test
+    void checkoutCart_publishFails_recordsFailedPublishAndCheckoutOutcome() {
+        cart.getItems().add(item1Input);
+        doThrow(new RuntimeException("Event publish error")).when(eventPublisher)
+                .publishEvent(eq(EventsConstants.CART_CHECKEDOUT), any(CartCheckedoutEvent.class));
+
+        assertThrows(GlobalHandlerException.class,
+                () -> cartService.checkoutCart(customerId, ConfirmationType.QR_CODE, null, latitude, longitude, address));
+
+        verify(cartMetrics).recordEventPublish(any(), eq("CART_CHECKEDOUT"), eq("direct"), eq(false));
+        verify(cartMetrics).recordCheckout("publish_failed");
+        verify(cartMetrics).recordCartSize("checkout", 1);
+    }
+
+    @Test
+    void applyPromoCode_invalidCode_countsRejection() {
+        when(promoCodeService.getActivePromoCode("FAKECODE")).thenReturn(Optional.empty());
+
+        assertThrows(GlobalHandlerException.class, () -> cartService.applyPromoCode(customerId, "fakecode"));
+
+        verify(cartMetrics).recordPromoRejected("apply", "invalid");
+    }
+
     @Test
     void getCartByCustomerId_cartExists_returnsCart() {
         Cart result = cartService.getCartByCustomerId(customerId);
@@ -476,4 +711,210 @@ verify(eventPublisher, never()).publishEvent(eq(EventsConstants.CART_CHECKEDOUT)
         assertFalse(result.isArchived());
         verify(cartRepository).save(archivedCart);
     }
-}
\ No newline at end of file
+
+    @Test
+    void addItemToCart_coalescing_appliesQueuedMutationsWithOneSave() throws Exception {
+        ReflectionTestUtils.setField(cartService, "coalescingEnabled", true);
+        CountDownLatch firstRead = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Cart> stored = new AtomicReference<>(cart);
+        when(cartRepository.findByCustomerId(eq(customerId))).thenAnswer(invocation -> {
+            if (firstRead.getCount() > 0) {
+                firstRead.countDown();
+                release.await();
+            }
+            return Optional.of(stored.get());
+        });
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> {
+            stored.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<Cart> first = CompletableFuture.supplyAsync(
+                () -> cartService.addItemToCart(customerId, new CartItem("p0", 1, price1)));
+        assertTrue(firstRead.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Cart>> queued = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            CartItem item = new CartItem("p" + i, 1, price1);
+            queued.add(CompletableFuture.supplyAsync(() -> cartService.addItemToCart(customerId, item)));
+        }
+        awaitQueued(3);
+        release.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getItems().size());
+        for (CompletableFuture<Cart> future : queued) {
+            assertEquals(4, future.get(5, TimeUnit.SECONDS).getItems().size());
+        }
+        verify(cartRepository, times(2)).save(any(Cart.class));
+        verify(cartMetrics).recordCoalescedBatch(1);
+        verify(cartMetrics).recordCoalescedBatch(3);
+    }
+
+    @Test
+    void addItemToCart_coalescingTimeout_withdrawsQueuedCommandButAwaitsRunningOne() throws Exception {
+        ReflectionTestUtils.setField(cartService, "coalescingEnabled", true);
+        ReflectionTestUtils.setField(cartService, "coalescingTimeout", Duration.ofMillis(100));
+        CountDownLatch firstRead = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Cart> stored = new AtomicReference<>(cart);
+        when(cartRepository.findByCustomerId(eq(customerId))).thenAnswer(invocation -> {
+            if (firstRead.getCount() > 0) {
+                firstRead.countDown();
+                release.await();
+            }
+            return Optional.of(stored.get());
+        });
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> {
+            stored.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<Cart> running = CompletableFuture.supplyAsync(
+                () -> cartService.addItemToCart(customerId, new CartItem("p0", 1, price1)));
+        assertTrue(firstRead.await(5, TimeUnit.SECONDS));
+        GlobalHandlerException timedOut = assertThrows(GlobalHandlerException.class,
+                () -> cartService.addItemToCart(customerId, new CartItem("p1", 1, price1)));
+        release.countDown();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, timedOut.getStatus());
+        assertEquals(1, running.get(5, TimeUnit.SECONDS).getItems().size());
+        verify(cartRepository, times(1)).save(any(Cart.class));
+        assertEquals(List.of("p0"), stored.get().getItems().stream().map(CartItem::getProductId).toList());
+    }
+
+    @Test
+    void updateItemQuantity_coalescing_failureOnlyRejectsItsOwnCommand() {
+        ReflectionTestUtils.setField(cartService, "coalescingEnabled", true);
+        cart.getItems().add(new CartItem(productId1, 1, price1));
+
+        GlobalHandlerException exception = assertThrows(GlobalHandlerException.class,
+                () -> cartService.updateItemQuantity(customerId, "missing", 2));
+        Cart result = cartService.updateItemQuantity(customerId, productId1, 3);
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+        assertEquals(3, result.getItems().get(0).getQuantity());
+        verify(cartRepository, times(1)).save(any(Cart.class));
+    }
+
+    @Test
+    void updateItemQuantity_historyEnabled_recordsChangeAndInverse() {
+        when(cartHistory.isEnabled()).thenReturn(true);
+        cart.getItems().add(new CartItem(productId1, 2, price1));
+
+        cartService.updateItemQuantity(customerId, productId1, 0);
+
+        ArgumentCaptor<CartHistoryEntry> entry = ArgumentCaptor.forClass(CartHistoryEntry.class);
+        verify(cartHistory).record(eq(customerId), entry.capture());
+        assertEquals(List.of(CartChange.quantityChanged(productId1, 0)), entry.getValue().getChanges());
+        assertEquals(List.of(CartChange.itemAdded(productId1, 2, price1)), entry.getValue().getInverse());
+    }
+
+    @Test
+    void undo_appliesInverseInOneServerSideUpdate() {
+        List<CartChange> inverse = List.of(CartChange.quantityReduced(productId1, 1));
+        when(cartHistory.popUndo(customerId)).thenReturn(Optional.of(new CartHistoryEntry("addItem",
+                List.of(CartChange.itemAdded(productId1, 1, price1)), inverse, Instant.now())));
+        Cart updated = createNewTestCart(customerId, cartId);
+        when(cartRepository.applyChanges(customerId, inverse)).thenReturn(Optional.of(updated));
+
+        Cart result = cartService.undo(customerId);
+
+        assertSame(updated, result);
+        verify(cartRepository, never()).findByCustomerId(anyString());
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void undo_applyFails_putsEntryBackOnUndoStack() {
+        CartHistoryEntry entry = new CartHistoryEntry("addItem", List.of(CartChange.itemAdded(productId1, 1, price1)),
+                List.of(CartChange.quantityReduced(productId1, 1)), Instant.now());
+        when(cartHistory.popUndo(customerId)).thenReturn(Optional.of(entry));
+        when(cartRepository.applyChanges(customerId, entry.getInverse())).thenReturn(Optional.empty());
+
+        assertThrows(GlobalHandlerException.class, () -> cartService.undo(customerId));
+
+        verify(cartHistory).restoreUndo(customerId, entry);
+    }
+
+    @Test
+    void redo_applyFails_putsEntryBackOnRedoStack() {
+        CartHistoryEntry entry = new CartHistoryEntry("addItem", List.of(CartChange.itemAdded(productId1, 1, price1)),
+                List.of(CartChange.quantityReduced(productId1, 1)), Instant.now());
+        when(cartHistory.popRedo(customerId)).thenReturn(Optional.of(entry));
+        when(cartRepository.applyChanges(customerId, entry.getChanges()))
+                .thenThrow(new DataAccessResourceFailureException("mongo down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> cartService.redo(customerId));
+
+        verify(cartHistory).restoreRedo(customerId, entry);
+    }
+
+    @Test
+    void undo_emptyHistory_throwsConflict() {
+        when(cartHistory.popUndo(customerId)).thenReturn(Optional.empty());
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class, () -> cartService.undo(customerId));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatus());
+        verify(cartRepository, never()).applyChanges(anyString(), anyList());
+    }
+
+    @Test
+    void updateQuantityCommand_revertAfterRemoval_restoresItemAtItsPrice() {
+        cart.getItems().add(new CartItem(productId1, 2, price1));
+        UpdateQuantityCommand command = new UpdateQuantityCommand(null, customerId, productId1, 0);
+
+        command.apply(cart);
+        command.revert(cart);
+
+        CartItem restored = cart.findItem(productId1).orElseThrow();
+        assertEquals(2, restored.getQuantity());
+        assertEquals(price1, restored.getUnitPrice());
+    }
+
+    @Test
+    void getCartSummary_writingDirectly_usesProjection() {
+        CartSummary summary = new CartSummary(cartId, 3, new BigDecimal("30.00"), BigDecimal.ZERO.setScale(2),
+                new BigDecimal("30.00"), null, 4L);
+        when(cartRepository.findSummaryByCustomerId(customerId)).thenReturn(Optional.of(summary));
+
+        assertEquals(summary, cartService.getCartSummary(customerId));
+        verify(cartRepository, never()).findByCustomerId(anyString());
+    }
+
+    @Test
+    void getCartSummary_noCart_throwsNotFound() {
+        when(cartRepository.findSummaryByCustomerId(customerId)).thenReturn(Optional.empty());
+
+        GlobalHandlerException exception = assertThrows(GlobalHandlerException.class,
+                () -> cartService.getCartSummary(customerId));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+    }
+
+    @Test
+    void getCartSummary_writeBehind_summarizesBufferedCart() {
+        cart.getItems().add(new CartItem(productId1, 2, price1));
+        when(cartStore.isEnabled()).thenReturn(true);
+        when(cartStore.find(eq(customerId), any())).thenReturn(Optional.of(cart));
+
+        CartSummary summary = cartService.getCartSummary(customerId);
+
+        assertEquals(1, summary.getItemCount());
+        assertEquals(cart.getTotalPrice(), summary.getTotalPrice());
+        verify(cartRepository, never()).findSummaryByCustomerId(anyString());
+    }
+
+    private void awaitQueued(final int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Object mailboxes = ReflectionTestUtils.getField(cartService, "mailboxes");
+            Map<?, ?> queues = (Map<?, ?>) ReflectionTestUtils.getField(mailboxes, "mailboxes");
+            Object queue = queues.get(customerId);
+            if (queue != null && ((List<?>) queue).size() == count) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Mutations were not queued");
+    }
+}
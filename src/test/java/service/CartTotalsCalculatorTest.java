@@ -0,0 +1,98 @@
+package service;
+
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.service.CartTotals;
+import com.podzilla.cart.service.CartTotalsCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartTotalsCalculatorTest {
+
+    private PromoCode promo(PromoCode.DiscountType type, String value) {
+        PromoCode promo = new PromoCode();
+        promo.setCode("TEST");
+        promo.setDiscountType(type);
+        promo.setDiscountValue(new BigDecimal(value));
+        return promo;
+    }
+
+    @Test
+    void calculate_noItems_returnsZeroTotalsAtScaleTwo() {
+        CartTotals totals = CartTotalsCalculator.calculate(new ArrayList<>(), null);
+
+        assertEquals(new BigDecimal("0.00"), totals.subTotal());
+        assertEquals(new BigDecimal("0.00"), totals.discountAmount());
+        assertEquals(new BigDecimal("0.00"), totals.totalPrice());
+    }
+
+    @Test
+    void calculate_skipsZeroQuantityAndUnpricedItems() {
+        List<CartItem> items = List.of(
+                new CartItem("p1", 2, new BigDecimal("10.50")),
+                new CartItem("p2", 0, new BigDecimal("99.00")),
+                new CartItem("p3", 1, null),
+                new CartItem("p4", 3, new BigDecimal("5")));
+
+        CartTotals totals = CartTotalsCalculator.calculate(items, null);
+
+        assertEquals(new BigDecimal("36.00"), totals.subTotal());
+        assertEquals(new BigDecimal("36.00"), totals.totalPrice());
+    }
+
+    @Test
+    void calculate_percentagePromo_usesExactRateAndHalfEvenRounding() {
+        List<CartItem> items = List.of(new CartItem("p1", 1, new BigDecimal("0.20")));
+
+        CartTotals totals = CartTotalsCalculator.calculate(items,
+                promo(PromoCode.DiscountType.PERCENTAGE, "12.5"));
+
+        // 0.20 * 12.5% = 0.025, rounded half-even to 0.02
+        assertEquals(new BigDecimal("0.02"), totals.discountAmount());
+        assertEquals(new BigDecimal("0.18"), totals.totalPrice());
+    }
+
+    @Test
+    void calculate_fixedPromoAboveSubtotal_isCapped() {
+        List<CartItem> items = List.of(new CartItem("p1", 1, new BigDecimal("3.00")));
+
+        CartTotals totals = CartTotalsCalculator.calculate(items,
+                promo(PromoCode.DiscountType.FIXED_AMOUNT, "1000000000000000000000"));
+
+        assertEquals(new BigDecimal("3.00"), totals.discountAmount());
+        assertEquals(new BigDecimal("0.00"), totals.totalPrice());
+    }
+
+    @Test
+    void calculate_subCentPrices_fallBackToExactArithmetic() {
+        List<CartItem> items = List.of(new CartItem("p1", 3, new BigDecimal("0.335")));
+
+        CartTotals totals = CartTotalsCalculator.calculate(items, null);
+
+        // 1.005 rounded half-even
+        assertEquals(new BigDecimal("1.00"), totals.subTotal());
+    }
+
+    @Test
+    void calculate_isIndependentOfDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            CartTotals totals = CartTotalsCalculator.calculate(
+                    List.of(new CartItem("p1", 2, new BigDecimal("10.25"))),
+                    promo(PromoCode.DiscountType.PERCENTAGE, "10"));
+
+            assertEquals(new BigDecimal("20.50"), totals.subTotal());
+            assertEquals(new BigDecimal("2.05"), totals.discountAmount());
+            assertEquals(new BigDecimal("18.45"), totals.totalPrice());
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package service;
+
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CheckoutJob;
+import com.podzilla.cart.outbox.CheckoutOutbox;
+import com.podzilla.cart.repository.CheckoutJobRepository;
+import com.podzilla.cart.service.CartService;
+import com.podzilla.cart.service.CheckoutJobService;
+import com.podzilla.mq.events.ConfirmationType;
+import com.podzilla.mq.events.DeliveryAddress;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutJobServiceTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private CheckoutJobRepository checkoutJobRepository;
+
+    @Mock
+    private CheckoutOutbox checkoutOutbox;
+
+    private final DeliveryAddress address = new DeliveryAddress("street", "city", "state", "country", "12345");
+
+    private final List<CheckoutJob.Status> savedStatuses = new ArrayList<>();
+
+    /** Jobs as stored, by id, so that the worker's re-read and conditional updates see each other. */
+    private final Map<String, CheckoutJob> storedJobs = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        Cart cart = new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), 1L, null);
+        lenient().when(cartService.validateCheckout(CUSTOMER_ID, ConfirmationType.OTP, null)).thenReturn(cart);
+        lenient().when(checkoutJobRepository.save(any(CheckoutJob.class))).thenAnswer(invocation -> {
+            CheckoutJob job = invocation.getArgument(0);
+            savedStatuses.add(job.getStatus());
+            storedJobs.put(job.getId(), copy(job));
+            return job;
+        });
+        lenient().when(checkoutJobRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(storedJobs.get(invocation.<String>getArgument(0)))
+                        .map(CheckoutJobServiceTest::copy));
+        lenient().when(checkoutJobRepository.completeIfPending(anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    CheckoutJob stored = storedJobs.get(invocation.<String>getArgument(0));
+                    if (stored == null || stored.getStatus() != CheckoutJob.Status.PENDING) {
+                        return false;
+                    }
+                    stored.setStatus(invocation.getArgument(1));
+                    stored.setCompletedAt(invocation.getArgument(2));
+                    stored.setError(invocation.getArgument(3));
+                    savedStatuses.add(stored.getStatus());
+                    return true;
+                });
+    }
+
+    private static CheckoutJob copy(final CheckoutJob job) {
+        return new CheckoutJob(job.getId(), job.getCustomerId(), job.getCartId(), job.getStatus(),
+                job.getCreatedAt(), job.getCompletedAt(), job.getError());
+    }
+
+    private CheckoutJobService service(final TaskExecutor executor) {
+        return new CheckoutJobService(cartService, checkoutJobRepository, executor, checkoutOutbox,
+                Duration.ofMinutes(5));
+    }
+
+    @Test
+    void submit_runsCheckoutAndRecordsPublished() {
+        CheckoutJob job = service(new SyncTaskExecutor())
+                .submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+
+        assertEquals(CheckoutJob.Status.PENDING, job.getStatus());
+        assertEquals("cart-1", job.getCartId());
+        verify(cartService).checkoutCart(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+        assertEquals(List.of(CheckoutJob.Status.PENDING, CheckoutJob.Status.PUBLISHED), savedStatuses);
+    }
+
+    @Test
+    void submit_checkoutFails_recordsFailureWithReason() {
+        when(cartService.checkoutCart(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address))
+                .thenThrow(new GlobalHandlerException(HttpStatus.SERVICE_UNAVAILABLE, "Broker down"));
+
+        CheckoutJob job = service(new SyncTaskExecutor())
+                .submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+
+        verify(checkoutJobRepository).completeIfPending(eq(job.getId()), eq(CheckoutJob.Status.FAILED), any(),
+                eq("Broker down"));
+        assertEquals(List.of(CheckoutJob.Status.PENDING, CheckoutJob.Status.FAILED), savedStatuses);
+    }
+
+    @Test
+    void submit_outboxEnabled_recordsStagedNotPublished() {
+        when(checkoutOutbox.isEnabled()).thenReturn(true);
+
+        service(new SyncTaskExecutor()).submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+
+        assertEquals(List.of(CheckoutJob.Status.PENDING, CheckoutJob.Status.STAGED), savedStatuses);
+    }
+
+    @Test
+    void run_jobNoLongerPending_skipsCheckout() {
+        List<Runnable> queued = new ArrayList<>();
+        CheckoutJob job = service(queued::add).submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+        // Reported as timed out by the status endpoint while the task waited in the queue.
+        storedJobs.get(job.getId()).setStatus(CheckoutJob.Status.FAILED);
+
+        queued.forEach(Runnable::run);
+
+        verify(cartService, never()).checkoutCart(any(), any(), any(), any(), any(), any());
+        assertEquals(CheckoutJob.Status.FAILED, storedJobs.get(job.getId()).getStatus());
+    }
+
+    @Test
+    void run_checkoutFinishesAfterTimeout_keepsReportedFailure() {
+        List<Runnable> queued = new ArrayList<>();
+        CheckoutJob job = service(queued::add).submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address);
+        when(cartService.checkoutCart(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address))
+                .thenAnswer(invocation -> {
+                    storedJobs.get(job.getId()).setStatus(CheckoutJob.Status.FAILED);
+                    return null;
+                });
+
+        queued.forEach(Runnable::run);
+
+        assertEquals(CheckoutJob.Status.FAILED, storedJobs.get(job.getId()).getStatus());
+        assertEquals(List.of(CheckoutJob.Status.PENDING), savedStatuses);
+    }
+
+    @Test
+    void submit_invalidCart_rejectedBeforeQueueing() {
+        when(cartService.validateCheckout(CUSTOMER_ID, ConfirmationType.SIGNATURE, null))
+                .thenThrow(new GlobalHandlerException(HttpStatus.BAD_REQUEST, "Signature is required"));
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class, () -> service(new SyncTaskExecutor())
+                .submit(CUSTOMER_ID, ConfirmationType.SIGNATURE, null, 1.0, 2.0, address));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        verifyNoInteractions(checkoutJobRepository);
+    }
+
+    @Test
+    void submit_queueFull_returnsServiceUnavailable() {
+        TaskExecutor fullExecutor = task -> {
+            throw new TaskRejectedException("full");
+        };
+
+        GlobalHandlerException ex = assertThrows(GlobalHandlerException.class, () -> service(fullExecutor)
+                .submit(CUSTOMER_ID, ConfirmationType.OTP, null, 1.0, 2.0, address));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+        assertEquals(List.of(CheckoutJob.Status.PENDING, CheckoutJob.Status.FAILED), savedStatuses);
+        verify(cartService, never()).checkoutCart(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getJob_pendingPastTimeout_reportedAsFailed() {
+        CheckoutJob stale = new CheckoutJob("job-1", CUSTOMER_ID, "cart-1", CheckoutJob.Status.PENDING,
+                Instant.now().minus(Duration.ofMinutes(10)), null, null);
+        storedJobs.put("job-1", copy(stale));
+        when(checkoutJobRepository.findByIdAndCustomerId("job-1", CUSTOMER_ID)).thenReturn(Optional.of(stale));
+
+        CheckoutJob job = service(new SyncTaskExecutor()).getJob(CUSTOMER_ID, "job-1");
+
+        assertEquals(CheckoutJob.Status.FAILED, job.getStatus());
+    }
+
+    @Test
+    void getJob_timeoutLosesToWorker_reportsWorkerOutcome() {
+        CheckoutJob stale = new CheckoutJob("job-1", CUSTOMER_ID, "cart-1", CheckoutJob.Status.PENDING,
+                Instant.now().minus(Duration.ofMinutes(10)), null, null);
+        CheckoutJob published = copy(stale);
+        published.setStatus(CheckoutJob.Status.PUBLISHED);
+        storedJobs.put("job-1", published);
+        when(checkoutJobRepository.findByIdAndCustomerId("job-1", CUSTOMER_ID))
+                .thenReturn(Optional.of(stale), Optional.of(copy(published)));
+
+        CheckoutJob job = service(new SyncTaskExecutor()).getJob(CUSTOMER_ID, "job-1");
+
+        assertEquals(CheckoutJob.Status.PUBLISHED, job.getStatus());
+    }
+}
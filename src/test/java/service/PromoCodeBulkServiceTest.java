@@ -0,0 +1,243 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.podzilla.cart.config.CacheConfig;
+import com.podzilla.cart.dto.PromoCodeGenerationRequest;
+import com.podzilla.cart.exception.GlobalHandlerException;
+import com.podzilla.cart.model.PromoCode;
+import com.podzilla.cart.model.PromoCodeBulkJob;
+import com.podzilla.cart.repository.PromoCodeBulkJobRepository;
+import com.podzilla.cart.service.PromoCodeBulkService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeBulkServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private PromoCodeBulkJobRepository jobRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache promoCodesCache;
+
+    private final Queue<PromoCode> inserted = new ConcurrentLinkedQueue<>();
+
+    private PromoCodeBulkService service;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(jobRepository.save(any(PromoCodeBulkJob.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(jobRepository.updateProgressIfRunning(any(PromoCodeBulkJob.class))).thenReturn(true);
+        lenient().when(jobRepository.finishIfRunning(any(PromoCodeBulkJob.class))).thenReturn(true);
+        lenient().when(cacheManager.getCache(CacheConfig.PROMO_CODES_CACHE)).thenReturn(promoCodesCache);
+        // One batch in flight, so each insert is followed by its own execute.
+        AtomicInteger lastBatch = new AtomicInteger();
+        lenient().when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PromoCode.class))
+                .thenReturn(bulkOperations);
+        lenient().when(bulkOperations.insert(anyList())).thenAnswer(invocation -> {
+            List<PromoCode> batch = invocation.getArgument(0);
+            inserted.addAll(batch);
+            lastBatch.set(batch.size());
+            return bulkOperations;
+        });
+        lenient().when(bulkOperations.execute()).thenAnswer(invocation ->
+                BulkWriteResult.acknowledged(lastBatch.get(), 0, 0, 0, List.of(), List.of()));
+
+        service = new PromoCodeBulkService(mongoTemplate, jobRepository, cacheManager, new ObjectMapper()
+                .findAndRegisterModules(), new SyncTaskExecutor(), 1000, 10, 1, Duration.ofMinutes(2));
+    }
+
+    private PromoCodeBulkJob finishedJob() {
+        ArgumentCaptor<PromoCodeBulkJob> finished = ArgumentCaptor.forClass(PromoCodeBulkJob.class);
+        verify(jobRepository).finishIfRunning(finished.capture());
+        return finished.getValue();
+    }
+
+    private static PromoCodeBulkJob runningJob(final Instant updatedAt) {
+        PromoCodeBulkJob job = new PromoCodeBulkJob();
+        job.setId("job-1");
+        job.setType(PromoCodeBulkJob.Type.GENERATE);
+        job.setStatus(PromoCodeBulkJob.Status.RUNNING);
+        job.setInserted(40);
+        job.setCreatedAt(updatedAt);
+        job.setUpdatedAt(updatedAt);
+        return job;
+    }
+
+    private PromoCodeGenerationRequest generation(final String prefix, final long count) {
+        PromoCodeGenerationRequest request = new PromoCodeGenerationRequest();
+        request.setPrefix(prefix);
+        request.setCount(count);
+        request.setDiscountType(PromoCode.DiscountType.PERCENTAGE);
+        request.setDiscountValue(BigDecimal.TEN);
+        return request;
+    }
+
+    @Test
+    void submitGeneration_insertsRequestedCountOfUniquePrefixedCodes() {
+        service.submitGeneration(generation("spring", 25));
+
+        PromoCodeBulkJob job = finishedJob();
+        assertEquals(PromoCodeBulkJob.Status.COMPLETED, job.getStatus());
+        assertEquals(25, job.getInserted());
+        assertEquals(25, inserted.size());
+        assertEquals(25, new HashSet<>(inserted.stream().map(PromoCode::getCode).toList()).size());
+        assertTrue(inserted.stream().allMatch(code -> code.getCode().matches("SPRING[2-9A-HJ-NP-Z]{10}")));
+        assertTrue(inserted.stream().allMatch(code -> code.getDiscountValue().equals(BigDecimal.TEN)));
+        verify(promoCodesCache).clear();
+    }
+
+    @Test
+    void submitGeneration_savesProgressAsSnapshotOfTheRunningJob() {
+        service.submitGeneration(generation("spring", 25));
+
+        ArgumentCaptor<PromoCodeBulkJob> progress = ArgumentCaptor.forClass(PromoCodeBulkJob.class);
+        verify(jobRepository).updateProgressIfRunning(progress.capture());
+        assertEquals(PromoCodeBulkJob.Status.RUNNING, progress.getValue().getStatus());
+        assertEquals(25, progress.getValue().getInserted());
+        PromoCodeBulkJob finished = finishedJob();
+        assertNotSame(progress.getValue(), finished);
+        assertEquals(PromoCodeBulkJob.Status.COMPLETED, finished.getStatus());
+        // Only the new job is saved whole; later writes are conditional on RUNNING.
+        verify(jobRepository, times(1)).save(any(PromoCodeBulkJob.class));
+    }
+
+    @Test
+    void submitGeneration_jobFailedMeanwhile_isNotMarkedCompleted() {
+        when(jobRepository.updateProgressIfRunning(any(PromoCodeBulkJob.class))).thenReturn(false);
+
+        service.submitGeneration(generation("spring", 25));
+
+        assertEquals(PromoCodeBulkJob.Status.FAILED, finishedJob().getStatus());
+    }
+
+    @Test
+    void getJob_stalled_failsWithoutWritingBackCounters() {
+        PromoCodeBulkJob stalled = runningJob(Instant.now().minus(Duration.ofMinutes(5)));
+        PromoCodeBulkJob failed = runningJob(Instant.now());
+        failed.setStatus(PromoCodeBulkJob.Status.FAILED);
+        when(jobRepository.findById("job-1")).thenReturn(Optional.of(stalled), Optional.of(failed));
+        when(jobRepository.failIfStalled(eq("job-1"), any(Instant.class), any(Instant.class), anyString()))
+                .thenReturn(true);
+
+        assertEquals(PromoCodeBulkJob.Status.FAILED, service.getJob("job-1").getStatus());
+        verify(jobRepository, never()).save(any(PromoCodeBulkJob.class));
+        verify(jobRepository, never()).finishIfRunning(any(PromoCodeBulkJob.class));
+    }
+
+    @Test
+    void getJob_progressReportedSinceRead_returnsStoredJob() {
+        PromoCodeBulkJob reported = runningJob(Instant.now());
+        reported.setInserted(80);
+        when(jobRepository.findById("job-1"))
+                .thenReturn(Optional.of(runningJob(Instant.now().minus(Duration.ofMinutes(5)))), Optional.of(reported));
+        when(jobRepository.failIfStalled(eq("job-1"), any(Instant.class), any(Instant.class), anyString()))
+                .thenReturn(false);
+
+        PromoCodeBulkJob job = service.getJob("job-1");
+
+        assertEquals(PromoCodeBulkJob.Status.RUNNING, job.getStatus());
+        assertEquals(80, job.getInserted());
+    }
+
+    @Test
+    void submitGeneration_invalidPrefix_badRequestWithoutJob() {
+        GlobalHandlerException exception = assertThrows(GlobalHandlerException.class,
+                () -> service.submitGeneration(generation("no spaces", 5)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void submitImport_csv_insertsValidRowsAndRejectsInvalidOnes() {
+        String csv = """
+                code,discountType,discountValue,description,expiryDate
+                summer1,percentage,10,"Summer, 10% off",2030-01-01T00:00:00Z
+                SUMMER2,FIXED_AMOUNT,-5,,
+
+                SUMMER3,FIXED_AMOUNT,5,"Say \"\"hi\"\"\",
+                """;
+
+        service.submitImport(MediaType.parseMediaType("text/csv"),
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        PromoCodeBulkJob job = finishedJob();
+        assertEquals(PromoCodeBulkJob.Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getProcessed());
+        assertEquals(2, job.getInserted());
+        assertEquals(1, job.getRejected());
+        assertEquals(List.of("line 3: discountValue must be positive"), job.getErrors());
+        assertEquals(List.of("SUMMER1", "SUMMER3"), inserted.stream().map(PromoCode::getCode).toList());
+        assertEquals("Summer, 10% off", inserted.peek().getDescription());
+        assertEquals("Say \"hi\"", inserted.stream().toList().get(1).getDescription());
+    }
+
+    @Test
+    void submitImport_ndjson_insertsEachLine() {
+        String ndjson = "{\"code\":\"a1\",\"discountType\":\"PERCENTAGE\",\"discountValue\":5}\n"
+                + "not json\n"
+                + "{\"code\":\"a2\",\"discountType\":\"FIXED_AMOUNT\",\"discountValue\":2.5,\"active\":false}\n";
+
+        service.submitImport(MediaType.APPLICATION_NDJSON,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        PromoCodeBulkJob job = finishedJob();
+        assertEquals(2, job.getInserted());
+        assertEquals(1, job.getRejected());
+        assertEquals(List.of("A1", "A2"), inserted.stream().map(PromoCode::getCode).toList());
+        assertFalse(inserted.stream().toList().get(1).isActive());
+    }
+
+    @Test
+    void submitImport_csvWithUnknownColumn_failsJob() {
+        service.submitImport(MediaType.parseMediaType("text/csv"),
+                new ByteArrayInputStream("code,discount\nA,1\n".getBytes(StandardCharsets.UTF_8)));
+
+        PromoCodeBulkJob job = finishedJob();
+        assertEquals(PromoCodeBulkJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getError().contains("discount"));
+        verifyNoInteractions(bulkOperations);
+    }
+}
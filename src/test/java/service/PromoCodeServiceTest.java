@@ -1,5 +1,7 @@
 package service;
 
+import com.podzilla.cart.dto.PromoCodeFilter;
+import com.podzilla.cart.dto.PromoCodePage;
 import com.podzilla.cart.exception.GlobalHandlerException;
 import com.podzilla.cart.model.PromoCode;
 import com.podzilla.cart.repository.PromoCodeRepository;
@@ -122,6 +124,35 @@ class PromoCodeServiceTest {
         verify(promoCodeRepository).findAll();
     }
 
+    @Test
+    void findPage_moreThanLimit_returnsLimitAndNextAfter() {
+        PromoCodeFilter filter = new PromoCodeFilter(true, null, null);
+        when(promoCodeRepository.findPage(filter, "A", 2))
+                .thenReturn(List.of(promo("B"), promo("C"), promo("D")));
+
+        PromoCodePage page = promoCodeService.findPage(filter, "A", 2);
+
+        assertEquals(List.of("B", "C"), page.getPromoCodes().stream().map(PromoCode::getCode).toList());
+        assertEquals("C", page.getNextAfter());
+    }
+
+    @Test
+    void findPage_lastPage_hasNoNextAfter() {
+        PromoCodeFilter filter = new PromoCodeFilter();
+        when(promoCodeRepository.findPage(filter, null, 3)).thenReturn(List.of(promo("B"), promo("C")));
+
+        PromoCodePage page = promoCodeService.findPage(filter, null, 2);
+
+        assertEquals(2, page.getPromoCodes().size());
+        assertNull(page.getNextAfter());
+    }
+
+    private static PromoCode promo(final String code) {
+        PromoCode promo = new PromoCode();
+        promo.setCode(code);
+        return promo;
+    }
+
     @Test
     void findAll_noPromoCodes_returnsEmptyList() {
         when(promoCodeRepository.findAll()).thenReturn(Collections.emptyList());
@@ -0,0 +1,168 @@
+package store;
+
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartChange;
+import com.podzilla.cart.model.CartEvent;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.model.CartSnapshot;
+import com.podzilla.cart.store.EventSourcedCartStore;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventSourcedCartStoreTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+    private static final BigDecimal PRICE = new BigDecimal("2.50");
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private EventSourcedCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new EventSourcedCartStore(mongoTemplate, true, 3, false);
+        store.start();
+    }
+
+    private static CartEvent event(final long sequence, final List<CartChange> changes,
+                                   final String promoCode, final String total) {
+        BigDecimal amount = new BigDecimal(total);
+        return new CartEvent(null, CUSTOMER_ID, "cart-1", sequence, new ArrayList<>(changes), promoCode,
+                amount, BigDecimal.ZERO.setScale(2), amount, Instant.now());
+    }
+
+    private static Cart cartAt(final long version) {
+        return new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2),
+                version, null);
+    }
+
+    @Test
+    void find_replaysEventsAfterSnapshot() {
+        Cart snapshotCart = cartAt(3);
+        snapshotCart.addItem(new CartItem("p1", 2, PRICE));
+        when(mongoTemplate.findById(CUSTOMER_ID, CartSnapshot.class))
+                .thenReturn(new CartSnapshot(CUSTOMER_ID, 3, snapshotCart, Instant.now()));
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of(
+                event(4, List.of(CartChange.itemAdded("p1", 1, PRICE), CartChange.itemAdded("p2", 1, PRICE)),
+                        null, "10.00"),
+                event(5, List.of(CartChange.itemRemoved("p2"), CartChange.promoApplied("SAVE10")),
+                        "SAVE10", "7.50")));
+
+        Cart cart = store.find(CUSTOMER_ID).orElseThrow();
+
+        assertEquals(1, cart.getItems().size());
+        assertEquals(3, cart.findItem("p1").orElseThrow().getQuantity());
+        assertEquals("SAVE10", cart.getAppliedPromoCode());
+        assertEquals(new BigDecimal("7.50"), cart.getTotalPrice());
+        assertEquals(5L, cart.getVersion());
+        assertTrue(cart.pendingChanges().isEmpty());
+    }
+
+    @Test
+    void find_withoutSnapshotOrEvents_isEmpty() {
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of());
+
+        assertTrue(store.find(CUSTOMER_ID).isEmpty());
+    }
+
+    @Test
+    void find_withoutSnapshotOrEvents_seedsSnapshotFromCartDocument() {
+        Cart document = cartAt(7);
+        document.addItem(new CartItem("p1", 2, PRICE));
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of());
+        when(mongoTemplate.findOne(any(Query.class), eq(Cart.class))).thenReturn(document);
+
+        Cart cart = store.find(CUSTOMER_ID).orElseThrow();
+
+        assertEquals(7L, cart.getVersion());
+        assertEquals(2, cart.findItem("p1").orElseThrow().getQuantity());
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(CartSnapshot.class));
+        assertEquals(7L, update.getValue().getUpdateObject().get("$set", Document.class).get("sequence"));
+    }
+
+    @Test
+    void find_seededCartDocument_replaysOnlyLaterEvents() {
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of(
+                event(8, List.of(CartChange.itemAdded("p2", 1, PRICE)), null, "2.50")));
+        when(mongoTemplate.findOne(any(Query.class), eq(Cart.class))).thenReturn(cartAt(7));
+
+        Cart cart = store.find(CUSTOMER_ID).orElseThrow();
+
+        assertEquals(8L, cart.getVersion());
+        assertEquals(1, cart.getItems().size());
+    }
+
+    @Test
+    void find_legacyUnversionedCartDocument_isSeededAtVersionZero() {
+        Cart document = cartAt(0);
+        document.setVersion(null);
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of());
+        when(mongoTemplate.findOne(any(Query.class), eq(Cart.class))).thenReturn(document);
+
+        assertEquals(0L, store.find(CUSTOMER_ID).orElseThrow().getVersion());
+    }
+
+    @Test
+    void find_streamStartedByEventStore_ignoresCartDocument() {
+        when(mongoTemplate.find(any(Query.class), eq(CartEvent.class))).thenReturn(List.of(
+                event(1, List.of(CartChange.of(CartChange.Type.CART_CREATED)), null, "0.00")));
+
+        store.find(CUSTOMER_ID);
+
+        verify(mongoTemplate, never()).findOne(any(Query.class), eq(Cart.class));
+    }
+
+    @Test
+    void save_appendsPendingChangesAndSnapshotsEveryNthEvent() {
+        Cart cart = cartAt(1);
+        cart.addItem(new CartItem("p1", 1, PRICE));
+        cart.recordChange(CartChange.itemAdded("p1", 1, PRICE));
+
+        Cart saved = store.save(cart);
+
+        ArgumentCaptor<CartEvent> captor = ArgumentCaptor.forClass(CartEvent.class);
+        verify(mongoTemplate).insert(captor.capture());
+        assertEquals(2L, captor.getValue().getSequence());
+        assertEquals(List.of(CartChange.itemAdded("p1", 1, PRICE)), captor.getValue().getChanges());
+        assertEquals(2L, saved.getVersion());
+        assertTrue(saved.pendingChanges().isEmpty());
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(CartSnapshot.class));
+
+        store.save(saved);
+
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(CartSnapshot.class));
+    }
+
+    @Test
+    void save_sequenceTaken_throwsOptimisticLockingFailure() {
+        when(mongoTemplate.insert(any(CartEvent.class))).thenThrow(new DuplicateKeyException("E11000"));
+        Cart cart = cartAt(4);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> store.save(cart));
+        assertEquals(4L, cart.getVersion());
+    }
+}
@@ -0,0 +1,222 @@
+package store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.podzilla.cart.metrics.CartMetrics;
+import com.podzilla.cart.model.Cart;
+import com.podzilla.cart.model.CartItem;
+import com.podzilla.cart.store.CartJournal;
+import com.podzilla.cart.store.WriteBehindCartStore;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindCartStoreTest {
+
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private CartMetrics cartMetrics;
+
+    @TempDir
+    private Path journalDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private WriteBehindCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class))
+                .thenReturn(bulkOperations);
+        lenient().when(bulkOperations.execute()).thenReturn(matched(1));
+        store = newStore();
+    }
+
+    private WriteBehindCartStore newStore() {
+        WriteBehindCartStore newStore = new WriteBehindCartStore(mongoTemplate, objectMapper, cartMetrics,
+                true, 100, journalDir, false);
+        newStore.start();
+        return newStore;
+    }
+
+    private Cart storedCart() {
+        return new Cart("cart-1", CUSTOMER_ID, new ArrayList<>(), false, null,
+                BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2), BigDecimal.ZERO.setScale(2),
+                3L, null);
+    }
+
+    private static BulkWriteResult matched(final int count) {
+        return BulkWriteResult.acknowledged(0, count, 0, count, List.of(), List.of());
+    }
+
+    private Cart addItem(final Cart cart, final String productId) {
+        cart.addItem(new CartItem(productId, 1, new BigDecimal("2.50")));
+        return cart;
+    }
+
+    @Test
+    void save_manyMutations_coalesceIntoOneWritePerFlush() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+
+        for (int i = 0; i < 5; i++) {
+            cart = store.save(addItem(cart, "prod" + i));
+        }
+        store.flushDirty();
+        store.flushDirty();
+
+        assertEquals(8L, cart.getVersion());
+        verify(bulkOperations, times(1)).replaceOne(any(Query.class), any(Cart.class),
+                any(FindAndReplaceOptions.class));
+        verify(bulkOperations, times(1)).execute();
+        verify(mongoTemplate, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void save_staleVersion_throwsOptimisticLockingFailure() {
+        Cart first = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        Cart second = store.find(CUSTOMER_ID, Optional::empty).orElseThrow();
+
+        store.save(addItem(first, "prod1"));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> store.save(addItem(second, "prod2")));
+    }
+
+    @Test
+    void find_returnsCopiesIsolatedFromTheStore() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        addItem(cart, "prod1");
+
+        Cart again = store.find(CUSTOMER_ID, Optional::empty).orElseThrow();
+
+        assertTrue(again.getItems().isEmpty());
+    }
+
+    @Test
+    void start_replaysUnflushedCartsFromJournal() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        store.save(addItem(cart, "prod1"));
+
+        // Simulate a crash: the first store never flushes, a new one starts on the same journal.
+        WriteBehindCartStore restarted = newStore();
+        Cart replayed = restarted.find(CUSTOMER_ID, Optional::empty).orElseThrow();
+        restarted.flushDirty();
+
+        assertEquals(4L, replayed.getVersion());
+        assertEquals(1, replayed.getItems().size());
+        verify(bulkOperations).replaceOne(any(Query.class), eq(replayed), any(FindAndReplaceOptions.class));
+        verify(bulkOperations).execute();
+    }
+
+    @Test
+    void detach_flushesAndTombstonesSoNothingIsReplayed() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        store.save(addItem(cart, "prod1"));
+
+        store.detach(CUSTOMER_ID);
+        WriteBehindCartStore restarted = newStore();
+
+        assertTrue(restarted.find(CUSTOMER_ID, Optional::empty).isEmpty());
+        verify(bulkOperations, times(1)).execute();
+    }
+
+    @Test
+    void detach_flushFails_keepsCartBufferedAndThrows() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        store.save(addItem(cart, "prod1"));
+        when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("mongo down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> store.detach(CUSTOMER_ID));
+
+        Cart buffered = store.find(CUSTOMER_ID, Optional::empty).orElseThrow();
+        assertEquals(4L, buffered.getVersion());
+        WriteBehindCartStore restarted = newStore();
+        assertEquals(4L, restarted.find(CUSTOMER_ID, Optional::empty).orElseThrow().getVersion());
+    }
+
+    @Test
+    void flush_replacesOnlyOlderStoredVersions() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        store.save(addItem(cart, "prod1"));
+
+        store.flushDirty();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(bulkOperations).replaceOne(query.capture(), any(Cart.class), any(FindAndReplaceOptions.class));
+        assertEquals(new Document("_id", "cart-1").append("version", new Document("$lt", 4L)),
+                query.getValue().getQueryObject());
+    }
+
+    @Test
+    void flush_storedCartIsNewer_dropsBufferedCopy() {
+        Cart cart = store.find(CUSTOMER_ID, () -> Optional.of(storedCart())).orElseThrow();
+        store.save(addItem(cart, "prod1"));
+        Cart newer = storedCart();
+        newer.setVersion(9L);
+        when(bulkOperations.execute()).thenReturn(matched(0));
+        when(mongoTemplate.find(any(Query.class), eq(Cart.class))).thenReturn(List.of(newer));
+
+        store.flushDirty();
+
+        Cart reloaded = store.find(CUSTOMER_ID, () -> Optional.of(newer)).orElseThrow();
+        assertEquals(9L, reloaded.getVersion());
+    }
+
+    @Test
+    void start_journalLinesOutOfVersionOrder_replaysNewestVersion() {
+        Cart cart = storedCart();
+        cart.setVersion(5L);
+        Cart older = storedCart();
+        older.setVersion(4L);
+        CartJournal journal = new CartJournal(journalDir, objectMapper, false);
+        journal.append(new CartJournal.Entry(CUSTOMER_ID, cart));
+        journal.append(new CartJournal.Entry(CUSTOMER_ID, older));
+        journal.close();
+
+        WriteBehindCartStore restarted = newStore();
+
+        assertEquals(5L, restarted.find(CUSTOMER_ID, Optional::empty).orElseThrow().getVersion());
+    }
+
+    @Test
+    void start_tombstoneBeforeLaterSaveOfSameVersion_staysDetached() {
+        Cart cart = storedCart();
+        CartJournal journal = new CartJournal(journalDir, objectMapper, false);
+        journal.append(CartJournal.Entry.tombstone(cart));
+        journal.append(new CartJournal.Entry(CUSTOMER_ID, cart));
+        journal.close();
+
+        WriteBehindCartStore restarted = newStore();
+
+        assertTrue(restarted.find(CUSTOMER_ID, Optional::empty).isEmpty());
+    }
+}